@@ -2,6 +2,7 @@ plugins {
     java
     id("org.springframework.boot") version "3.3.3"
     id("io.spring.dependency-management") version "1.1.6"
+    id("me.champeau.jmh") version "0.7.2" // Бенчмарки JMH (src/jmh/java)
     kotlin("plugin.spring") version "1.9.0" // Для поддержки Spring с Kotlin (если нужно)
 }
 
@@ -21,13 +22,21 @@ dependencies {
     // Spring Boot
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
     implementation("org.springframework.boot:spring-boot-starter-validation")
+    implementation("org.springframework.boot:spring-boot-starter-web")
+
+    // Кэш запросов чтения
+    implementation("com.github.ben-manes.caffeine:caffeine")
+
+    // Метрики
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus") // /actuator/prometheus
 
     // Разработка
     developmentOnly("org.springframework.boot:spring-boot-devtools")
 
     // Базы данных
     runtimeOnly("com.h2database:h2") // Для in-memory базы данных H2
-    runtimeOnly("org.postgresql:postgresql") // Для подключения к PostgreSQL
+    implementation("org.postgresql:postgresql") // Для подключения к PostgreSQL и COPY (CopyManager)
 
     // Логирование
     implementation("org.springframework.boot:spring-boot-starter-logging")
@@ -45,6 +54,20 @@ dependencies {
 
     // Дополнительные зависимости для тестов (например, если нужны интеграционные тесты)
     testImplementation("org.springframework:spring-test:6.2.0") // Spring Test для тестирования
+
+    // Бенчмарки
+    jmh("org.springframework:spring-test") // ReflectionTestUtils для настройки сервисов без контекста
+    jmh("com.h2database:h2") // Встроенная БД для бенчмарка сохранения
+}
+
+jmh {
+    // ./gradlew jmh -Pjmh.includes=ParseFileBenchmark
+    includes.set(listOf((project.findProperty("jmh.includes") ?: ".*Benchmark.*").toString()))
+    warmupIterations.set(2)
+    iterations.set(5)
+    fork.set(1)
+    jvmArgs.set(listOf("-Xmx2g"))
+    resultFormat.set("JSON")
 }
 
 tasks.withType<Test> {
@@ -0,0 +1,88 @@
+package com.levandr.custompaymentsystem.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Детерминированный генератор BCP-файлов для бенчмарков.
+ * <p>
+ * При одинаковых параметрах и {@code seed} всегда получается один и тот же файл.
+ * Доля невалидных строк и дубликатов задается в долях единицы.
+ */
+public final class BcpFileGenerator {
+
+    private static final String COMPANY = String.format("%-65s", "Наименование");
+
+    private final long seed;
+    private final double invalidRate;
+    private final double duplicateRate;
+
+    public BcpFileGenerator(long seed, double invalidRate, double duplicateRate) {
+        this.seed = seed;
+        this.invalidRate = invalidRate;
+        this.duplicateRate = duplicateRate;
+    }
+
+    /**
+     * Пишет файл из {@code lines} строк в каталог {@code directory}.
+     *
+     * @return путь к созданному файлу с именем формата {@code BCP_YYYYMMDD_HHMMSS_XXXX}.
+     */
+    public Path generate(Path directory, long lines, int fileNumber) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(String.format("BCP_20240101_000000_%04d", fileNumber));
+        Random random = new Random(seed);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (long i = 0; i < lines; i++) {
+                writer.write(line(i, random));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Одна строка с номером {@code i}; используется и бенчмарками разбора отдельных строк.
+     */
+    public String line(long i, Random random) {
+        long idNumber = i;
+        if (i > 0 && random.nextDouble() < duplicateRate) {
+            idNumber = i - 1 - random.nextInt((int) Math.min(i, 1000));
+        }
+        long cents = 100 + random.nextInt(100_000_000);
+        String line = String.format("%012d %s %s %012d %09d.%02d",
+                i + 1, paymentId(idNumber), COMPANY, 1_000_000_000L + random.nextInt(1_000_000),
+                cents / 100, cents % 100);
+
+        if (random.nextDouble() < invalidRate) {
+            return "X" + line.substring(1);
+        }
+        return line;
+    }
+
+    public static String paymentId(long number) {
+        return String.format("123456789-123456789-123456789-%09d-%010d",
+                number / 10_000_000_000L, number % 10_000_000_000L);
+    }
+
+    /**
+     * Удаляет каталог бенчмарка со всем содержимым; сгенерированный файл на 10 млн строк занимает ~1.5 ГБ.
+     */
+    public static void deleteRecursively(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.levandr.custompaymentsystem.benchmark;
+
+import com.levandr.custompaymentsystem.entity.FileSummary;
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
+import com.levandr.custompaymentsystem.service.parser.BcpValidation;
+import com.levandr.custompaymentsystem.service.parser.ParallelBcpParser;
+import com.levandr.custompaymentsystem.service.parser.ParserService;
+import com.levandr.custompaymentsystem.service.payment.PaymentIdIndex;
+import com.levandr.custompaymentsystem.service.payment.PaymentService;
+import com.levandr.custompaymentsystem.service.pipeline.IngestPipeline;
+import com.levandr.custompaymentsystem.service.query.PaymentQueryService;
+import com.levandr.custompaymentsystem.service.repoter.ReporterService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Сборка сервисов без Spring-контекста: БД заменена заглушкой, отчеты пишутся во временный каталог.
+ * Так бенчмарки разбора измеряют только CPU и файловый ввод-вывод.
+ */
+final class BenchmarkServices {
+
+    private BenchmarkServices() {
+    }
+
+    static final IngestMetrics METRICS = new IngestMetrics(new SimpleMeterRegistry());
+
+    static ReporterService reporterService(Path outputDirectory) {
+        ReporterService reporterService = new ReporterService(METRICS, null);
+        ReflectionTestUtils.setField(reporterService, "reportErrorDir", outputDirectory.resolve("ReportError"));
+        ReflectionTestUtils.setField(reporterService, "reportSuccessDir", outputDirectory.resolve("ReportSuccess"));
+        return reporterService;
+    }
+
+    static ParserService parserService(Path inputDirectory, Path outputDirectory) {
+        PaymentService paymentService = new PaymentService(null, METRICS, null, null) {
+            @Override
+            public List<Payment> saveAll(List<Payment> payments) {
+                return payments;
+            }
+
+            @Override
+            public boolean hasPayments(String fileName) {
+                return false;
+            }
+        };
+        ReporterService reporterService = reporterService(outputDirectory);
+        PaymentQueryService paymentQueryService = new PaymentQueryService(null, METRICS);
+        ReflectionTestUtils.setField(paymentQueryService, "maximumSize", 1000L);
+        ReflectionTestUtils.setField(paymentQueryService, "ttlSeconds", 30L);
+        paymentQueryService.init();
+
+        ReconciliationService reconciliationService = new ReconciliationService(null, null, null) {
+            @Override
+            public FileSummary save(ReconciliationSummary summary) {
+                return null;
+            }
+        };
+        PaymentIdIndex paymentIdIndex = new PaymentIdIndex(null);
+        IngestPipeline ingestPipeline = new IngestPipeline(paymentService, reporterService, paymentQueryService,
+                reconciliationService, paymentIdIndex);
+        ReflectionTestUtils.setField(ingestPipeline, "persistParallelism", 1);
+        ReflectionTestUtils.setField(ingestPipeline, "persistQueueCapacity", 16);
+        ReflectionTestUtils.setField(ingestPipeline, "reportParallelism", 1);
+        ReflectionTestUtils.setField(ingestPipeline, "reportQueueCapacity", 16);
+        ingestPipeline.init();
+
+        BcpValidation bcpValidation = BcpValidation.defaults();
+        ParserService parserService = new ParserService(paymentService, reporterService,
+                new ParallelBcpParser(bcpValidation), paymentIdIndex, METRICS, ingestPipeline, bcpValidation);
+        ReflectionTestUtils.setField(parserService, "inputDirectory", inputDirectory);
+        ReflectionTestUtils.setField(parserService, "chunkSize", 1000);
+        ReflectionTestUtils.setField(parserService, "topPayers", 10);
+        ReflectionTestUtils.setField(parserService, "duplicatesMemoryBytes", 64L * 1024 * 1024);
+        return parserService;
+    }
+}
@@ -0,0 +1,52 @@
+package com.levandr.custompaymentsystem.benchmark;
+
+import com.levandr.custompaymentsystem.exception.FileProcessingException;
+import com.levandr.custompaymentsystem.service.parser.ParserService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полный {@code parseFile} по сгенерированным файлам: оба прохода, разбор, отчет.
+ * Сохранение в БД заменено заглушкой (см. {@link PersistenceBenchmark}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class ParseFileBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public long lines;
+
+    @Param({"0.01"})
+    public double invalidRate;
+
+    @Param({"0.01"})
+    public double duplicateRate;
+
+    private ParserService parserService;
+    private Path file;
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bcp-bench");
+        file = new BcpFileGenerator(42, invalidRate, duplicateRate).generate(directory.resolve("Input"), lines, 1);
+        parserService = BenchmarkServices.parserService(directory.resolve("Input"), directory.resolve("Output"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BcpFileGenerator.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void parseFile() throws FileProcessingException {
+        parserService.parseFile(file);
+    }
+}
@@ -0,0 +1,64 @@
+package com.levandr.custompaymentsystem.benchmark;
+
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.service.parser.ParserService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор отдельной строки и проверка имени файла.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParserBenchmark {
+
+    private static final int LINES = 1024;
+
+    private ParserService parserService;
+    private String[] lines;
+    private int next;
+    private Path directory;
+
+    private final Path validFileName = Path.of("BCP_20240101_000000_0001");
+    private final Path invalidFileName = Path.of("BCP_2024010100000_0001.txt");
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bcp-bench");
+        parserService = BenchmarkServices.parserService(directory, directory);
+
+        BcpFileGenerator generator = new BcpFileGenerator(42, 0.01, 0.01);
+        Random random = new Random(42);
+        lines = new String[LINES];
+        for (int i = 0; i < LINES; i++) {
+            lines[i] = generator.line(i, random);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BcpFileGenerator.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Payment parseLine() {
+        next = (next + 1) & (LINES - 1);
+        return parserService.parseLine(lines[next]);
+    }
+
+    @Benchmark
+    public boolean isValidFileName() {
+        return parserService.isValidFileName(validFileName);
+    }
+
+    @Benchmark
+    public boolean isInvalidFileName() {
+        return parserService.isValidFileName(invalidFileName);
+    }
+}
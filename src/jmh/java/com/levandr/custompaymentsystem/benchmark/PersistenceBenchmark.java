@@ -0,0 +1,69 @@
+package com.levandr.custompaymentsystem.benchmark;
+
+import com.levandr.custompaymentsystem.CustomPaymentSystemApplication;
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.service.payment.PaymentService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PaymentService#saveAll(List)} на встроенной H2 с настройками пакетной вставки из application.yaml.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PersistenceBenchmark {
+
+    @Param({"1000"})
+    public int chunkSize;
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+    private long sequence;
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bcp-bench");
+        context = new SpringApplicationBuilder(CustomPaymentSystemApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.input.directory=" + Files.createDirectories(directory.resolve("Input")),
+                        "spring.output.error=" + directory.resolve("ReportError"),
+                        "spring.output.success=" + directory.resolve("ReportSuccess"),
+                        "spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.format_sql=false")
+                .run();
+        paymentService = context.getBean(PaymentService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        BcpFileGenerator.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public List<Payment> saveAll() {
+        List<Payment> chunk = new ArrayList<>(chunkSize);
+        for (int i = 0; i < chunkSize; i++) {
+            long number = sequence++;
+            chunk.add(paymentService.createPayment(BcpFileGenerator.paymentId(number), String.format("%012d", number),
+                    "Наименование", "012345678912", BigDecimal.valueOf(10_000, 2),
+                    PaymentStatus.OK.getCode(), "BCP_20240101_000000_0001"));
+        }
+        return paymentService.saveAll(chunk);
+    }
+}
@@ -0,0 +1,52 @@
+package com.levandr.custompaymentsystem.benchmark;
+
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.service.repoter.ReporterService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись отчета по списку платежей.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReporterBenchmark {
+
+    @Param({"10000", "100000"})
+    public int payments;
+
+    private ReporterService reporterService;
+    private List<Payment> paymentList;
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bcp-bench");
+        reporterService = BenchmarkServices.reporterService(directory);
+        paymentList = new ArrayList<>(payments);
+        for (int i = 0; i < payments; i++) {
+            paymentList.add(new Payment((long) i, BcpFileGenerator.paymentId(i), String.format("%012d", i),
+                    "Наименование", "012345678912", BigDecimal.valueOf(10_000 + i, 2),
+                    PaymentStatus.FULL_SAVED.getCode(), "BCP_20240101_000000_0001", false));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BcpFileGenerator.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void createReport() {
+        reporterService.createReport(paymentList, "BCP_20240101_000000_0001");
+    }
+}
@@ -3,9 +3,11 @@ package com.levandr.custompaymentsystem;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages = "com.levandr.custompaymentsystem")
 @EnableAsync
+@EnableScheduling
 public class CustomPaymentSystemApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,27 @@
+package com.levandr.custompaymentsystem.controller;
+
+import com.levandr.custompaymentsystem.watcher.DirectoryWatcher;
+import com.levandr.custompaymentsystem.watcher.FileQueueState;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Состояние загрузки.
+ * <pre>
+ * GET /api/ingest/queue
+ * </pre>
+ */
+@RestController
+@RequestMapping("/api/ingest")
+@RequiredArgsConstructor
+public class IngestController {
+
+    private final DirectoryWatcher directoryWatcher;
+
+    @GetMapping("/queue")
+    public FileQueueState queue() {
+        return directoryWatcher.queueState();
+    }
+}
@@ -0,0 +1,56 @@
+package com.levandr.custompaymentsystem.controller;
+
+import com.levandr.custompaymentsystem.service.query.PaymentQueryService;
+import com.levandr.custompaymentsystem.service.query.PaymentView;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * API чтения платежей для внешних систем.
+ * <pre>
+ * GET /api/payments/{paymentId}
+ * GET /api/payments?fileName=...|payerInn=...|statusCode=...&amp;page=0&amp;size=100
+ * </pre>
+ */
+@RestController
+@RequestMapping("/api/payments")
+@RequiredArgsConstructor
+public class PaymentController {
+
+    private final PaymentQueryService paymentQueryService;
+
+    @GetMapping("/{paymentId}")
+    public List<PaymentView> byPaymentId(@PathVariable String paymentId) {
+        List<PaymentView> payments = paymentQueryService.findByPaymentId(paymentId);
+        if (payments.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Платеж не найден: " + paymentId);
+        }
+        return payments;
+    }
+
+    @GetMapping
+    public List<PaymentView> search(@RequestParam(required = false) String fileName,
+                                    @RequestParam(required = false) String payerInn,
+                                    @RequestParam(required = false) Integer statusCode,
+                                    @RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "100") int size) {
+        if (fileName != null) {
+            return paymentQueryService.findByFileName(fileName, page, size);
+        }
+        if (payerInn != null) {
+            return paymentQueryService.findByPayerInn(payerInn, page, size);
+        }
+        if (statusCode != null) {
+            return paymentQueryService.findByStatusCode(statusCode, page, size);
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Нужен один из параметров: fileName, payerInn, statusCode");
+    }
+}
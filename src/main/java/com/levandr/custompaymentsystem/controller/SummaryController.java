@@ -0,0 +1,49 @@
+package com.levandr.custompaymentsystem.controller;
+
+import com.levandr.custompaymentsystem.entity.DailySummary;
+import com.levandr.custompaymentsystem.entity.FileSummary;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Сводки для сверки.
+ * <pre>
+ * GET /api/summaries/files/{fileName}
+ * GET /api/summaries/days/{yyyy-MM-dd}
+ * GET /api/summaries/days/{yyyy-MM-dd}/files
+ * </pre>
+ */
+@RestController
+@RequestMapping("/api/summaries")
+@RequiredArgsConstructor
+public class SummaryController {
+
+    private final ReconciliationService reconciliationService;
+
+    @GetMapping("/files/{fileName}")
+    public FileSummary file(@PathVariable String fileName) {
+        return reconciliationService.findFile(fileName).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "Сводка файла не найдена: " + fileName));
+    }
+
+    @GetMapping("/days/{date}")
+    public DailySummary day(@PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return reconciliationService.findDay(date).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "Сводка за день не найдена: " + date));
+    }
+
+    @GetMapping("/days/{date}/files")
+    public List<FileSummary> filesOfDay(@PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return reconciliationService.findFilesOfDay(date);
+    }
+}
@@ -0,0 +1,90 @@
+package com.levandr.custompaymentsystem.entity;
+
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Итоги за день, накапливаются по мере завершения файлов.
+ */
+@Getter
+@Setter
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "daily_summary")
+public class DailySummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(nullable = false)
+    Long id;
+
+    @Column(name = "business_date", nullable = false, unique = true)
+    LocalDate businessDate;
+
+    @Column(name = "file_count", nullable = false)
+    Long fileCount;
+
+    @Column(name = "payment_count", nullable = false)
+    Long paymentCount;
+
+    /**
+     * Сумма платежей без дубликатов.
+     */
+    @Column(name = "amount", precision = 19, scale = 2, nullable = false)
+    BigDecimal amount;
+
+    @Column(name = "full_saved_count", nullable = false)
+    Long fullSavedCount;
+
+    @Column(name = "partial_ok_count", nullable = false)
+    Long partialOkCount;
+
+    @Column(name = "duplicate_count", nullable = false)
+    Long duplicateCount;
+
+    @Column(name = "invalid_lines", nullable = false)
+    Long invalidLines;
+
+    @Column(name = "updated_at", nullable = false)
+    Instant updatedAt;
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy ?
+                ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy ?
+                ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        DailySummary that = (DailySummary) o;
+        return getId() != null && Objects.equals(getId(), that.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ?
+                ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "DailySummary{" +
+               "id=" + id +
+               ", businessDate=" + businessDate +
+               ", fileCount=" + fileCount +
+               ", paymentCount=" + paymentCount +
+               ", amount=" + amount +
+               '}';
+    }
+}
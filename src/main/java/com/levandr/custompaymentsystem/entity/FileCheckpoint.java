@@ -0,0 +1,89 @@
+package com.levandr.custompaymentsystem.entity;
+
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Сохраненный диапазон файла: строки от {@code startOffset} до {@code byteOffset} разобраны,
+ * а их платежи записаны в той же транзакции, что и сама запись. Непокрытые диапазоны после сбоя
+ * разбираются заново, покрытые - нет.
+ */
+@Getter
+@Setter
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "file_checkpoint",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"file_name", "start_offset"}))
+public class FileCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(nullable = false)
+    Long id;
+
+    @Column(name = "file_name", nullable = false)
+    String fileName;
+
+    /**
+     * Смещение начала первой строки диапазона.
+     */
+    @Column(name = "start_offset", nullable = false)
+    Long startOffset;
+
+    /**
+     * Смещение конца диапазона - начала первой строки, которая в него не вошла.
+     */
+    @Column(name = "byte_offset", nullable = false)
+    Long byteOffset;
+
+    /**
+     * Число строк диапазона, включая недействительные.
+     */
+    @Column(name = "line_count", nullable = false)
+    Long lineCount;
+
+    @Column(name = "invalid_lines", nullable = false)
+    Long invalidLines;
+
+    @Column(name = "updated_at", nullable = false)
+    Instant updatedAt;
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy ?
+                ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy ?
+                ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        FileCheckpoint that = (FileCheckpoint) o;
+        return getId() != null && Objects.equals(getId(), that.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ?
+                ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "FileCheckpoint{" +
+               "id=" + id +
+               ", fileName='" + fileName + '\'' +
+               ", startOffset=" + startOffset +
+               ", byteOffset=" + byteOffset +
+               ", lineCount=" + lineCount +
+               ", invalidLines=" + invalidLines +
+               '}';
+    }
+}
@@ -0,0 +1,105 @@
+package com.levandr.custompaymentsystem.entity;
+
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Итоги одного файла, посчитанные во время загрузки.
+ */
+@Getter
+@Setter
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "file_summary", indexes = {
+        @Index(name = "idx_file_summary_business_date", columnList = "business_date")
+})
+public class FileSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(nullable = false)
+    Long id;
+
+    @Column(name = "file_name", nullable = false, unique = true)
+    String fileName;
+
+    /**
+     * Дата из имени файла, иначе дата загрузки.
+     */
+    @Column(name = "business_date", nullable = false)
+    LocalDate businessDate;
+
+    @Column(name = "payment_count", nullable = false)
+    Long paymentCount;
+
+    /**
+     * Сумма платежей без дубликатов.
+     */
+    @Column(name = "amount", precision = 19, scale = 2, nullable = false)
+    BigDecimal amount;
+
+    @Column(name = "full_saved_count", nullable = false)
+    Long fullSavedCount;
+
+    @Column(name = "partial_ok_count", nullable = false)
+    Long partialOkCount;
+
+    @Column(name = "duplicate_count", nullable = false)
+    Long duplicateCount;
+
+    @Column(name = "invalid_lines", nullable = false)
+    Long invalidLines;
+
+    /**
+     * Крупнейшие плательщики файла по сумме, по убыванию.
+     */
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "file_summary_payer", joinColumns = @JoinColumn(name = "file_summary_id"))
+    @OrderColumn(name = "position")
+    List<PayerTotal> topPayers = new ArrayList<>();
+
+    @Column(name = "updated_at", nullable = false)
+    Instant updatedAt;
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy ?
+                ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy ?
+                ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        FileSummary that = (FileSummary) o;
+        return getId() != null && Objects.equals(getId(), that.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ?
+                ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "FileSummary{" +
+               "id=" + id +
+               ", fileName='" + fileName + '\'' +
+               ", businessDate=" + businessDate +
+               ", paymentCount=" + paymentCount +
+               ", amount=" + amount +
+               '}';
+    }
+}
@@ -0,0 +1,38 @@
+package com.levandr.custompaymentsystem.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+/**
+ * Сумма и число платежей одного плательщика в сводке файла.
+ */
+@Getter
+@Setter
+@Embeddable
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PayerTotal {
+
+    @Column(name = "payer_inn", nullable = false)
+    String payerInn;
+
+    @Column(name = "payment_count", nullable = false)
+    Long paymentCount;
+
+    @Column(name = "amount", precision = 19, scale = 2, nullable = false)
+    BigDecimal amount;
+
+    @Override
+    public String toString() {
+        return "PayerTotal{" +
+               "payerInn='" + payerInn + '\'' +
+               ", payments=" + paymentCount +
+               ", amount=" + amount +
+               '}';
+    }
+}
@@ -15,11 +15,22 @@ import java.util.Objects;
 @AllArgsConstructor
 @NoArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
-@Table(name = "payment")
+@Table(name = "payment", indexes = {
+        @Index(name = "idx_payment_payment_id", columnList = "payment_id"),
+        @Index(name = "idx_payment_file_name", columnList = "file_name"),
+        @Index(name = "idx_payment_payer_inn", columnList = "payer_inn"),
+        @Index(name = "idx_payment_status_code", columnList = "status_code, id")
+})
 public class Payment {
 
+    /**
+     * Шаг последовательности {@code payment_seq}; на него же опирается резервирование ID при COPY.
+     */
+    public static final int ID_ALLOCATION_SIZE = 100;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_seq")
+    @SequenceGenerator(name = "payment_seq", sequenceName = "payment_seq", allocationSize = ID_ALLOCATION_SIZE)
     @Column(nullable = false)
     Long id;
 
@@ -44,6 +55,13 @@ public class Payment {
     @Column(name = "file_name", nullable = false)
     String fileName;
 
+    /**
+     * Повтор уже принятого ID. В файле без недействительных строк статус DUPLICATE заменяется на FULL_SAVED,
+     * а отметка остается: по ней сводка не включает платеж в суммы.
+     */
+    @Column(name = "duplicate", nullable = false, columnDefinition = "boolean default false")
+    boolean duplicate;
+
     @Override
     public final boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,83 @@
+package com.levandr.custompaymentsystem.entity;
+
+
+import com.levandr.custompaymentsystem.enums.FileState;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.time.Instant;
+import java.util.Objects;
+
+@Getter
+@Setter
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "processed_file")
+public class ProcessedFile {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(nullable = false)
+    Long id;
+
+    @Column(name = "file_name", nullable = false, unique = true)
+    String fileName;
+
+    @Column(name = "file_size", nullable = false)
+    Long fileSize;
+
+    @Column(name = "modified_at", nullable = false)
+    Instant modifiedAt;
+
+    @Column(name = "content_hash", length = 64, nullable = false)
+    String contentHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "state", length = 16, nullable = false)
+    FileState state;
+
+    @Column(name = "updated_at", nullable = false)
+    Instant updatedAt;
+
+    @Column(name = "owner_node", length = 128)
+    String ownerNode;
+
+    @Column(name = "lease_until")
+    Instant leaseUntil;
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy ?
+                ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy ?
+                ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        ProcessedFile that = (ProcessedFile) o;
+        return getId() != null && Objects.equals(getId(), that.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ?
+                ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessedFile{" +
+               "id=" + id +
+               ", fileName='" + fileName + '\'' +
+               ", fileSize=" + fileSize +
+               ", modifiedAt=" + modifiedAt +
+               ", state=" + state +
+               ", ownerNode='" + ownerNode + '\'' +
+               ", leaseUntil=" + leaseUntil +
+               '}';
+    }
+}
@@ -0,0 +1,15 @@
+package com.levandr.custompaymentsystem.enums;
+
+/**
+ * Режим исполнителя, на котором обрабатываются файлы.
+ */
+public enum ExecutorMode {
+    /**
+     * Фиксированный пул платформенных потоков размером {@code spring.watcher.pool-size}.
+     */
+    FIXED,
+    /**
+     * Отдельный виртуальный поток на каждый файл (Java 21).
+     */
+    VIRTUAL
+}
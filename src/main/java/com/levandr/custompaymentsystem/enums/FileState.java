@@ -0,0 +1,10 @@
+package com.levandr.custompaymentsystem.enums;
+
+/**
+ * Состояние файла в журнале обработанных файлов.
+ */
+public enum FileState {
+    IN_PROGRESS,
+    DONE,
+    FAILED
+}
@@ -16,4 +16,18 @@ public enum PaymentStatus {
         this.code = code;
     }
 
+    /**
+     * @return статус по коду или {@code null}, если код неизвестен.
+     */
+    public static PaymentStatus fromCode(Integer code) {
+        if (code != null) {
+            for (PaymentStatus status : values()) {
+                if (status.code == code) {
+                    return status;
+                }
+            }
+        }
+        return null;
+    }
+
 }
@@ -0,0 +1,15 @@
+package com.levandr.custompaymentsystem.enums;
+
+/**
+ * Способ сохранения блоков платежей.
+ */
+public enum PersistenceMode {
+    /**
+     * {@code JpaRepository.saveAll} с пакетной вставкой JDBC; работает на любой БД.
+     */
+    JPA,
+    /**
+     * {@code COPY ... FROM STDIN} через {@code CopyManager}; только PostgreSQL.
+     */
+    COPY
+}
@@ -0,0 +1,39 @@
+package com.levandr.custompaymentsystem.enums;
+
+/**
+ * Причина, по которой строка BCP-файла отклонена. Проверка останавливается на первой причине.
+ */
+public enum RejectReason {
+    /**
+     * Длина строки вне допустимого диапазона.
+     */
+    LENGTH,
+    /**
+     * Номер записи - не 12 цифр.
+     */
+    RECORD_NUMBER,
+    /**
+     * ID платежа не соответствует {@code \d{9}-\d{9}-\d{9}-\d{9}-\d{9,10}}.
+     */
+    PAYMENT_ID,
+    /**
+     * Сумма не в формате {@code \d{1,19}\.\d{2}} или не помещается в {@code long} копеек.
+     */
+    AMOUNT_FORMAT,
+    /**
+     * ИНН плательщика - не 12 цифр.
+     */
+    PAYER_INN,
+    /**
+     * Имя компании длиннее 65 символов или не отделено пробелами.
+     */
+    COMPANY_NAME,
+    /**
+     * Не сходятся контрольные цифры ИНН.
+     */
+    INN_CHECKSUM,
+    /**
+     * Сумма вне диапазона {@code spring.parser.validation.amount-min/amount-max}.
+     */
+    AMOUNT_RANGE
+}
@@ -0,0 +1,17 @@
+package com.levandr.custompaymentsystem.enums;
+
+/**
+ * Когда платежам файла выставляются итоговые статусы (PARTIAL_OK/FULL_SAVED).
+ */
+public enum StatusFinalization {
+    /**
+     * До сохранения: отдельный проверочный проход по файлу определяет, есть ли недействительные строки,
+     * и статусы выставляются в блоке перед вставкой.
+     */
+    SCAN,
+    /**
+     * После сохранения: строки вставляются с предварительным статусом OK/DUPLICATE за один проход по файлу,
+     * в конце статусы меняются set-based UPDATE по {@code file_name}, отчет строится из БД.
+     */
+    BULK_UPDATE
+}
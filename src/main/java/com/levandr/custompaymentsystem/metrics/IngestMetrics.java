@@ -0,0 +1,199 @@
+package com.levandr.custompaymentsystem.metrics;
+
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationSummary;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Метрики конвейера обработки файлов (Micrometer, выгружаются через /actuator/prometheus).
+ * <p>
+ * Счетчики строк и платежей обновляются блоками, а не на каждую строку.
+ * Скорость обработки строк считается в Prometheus: {@code rate(ingest_lines_total[1m])}.
+ */
+@Component
+public class IngestMetrics {
+
+    private final MeterRegistry registry;
+
+    private final AtomicInteger filesQueued = new AtomicInteger();
+    private final AtomicInteger filesInFlight = new AtomicInteger();
+    private final Counter filesCompleted;
+    private final Counter filesFailed;
+    private final Counter filesSkipped;
+
+    private final Counter linesRead;
+    private final Counter linesInvalid;
+    private final Map<PaymentStatus, Counter> paymentsByStatus = new EnumMap<>(PaymentStatus.class);
+
+    private final Timer parseTimer;
+    private final Timer dbWriteTimer;
+    private final Timer reportWriteTimer;
+
+    public IngestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+
+        Gauge.builder("ingest.files.queued", filesQueued, AtomicInteger::get)
+                .description("Файлы, ожидающие свободного обработчика")
+                .register(registry);
+        Gauge.builder("ingest.files.in_flight", filesInFlight, AtomicInteger::get)
+                .description("Файлы в обработке")
+                .register(registry);
+        filesCompleted = Counter.builder("ingest.files.completed").register(registry);
+        filesFailed = Counter.builder("ingest.files.failed").register(registry);
+        filesSkipped = Counter.builder("ingest.files.skipped")
+                .description("Пропущенные файлы: имя не подходит, уже загружены или обрабатываются другим узлом")
+                .register(registry);
+
+        linesRead = Counter.builder("ingest.lines").description("Прочитанные строки").register(registry);
+        linesInvalid = Counter.builder("ingest.lines.invalid").description("Невалидные строки").register(registry);
+        for (PaymentStatus status : PaymentStatus.values()) {
+            paymentsByStatus.put(status, Counter.builder("ingest.payments")
+                    .tag("status", status.name())
+                    .tag("code", String.valueOf(status.getCode()))
+                    .register(registry));
+        }
+
+        parseTimer = Timer.builder("ingest.file.parse")
+                .description("Полная обработка файла")
+                .publishPercentileHistogram()
+                .register(registry);
+        dbWriteTimer = Timer.builder("ingest.db.write")
+                .description("Сохранение блока платежей")
+                .publishPercentileHistogram()
+                .register(registry);
+        reportWriteTimer = Timer.builder("ingest.report.write")
+                .description("Запись блока отчета")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Оборачивает исполнитель файлов метриками пула (executor.queued, executor.active и т.д.).
+     */
+    public ExecutorService monitor(ExecutorService executorService, String name) {
+        return ExecutorServiceMetrics.monitor(registry, executorService, name);
+    }
+
+    /**
+     * Метрики кэша (cache.gets с тегом result=hit/miss, cache.evictions, cache.size).
+     */
+    public void monitorCache(Cache<?, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+    }
+
+    /**
+     * Файлы в очереди наблюдателя по классу размера: {@code ingest.files.scheduled{size=small|large}}.
+     */
+    public void monitorFileQueue(String sizeClass, Supplier<Number> queued) {
+        Gauge.builder("ingest.files.scheduled", queued)
+                .tag("size", sizeClass)
+                .description("Файлы, ожидающие обработки, по классу размера")
+                .register(registry);
+    }
+
+    public void fileQueued() {
+        filesQueued.incrementAndGet();
+    }
+
+    /**
+     * Файл покинул очередь, не начав обработку (например, исполнитель уже остановлен).
+     */
+    public void fileDequeued() {
+        filesQueued.decrementAndGet();
+    }
+
+    public void fileStarted() {
+        filesQueued.decrementAndGet();
+        filesInFlight.incrementAndGet();
+    }
+
+    public void fileFinished(boolean success) {
+        filesInFlight.decrementAndGet();
+        (success ? filesCompleted : filesFailed).increment();
+    }
+
+    /**
+     * Файл взят из очереди, но не обрабатывался: имя не подходит под шаблон или журнал не отдал его этому узлу.
+     */
+    public void fileSkipped() {
+        filesInFlight.decrementAndGet();
+        filesSkipped.increment();
+    }
+
+    public void recordLines(long total, long invalid) {
+        linesRead.increment(total);
+        linesInvalid.increment(invalid);
+    }
+
+    public void recordPayments(List<Payment> payments) {
+        int[] counts = new int[PaymentStatus.values().length];
+        for (Payment payment : payments) {
+            count(counts, payment.getStatusCode());
+        }
+        incrementPayments(counts);
+    }
+
+    public void recordPayments(PaymentBatch batch) {
+        int[] counts = new int[PaymentStatus.values().length];
+        for (int i = 0; i < batch.size(); i++) {
+            count(counts, batch.statusCode(i));
+        }
+        incrementPayments(counts);
+    }
+
+    /**
+     * Платежи файла по итоговым статусам, когда статусы выставлены в БД после сохранения.
+     */
+    public void recordPayments(ReconciliationSummary summary) {
+        for (PaymentStatus status : PaymentStatus.values()) {
+            long count = summary.count(status);
+            if (count > 0) {
+                paymentsByStatus.get(status).increment(count);
+            }
+        }
+    }
+
+    private static void count(int[] counts, Integer statusCode) {
+        PaymentStatus status = PaymentStatus.fromCode(statusCode);
+        if (status != null) {
+            counts[status.ordinal()]++;
+        }
+    }
+
+    private void incrementPayments(int[] counts) {
+        for (PaymentStatus status : PaymentStatus.values()) {
+            if (counts[status.ordinal()] > 0) {
+                paymentsByStatus.get(status).increment(counts[status.ordinal()]);
+            }
+        }
+    }
+
+    public void recordParse(long nanos) {
+        parseTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDbWrite(long nanos) {
+        dbWriteTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordReportWrite(long nanos) {
+        reportWriteTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,35 @@
+package com.levandr.custompaymentsystem.repository;
+
+import com.levandr.custompaymentsystem.entity.DailySummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface DailySummaryRepository extends JpaRepository<DailySummary, Long> {
+    Optional<DailySummary> findByBusinessDate(LocalDate businessDate);
+
+    /**
+     * Прибавляет итоги файла к итогам дня одним UPDATE; отрицательные значения вычитают
+     * ранее учтенный файл.
+     *
+     * @return {@code 0}, если строки дня еще нет.
+     */
+    @Modifying
+    @Query("update DailySummary d set d.fileCount = d.fileCount + :files, "
+            + "d.paymentCount = d.paymentCount + :payments, d.amount = d.amount + :amount, "
+            + "d.fullSavedCount = d.fullSavedCount + :fullSaved, d.partialOkCount = d.partialOkCount + :partialOk, "
+            + "d.duplicateCount = d.duplicateCount + :duplicates, d.invalidLines = d.invalidLines + :invalidLines, "
+            + "d.updatedAt = :now where d.businessDate = :date")
+    int add(@Param("date") LocalDate date, @Param("files") long files, @Param("payments") long payments,
+            @Param("amount") BigDecimal amount, @Param("fullSaved") long fullSaved,
+            @Param("partialOk") long partialOk, @Param("duplicates") long duplicates,
+            @Param("invalidLines") long invalidLines, @Param("now") Instant now);
+}
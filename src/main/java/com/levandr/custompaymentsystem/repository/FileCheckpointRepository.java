@@ -0,0 +1,21 @@
+package com.levandr.custompaymentsystem.repository;
+
+import com.levandr.custompaymentsystem.entity.FileCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface FileCheckpointRepository extends JpaRepository<FileCheckpoint, Long> {
+    List<FileCheckpoint> findByFileNameOrderByStartOffset(String fileName);
+
+    @Modifying
+    @Transactional
+    @Query("delete from FileCheckpoint c where c.fileName = :fileName")
+    int deleteByFileName(@Param("fileName") String fileName);
+}
@@ -0,0 +1,16 @@
+package com.levandr.custompaymentsystem.repository;
+
+import com.levandr.custompaymentsystem.entity.FileSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FileSummaryRepository extends JpaRepository<FileSummary, Long> {
+    Optional<FileSummary> findByFileName(String fileName);
+
+    List<FileSummary> findByBusinessDateOrderByFileName(LocalDate businessDate);
+}
@@ -1,12 +1,95 @@
 package com.levandr.custompaymentsystem.repository;
 
 import com.levandr.custompaymentsystem.entity.Payment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PaymentEntityRepository extends JpaRepository<Payment, Long> {
     Optional<Payment> findByPaymentId(String paymentId);
-}
\ No newline at end of file
+
+    /**
+     * Все записи с данным ID платежа, включая дубликаты.
+     */
+    List<Payment> findAllByPaymentIdOrderById(String paymentId);
+
+    List<Payment> findByFileNameOrderById(String fileName, Pageable pageable);
+
+    boolean existsByFileName(String fileName);
+
+    List<Payment> findByPayerInnOrderById(String payerInn, Pageable pageable);
+
+    List<Payment> findByStatusCodeOrderById(Integer statusCode, Pageable pageable);
+
+    /**
+     * Платежи файла по возрастанию id начиная после {@code afterId} (keyset-пагинация).
+     */
+    List<Payment> findByFileNameAndIdGreaterThanOrderById(String fileName, Long afterId, Pageable pageable);
+
+    /**
+     * Меняет статус всех платежей файла одним UPDATE по индексу {@code file_name}.
+     *
+     * @return число измененных записей.
+     */
+    @Modifying
+    @Transactional
+    @Query("update Payment p set p.statusCode = :to where p.fileName = :fileName and p.statusCode = :from")
+    int updateStatusCode(@Param("fileName") String fileName, @Param("from") Integer from, @Param("to") Integer to);
+
+    /**
+     * Удаляет все платежи файла.
+     *
+     * @return число удаленных записей.
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from Payment p where p.fileName = :fileName")
+    int deleteByFileName(@Param("fileName") String fileName);
+
+    /**
+     * Постраничная выгрузка идентификаторов платежей по возрастанию id (keyset-пагинация).
+     */
+    @Query("select p.id as id, p.paymentId as paymentId from Payment p where p.id > :afterId order by p.id")
+    List<PaymentIdView> findPaymentIdsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * Идентификаторы принятых (не дубликатов) платежей файла по возрастанию id начиная после {@code afterId}
+     * (keyset-пагинация).
+     */
+    @Query("select p.id as id, p.paymentId as paymentId from Payment p"
+            + " where p.fileName = :fileName and p.duplicate = false and p.id > :afterId order by p.id")
+    List<PaymentIdView> findFileAcceptedPaymentIdsAfter(@Param("fileName") String fileName,
+                                                        @Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * Идентификаторы платежей файла, которых нет в других файлах, по возрастанию id начиная после {@code afterId}.
+     */
+    @Query("select p.id as id, p.paymentId as paymentId from Payment p"
+            + " where p.fileName = :fileName and p.id > :afterId and not exists"
+            + " (select o.id from Payment o where o.paymentId = p.paymentId and o.fileName <> :fileName)"
+            + " order by p.id")
+    List<PaymentIdView> findFileOnlyPaymentIdsAfter(@Param("fileName") String fileName, @Param("afterId") long afterId,
+                                                    Pageable pageable);
+
+    /**
+     * Те из {@code paymentIds}, что уже сохранены платежами других файлов.
+     */
+    @Query("select distinct p.paymentId from Payment p where p.paymentId in :paymentIds and p.fileName <> :fileName")
+    List<String> findPaymentIdsInOtherFiles(@Param("paymentIds") Collection<String> paymentIds,
+                                            @Param("fileName") String fileName);
+
+    interface PaymentIdView {
+        Long getId();
+
+        String getPaymentId();
+    }
+}
@@ -0,0 +1,42 @@
+package com.levandr.custompaymentsystem.repository;
+
+import com.levandr.custompaymentsystem.entity.ProcessedFile;
+import com.levandr.custompaymentsystem.enums.FileState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ProcessedFileRepository extends JpaRepository<ProcessedFile, Long> {
+    Optional<ProcessedFile> findByFileName(String fileName);
+
+    /**
+     * Атомарно захватывает запись журнала за узлом, если она не захвачена другим узлом с действующей арендой.
+     *
+     * @return 1, если захват удался, иначе 0.
+     */
+    @Modifying
+    @Transactional
+    @Query("update ProcessedFile f set f.ownerNode = :node, f.leaseUntil = :leaseUntil, f.state = :inProgress, "
+            + "f.updatedAt = :now where f.id = :id and (f.state <> :inProgress or f.leaseUntil is null "
+            + "or f.leaseUntil < :now or f.ownerNode = :node)")
+    int claim(@Param("id") Long id, @Param("node") String node, @Param("now") Instant now,
+              @Param("leaseUntil") Instant leaseUntil, @Param("inProgress") FileState inProgress);
+
+    /**
+     * Продлевает аренду всех файлов, которые узел обрабатывает сейчас.
+     */
+    @Modifying
+    @Transactional
+    @Query("update ProcessedFile f set f.leaseUntil = :leaseUntil where f.ownerNode = :node and f.state = :state")
+    int renewLeases(@Param("node") String node, @Param("leaseUntil") Instant leaseUntil, @Param("state") FileState state);
+
+    List<ProcessedFile> findByStateAndLeaseUntilBefore(FileState state, Instant now);
+}
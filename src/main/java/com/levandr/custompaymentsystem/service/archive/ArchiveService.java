@@ -0,0 +1,293 @@
+package com.levandr.custompaymentsystem.service.archive;
+
+import com.levandr.custompaymentsystem.service.parser.BcpFileNames;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Архив обработанных входных файлов ({@code spring.archive.*}).
+ * <p>
+ * Обработанный файл переносится из каталога Input в раздел архива {@code <archive>/<yyyy-MM-dd>} по дате
+ * из имени {@code BCP_YYYYMMDD_...} атомарным переименованием, без копирования данных; для этого архив
+ * должен лежать на той же файловой системе (по умолчанию - каталог Archive рядом с Input). Поэтому
+ * просмотр Input при старте стоит столько, сколько файлов ждут обработки, а не вся история.
+ * <p>
+ * Разделы старше {@code compress-after-days} дней сжимаются в {@code <yyyy-MM-dd>.zip} в фоне одним
+ * потоком с низким приоритетом; скорость чтения ограничивается {@code compress-bytes-per-second}.
+ * Архив пишется во временный файл и переносится на место целиком, только после этого раздел удаляется.
+ * Временный файл, не менявшийся дольше {@code compress-interval-millis}, считается брошенным и удаляется.
+ */
+@Service
+public class ArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveService.class);
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    @Value("${spring.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${spring.input.directory}")
+    private Path inputDirectory;
+
+    @Value("${spring.archive.directory:#{null}}")
+    private Path archiveDirectory;
+
+    @Value("${spring.archive.compress-after-days:7}")
+    private int compressAfterDays;
+
+    @Value("${spring.archive.compression-level:6}")
+    private int compressionLevel;
+
+    /**
+     * Ограничение скорости сжатия; {@code 0} - без ограничения.
+     */
+    @Value("${spring.archive.compress-bytes-per-second:0}")
+    private long compressBytesPerSecond;
+
+    /**
+     * Временный архив, не менявшийся дольше интервала сжатия, остался от прерванного сжатия.
+     */
+    @Value("${spring.archive.compress-interval-millis:3600000}")
+    private long compressIntervalMillis;
+
+    @Value("${spring.watcher.done-marker-suffix:.done}")
+    private String doneMarkerSuffix;
+
+    private final AtomicBoolean compressing = new AtomicBoolean();
+    private ExecutorService compressor;
+
+    @PostConstruct
+    public void init() {
+        if (archiveDirectory == null) {
+            archiveDirectory = inputDirectory.toAbsolutePath().resolveSibling("Archive");
+        }
+        compressor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "archive-compressor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        if (enabled) {
+            log.info("Архив обработанных файлов: {}, сжатие разделов старше {} дней", archiveDirectory, compressAfterDays);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Переносит обработанный файл в раздел архива и удаляет его маркер готовности.
+     * Ошибка переноса только пишется в лог: файл останется в Input и будет пропущен журналом.
+     */
+    public void archive(Path filePath) {
+        if (!enabled) {
+            return;
+        }
+        String fileName = filePath.getFileName().toString();
+        try {
+            Path partition = archiveDirectory.resolve(BcpFileNames.date(fileName).toString());
+            Files.createDirectories(partition);
+            Path target = partition.resolve(fileName);
+            try {
+                Files.move(filePath, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                log.warn("Архив на другой файловой системе, файл будет скопирован: {}", target);
+                Files.move(filePath, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.deleteIfExists(filePath.resolveSibling(fileName + doneMarkerSuffix));
+            log.info("Файл перенесен в архив: {}", target);
+        } catch (IOException e) {
+            log.error("Не удалось перенести файл в архив: {}", filePath, e);
+        }
+    }
+
+    /**
+     * Запускает сжатие старых разделов в фоновом потоке, если оно еще не идет.
+     * Поток планировщика не занимается сжатием, чтобы не задерживать продление аренды файлов.
+     */
+    @Scheduled(initialDelayString = "${spring.archive.compress-initial-delay-millis:60000}",
+            fixedDelayString = "${spring.archive.compress-interval-millis:3600000}")
+    public void compressOldPartitions() {
+        if (!enabled || !compressing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            compressor.submit(() -> {
+                try {
+                    compressPartitions(LocalDate.now().minusDays(compressAfterDays));
+                } finally {
+                    compressing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            compressing.set(false);
+        }
+    }
+
+    /**
+     * Сжимает разделы с датой раньше {@code before}.
+     */
+    void compressPartitions(LocalDate before) {
+        if (!Files.isDirectory(archiveDirectory)) {
+            return;
+        }
+        List<Path> partitions = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(archiveDirectory, Files::isDirectory)) {
+            for (Path partition : stream) {
+                LocalDate date = parseDate(partition.getFileName().toString());
+                if (date != null && date.isBefore(before)) {
+                    partitions.add(partition);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Не удалось просмотреть архив: {}", archiveDirectory, e);
+            return;
+        }
+        partitions.sort(null);
+        for (Path partition : partitions) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                compress(partition);
+            } catch (IOException e) {
+                log.error("Не удалось сжать раздел архива: {}", partition, e);
+            }
+        }
+    }
+
+    private void compress(Path partition) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(partition)) {
+            files = stream.filter(Files::isRegularFile).sorted().toList();
+        }
+        String name = partition.getFileName().toString();
+        Path part = partition.resolveSibling(name + ".zip.part");
+        deleteIfStale(part);
+        long startedAt = System.nanoTime();
+        long bytes = 0;
+
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), BUFFER_SIZE))) {
+            zip.setLevel(compressionLevel);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (Path file : files) {
+                zip.putNextEntry(new ZipEntry(file.getFileName().toString()));
+                bytes = copy(file, zip, buffer, bytes, startedAt);
+                zip.closeEntry();
+            }
+        } catch (FileAlreadyExistsException e) {
+            log.info("Раздел архива уже сжимается: {}", partition);
+            return;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+
+        Path target = zipTarget(partition);
+        Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        try {
+            Files.deleteIfExists(partition);
+        } catch (DirectoryNotEmptyException e) {
+            log.info("В раздел архива добавлены новые файлы, они будут сжаты позже: {}", partition);
+        }
+        log.info("Раздел архива сжат: {} ({} файлов, {} байт, {} мс)", target, files.size(), bytes,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    /**
+     * Удаляет временный архив, брошенный прерванным сжатием (остановка или падение узла): иначе
+     * {@code CREATE_NEW} не даст сжать раздел никогда. Свежий файл не трогается - его еще пишут.
+     */
+    private void deleteIfStale(Path part) throws IOException {
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(part);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if (System.currentTimeMillis() - modified.toMillis() > compressIntervalMillis) {
+            log.warn("Удален временный архив прерванного сжатия: {}", part);
+            Files.deleteIfExists(part);
+        }
+    }
+
+    /**
+     * Копирует файл в архив, притормаживая, если скорость превышает {@code compressBytesPerSecond}.
+     */
+    private long copy(Path file, OutputStream target, byte[] buffer, long written, long startedAt) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                target.write(buffer, 0, read);
+                written += read;
+                if (compressBytesPerSecond > 0) {
+                    long aheadNanos = written * TimeUnit.SECONDS.toNanos(1) / compressBytesPerSecond
+                            - (System.nanoTime() - startedAt);
+                    if (aheadNanos > 0) {
+                        try {
+                            TimeUnit.NANOSECONDS.sleep(aheadNanos);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException("Сжатие архива прервано", e);
+                        }
+                    }
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * {@code <yyyy-MM-dd>.zip}, а если он уже есть (раздел дополнялся после сжатия) - с номером.
+     */
+    private static Path zipTarget(Path partition) {
+        String name = partition.getFileName().toString();
+        Path target = partition.resolveSibling(name + ".zip");
+        for (int i = 1; Files.exists(target); i++) {
+            target = partition.resolveSibling(name + "-" + i + ".zip");
+        }
+        return target;
+    }
+
+    private static LocalDate parseDate(String partitionName) {
+        try {
+            return LocalDate.parse(partitionName);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compressor.shutdownNow();
+    }
+}
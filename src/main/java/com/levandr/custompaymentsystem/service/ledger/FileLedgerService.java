@@ -0,0 +1,261 @@
+package com.levandr.custompaymentsystem.service.ledger;
+
+import com.levandr.custompaymentsystem.entity.ProcessedFile;
+import com.levandr.custompaymentsystem.enums.FileState;
+import com.levandr.custompaymentsystem.repository.ProcessedFileRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Журнал обработанных файлов в БД.
+ * <p>
+ * Файл считается обработанным, если для его имени есть запись в состоянии DONE с тем же размером
+ * и временем изменения; если совпадает только размер, дополнительно сравнивается SHA-256 содержимого.
+ * Поэтому повторный просмотр каталога после перезапуска стоит одного запроса по индексу на файл.
+ * В памяти хранятся только файлы, которые обрабатываются прямо сейчас.
+ * <p>
+ * Запись журнала служит и захватом файла узлом: несколько экземпляров приложения на общем каталоге
+ * Input делят файлы между собой. Новый файл захватывает тот, чья вставка прошла уникальный индекс
+ * по имени; существующая запись захватывается условным UPDATE. Захват действует {@code lease-millis}
+ * и продлевается, пока узел обрабатывает файл; файл упавшего узла после истечения аренды
+ * забирает другой узел (см. {@link #expiredClaims()}).
+ */
+@Service
+@RequiredArgsConstructor
+public class FileLedgerService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileLedgerService.class);
+    private final ProcessedFileRepository processedFileRepository;
+
+    /**
+     * Хеш файла в режиме tail до его завершения.
+     */
+    private static final String PENDING_HASH = "";
+
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Имя узла в журнале; по умолчанию {@code <host>-<pid>-<случайный суффикс>}. Суффикс различает
+     * несколько контекстов приложения в одной JVM: с одинаковым именем они считали бы захваты
+     * друг друга своими и обрабатывали бы один файл дважды.
+     */
+    @Value("${spring.cluster.node-id:}")
+    private String nodeId;
+
+    @Value("${spring.cluster.lease-millis:60000}")
+    private long leaseMillis;
+
+    @PostConstruct
+    public void init() {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = defaultNodeId();
+        }
+        log.info("Узел {}: аренда файла {} мс", nodeId, leaseMillis);
+    }
+
+    /**
+     * Отмечает файл как IN_PROGRESS, если его нужно обработать.
+     *
+     * @return {@code false}, если файл уже обработан или обрабатывается сейчас этим или другим узлом.
+     */
+    public boolean tryStart(Path filePath) {
+        return tryStart(filePath, true);
+    }
+
+    /**
+     * Захват файла, который еще дописывается (режим tail): содержимое не хешируется,
+     * хеш передается в {@link #markDone(Path, String)} по завершении файла.
+     */
+    public boolean tryStartTail(Path filePath) {
+        return tryStart(filePath, false);
+    }
+
+    private boolean tryStart(Path filePath, boolean hashContent) {
+        if (!inFlight.add(filePath)) {
+            log.info("Файл уже обрабатывается: {}", filePath);
+            return false;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+            String fileName = filePath.getFileName().toString();
+            ProcessedFile entry = processedFileRepository.findByFileName(fileName).orElse(null);
+
+            String contentHash = null;
+            if (entry != null && entry.getState() == FileState.DONE) {
+                if (entry.getFileSize() == attributes.size()
+                        && entry.getModifiedAt().equals(attributes.lastModifiedTime().toInstant())) {
+                    log.info("Файл уже обработан: {}", filePath);
+                    inFlight.remove(filePath);
+                    return false;
+                }
+                if (hashContent && entry.getFileSize() == attributes.size()) {
+                    contentHash = hash(filePath);
+                    if (contentHash.equals(entry.getContentHash())) {
+                        log.info("Файл уже обработан (изменилось только время): {}", filePath);
+                        inFlight.remove(filePath);
+                        return false;
+                    }
+                }
+            }
+
+            Instant now = Instant.now();
+            Instant leaseUntil = now.plusMillis(leaseMillis);
+            if (entry == null) {
+                entry = new ProcessedFile();
+                entry.setFileName(fileName);
+            } else if (processedFileRepository.claim(entry.getId(), nodeId, now, leaseUntil, FileState.IN_PROGRESS) == 0) {
+                log.info("Файл обрабатывается узлом {}: {}", entry.getOwnerNode(), filePath);
+                inFlight.remove(filePath);
+                return false;
+            } else if (entry.getState() == FileState.IN_PROGRESS && !nodeId.equals(entry.getOwnerNode())) {
+                log.warn("Аренда узла {} истекла, файл забран узлом {}: {}", entry.getOwnerNode(), nodeId, filePath);
+            }
+            entry.setOwnerNode(nodeId);
+            entry.setLeaseUntil(leaseUntil);
+            entry.setFileSize(attributes.size());
+            entry.setModifiedAt(attributes.lastModifiedTime().toInstant());
+            entry.setContentHash(contentHash != null ? contentHash : hashContent ? hash(filePath) : PENDING_HASH);
+            entry.setState(FileState.IN_PROGRESS);
+            entry.setUpdatedAt(now);
+            processedFileRepository.save(entry);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            log.info("Файл захвачен другим узлом: {}", filePath);
+            inFlight.remove(filePath);
+            return false;
+        } catch (IOException e) {
+            log.error("Не удалось зарегистрировать файл в журнале: {}", filePath, e);
+            inFlight.remove(filePath);
+            return false;
+        }
+    }
+
+    /**
+     * Файл уже обработан: в журнале DONE с тем же размером и временем изменения.
+     */
+    public boolean isDone(Path filePath) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+            return processedFileRepository.findByFileName(filePath.getFileName().toString())
+                    .filter(entry -> entry.getState() == FileState.DONE)
+                    .filter(entry -> entry.getFileSize() == attributes.size()
+                            && entry.getModifiedAt().equals(attributes.lastModifiedTime().toInstant()))
+                    .isPresent();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void markDone(Path filePath) {
+        finish(filePath, FileState.DONE, null);
+    }
+
+    /**
+     * Завершает файл, хеш которого посчитан по ходу чтения.
+     */
+    public void markDone(Path filePath, String contentHash) {
+        finish(filePath, FileState.DONE, contentHash);
+    }
+
+    /**
+     * Файл в состоянии FAILED будет обработан повторно при следующем просмотре каталога.
+     */
+    public void markFailed(Path filePath) {
+        finish(filePath, FileState.FAILED, null);
+    }
+
+    /**
+     * Продлевает аренду файлов, которые узел обрабатывает сейчас.
+     */
+    @Scheduled(fixedDelayString = "${spring.cluster.lease-renew-millis:15000}")
+    public void renewLeases() {
+        if (!inFlight.isEmpty()) {
+            processedFileRepository.renewLeases(nodeId, Instant.now().plusMillis(leaseMillis), FileState.IN_PROGRESS);
+        }
+    }
+
+    /**
+     * Имена файлов в состоянии IN_PROGRESS с истекшей арендой - их узел, вероятно, упал.
+     */
+    public List<String> expiredClaims() {
+        return processedFileRepository.findByStateAndLeaseUntilBefore(FileState.IN_PROGRESS, Instant.now()).stream()
+                .map(ProcessedFile::getFileName)
+                .toList();
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    private void finish(Path filePath, FileState state, String contentHash) {
+        try {
+            processedFileRepository.findByFileName(filePath.getFileName().toString()).ifPresent(entry -> {
+                if (entry.getOwnerNode() != null && !entry.getOwnerNode().equals(nodeId)) {
+                    log.warn("Файл {} уже забран узлом {}, состояние {} не записано", filePath, entry.getOwnerNode(), state);
+                    return;
+                }
+                entry.setState(state);
+                if (contentHash != null) {
+                    entry.setContentHash(contentHash);
+                    entry.setFileSize(filePath.toFile().length());
+                    entry.setModifiedAt(Instant.ofEpochMilli(filePath.toFile().lastModified()));
+                }
+                entry.setOwnerNode(null);
+                entry.setLeaseUntil(null);
+                entry.setUpdatedAt(Instant.now());
+                processedFileRepository.save(entry);
+            });
+        } finally {
+            inFlight.remove(filePath);
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "node";
+        }
+        return host + "-" + ProcessHandle.current().pid() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public static String hash(Path filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
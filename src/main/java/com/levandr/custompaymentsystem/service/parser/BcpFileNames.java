@@ -0,0 +1,43 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Дата и время из имени {@code BCP_YYYYMMDD_HHMMSS_XXXX}: раздел архива, дата сверки и порядок в очереди
+ * берутся отсюда, чтобы все они понимали имя одинаково.
+ */
+public final class BcpFileNames {
+
+    private static final Pattern DATE_IN_NAME = Pattern.compile("(?<!\\d)(\\d{8})(?!\\d)");
+    private static final Pattern TIMESTAMP_IN_NAME = Pattern.compile("(\\d{8})_(\\d{6})");
+
+    private BcpFileNames() {
+    }
+
+    /**
+     * Первая отдельная группа из восьми цифр имени как {@code yyyyMMdd}, иначе текущая дата.
+     */
+    public static LocalDate date(String fileName) {
+        Matcher matcher = DATE_IN_NAME.matcher(fileName);
+        if (matcher.find()) {
+            try {
+                return LocalDate.parse(matcher.group(1), DateTimeFormatter.BASIC_ISO_DATE);
+            } catch (DateTimeParseException ignored) {
+                // не дата - берем текущую
+            }
+        }
+        return LocalDate.now();
+    }
+
+    /**
+     * Время из имени как число {@code yyyyMMddHHmmss}; {@code 0}, если в имени его нет.
+     */
+    public static long timestamp(String fileName) {
+        Matcher matcher = TIMESTAMP_IN_NAME.matcher(fileName);
+        return matcher.find() ? Long.parseLong(matcher.group(1) + matcher.group(2)) : 0;
+    }
+}
@@ -0,0 +1,46 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import com.levandr.custompaymentsystem.enums.RejectReason;
+
+/**
+ * Дополнительное правило проверки строки, которое выполняется после разбора формата.
+ * Правило читает поля прямо из буфера разборщика и не создает объектов.
+ */
+@FunctionalInterface
+public interface BcpLineRule {
+
+    /**
+     * @return причину отклонения или {@code null}, если строка проходит правило.
+     */
+    RejectReason check(BcpRecordParser line);
+
+    /**
+     * Контрольные цифры 12-значного ИНН (11-я и 12-я цифры).
+     */
+    static BcpLineRule innChecksum() {
+        int[] first = {7, 2, 4, 10, 3, 5, 9, 4, 6, 8};
+        int[] second = {3, 7, 2, 4, 10, 3, 5, 9, 4, 6, 8};
+        return line -> {
+            int sum = 0;
+            for (int i = 0; i < first.length; i++) {
+                sum += first[i] * line.innDigit(i);
+            }
+            if (sum % 11 % 10 != line.innDigit(10)) {
+                return RejectReason.INN_CHECKSUM;
+            }
+            sum = 0;
+            for (int i = 0; i < second.length; i++) {
+                sum += second[i] * line.innDigit(i);
+            }
+            return sum % 11 % 10 == line.innDigit(11) ? null : RejectReason.INN_CHECKSUM;
+        };
+    }
+
+    /**
+     * Сумма в копейках в диапазоне {@code [minCents, maxCents]}.
+     */
+    static BcpLineRule amountRange(long minCents, long maxCents) {
+        return line -> line.amountCents() >= minCents && line.amountCents() <= maxCents
+                ? null : RejectReason.AMOUNT_RANGE;
+    }
+}
@@ -0,0 +1,11 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+/**
+ * Разобранная строка BCP-файла. Сумма хранится в копейках.
+ */
+public record BcpRecord(String recordNumber,
+                        String paymentId,
+                        String companyName,
+                        String payerInn,
+                        long amountCents) {
+}
@@ -0,0 +1,281 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import com.levandr.custompaymentsystem.enums.RejectReason;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Разбор строки BCP-файла по смещениям байтов, без регулярных выражений и промежуточных строк.
+ * <p>
+ * Формат строки (позиции в символах, см. README):
+ * <pre>
+ * 0-11    номер записи (12 цифр)
+ * 13-62   ID платежа \d{9}-\d{9}-\d{9}-\d{9}-\d{9,10}
+ * 64-128  имя компании (до 65 символов, UTF-8)
+ * 130-141 ИНН плательщика (12 цифр)
+ * 143+    сумма \d{1,19}\.\d{2}
+ * </pre>
+ * Номер записи и ID платежа разбираются от начала строки, ИНН и сумма - от конца,
+ * имя компании - все, что между ними. Сумма декодируется в копейки ({@code long}).
+ * <p>
+ * Проверка останавливается на первом нарушении; его причина доступна через {@link #rejectReason()}.
+ * После проверки формата выполняются дополнительные правила {@link BcpLineRule} (см. {@link BcpValidation}).
+ * <p>
+ * Экземпляр не потокобезопасен: внутри используется буфер строки.
+ */
+public class BcpRecordParser {
+
+    static final int MIN_LINE_LENGTH = 154;
+    static final int MAX_LINE_LENGTH = 156;
+    private static final int MAX_LINE_BYTES = MAX_LINE_LENGTH * 4;
+    private static final int MAX_COMPANY_LENGTH = 65;
+    private static final int MAX_AMOUNT_DIGITS = 19;
+
+    private static final int RECORD_NUMBER_LENGTH = 12;
+    private static final int PAYMENT_ID_OFFSET = 13;
+    private static final int INN_LENGTH = 12;
+
+    private final byte[] line = new byte[MAX_LINE_BYTES];
+    private final BcpLineRule[] rules;
+
+    private int length;
+    private int paymentIdEnd;
+    private int companyStart;
+    private int innStart;
+    private int amountStart;
+    private long amountCents;
+    private RejectReason rejectReason;
+
+    /**
+     * Разборщик только с проверкой формата.
+     */
+    public BcpRecordParser() {
+        this(List.of());
+    }
+
+    public BcpRecordParser(List<BcpLineRule> rules) {
+        this.rules = rules.toArray(BcpLineRule[]::new);
+    }
+
+    /**
+     * Проверяет строку {@code [start, end)} буфера без создания объектов.
+     */
+    public boolean isValid(ByteBuffer buffer, int start, int end) {
+        rejectReason = load(buffer, start, end) ? validate() : RejectReason.LENGTH;
+        return rejectReason == null;
+    }
+
+    /**
+     * Причина отклонения последней проверенной строки или {@code null}, если строка корректна.
+     */
+    public RejectReason rejectReason() {
+        return rejectReason;
+    }
+
+    long amountCents() {
+        return amountCents;
+    }
+
+    /**
+     * Цифра ИНН с номером {@code index} (0-11).
+     */
+    int innDigit(int index) {
+        return line[innStart + index] - '0';
+    }
+
+    /**
+     * Разбирает строку {@code [start, end)} буфера.
+     *
+     * @return запись или {@code null}, если строка не соответствует формату.
+     */
+    public BcpRecord parse(ByteBuffer buffer, int start, int end) {
+        if (!isValid(buffer, start, end)) {
+            return null;
+        }
+        return new BcpRecord(
+                ascii(0, RECORD_NUMBER_LENGTH),
+                ascii(PAYMENT_ID_OFFSET, paymentIdEnd - PAYMENT_ID_OFFSET),
+                company(),
+                ascii(innStart, INN_LENGTH),
+                amountCents);
+    }
+
+    /**
+     * Копирует строку во внутренний буфер, отбрасывая BOM и пробельные символы по краям
+     * (аналог {@code replace("﻿", "").trim()}).
+     */
+    private boolean load(ByteBuffer buffer, int start, int end) {
+        while (end - start >= 3 && buffer.get(start) == (byte) 0xEF
+                && buffer.get(start + 1) == (byte) 0xBB && buffer.get(start + 2) == (byte) 0xBF) {
+            start += 3;
+        }
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        length = end - start;
+        if (length < MIN_LINE_LENGTH || length > MAX_LINE_BYTES) {
+            return false;
+        }
+        buffer.get(start, line, 0, length);
+        return true;
+    }
+
+    private RejectReason validate() {
+        int charLength = charLength(0, length);
+        if (charLength < MIN_LINE_LENGTH || charLength > MAX_LINE_LENGTH) {
+            return RejectReason.LENGTH;
+        }
+        if (!digits(0, RECORD_NUMBER_LENGTH) || line[RECORD_NUMBER_LENGTH] != ' ') {
+            return RejectReason.RECORD_NUMBER;
+        }
+        if (!validatePaymentId()) {
+            return RejectReason.PAYMENT_ID;
+        }
+        RejectReason tailReason = validateTail();
+        if (tailReason != null) {
+            return tailReason;
+        }
+        if (!validateCompany()) {
+            return RejectReason.COMPANY_NAME;
+        }
+        for (BcpLineRule rule : rules) {
+            RejectReason reason = rule.check(this);
+            if (reason != null) {
+                return reason;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@code \d{9}-\d{9}-\d{9}-\d{9}-\d{9,10} } начиная с позиции 13.
+     */
+    private boolean validatePaymentId() {
+        int position = PAYMENT_ID_OFFSET;
+        for (int segment = 0; segment < 4; segment++) {
+            if (!digits(position, 9) || line[position + 9] != '-') {
+                return false;
+            }
+            position += 10;
+        }
+        if (!digits(position, 9)) {
+            return false;
+        }
+        position += 9;
+        if (isDigit(line[position])) {
+            position++;
+        }
+        if (line[position] != ' ') {
+            return false;
+        }
+        paymentIdEnd = position;
+        companyStart = position + 1;
+        return true;
+    }
+
+    /**
+     * {@code  \d{12} \d{1,19}\.\d{2}} в конце строки; сумма сразу переводится в копейки.
+     */
+    private RejectReason validateTail() {
+        int position = length - 1;
+        if (!isDigit(line[position]) || !isDigit(line[position - 1]) || line[position - 2] != '.') {
+            return RejectReason.AMOUNT_FORMAT;
+        }
+        position -= 3;
+        int integerEnd = position;
+        while (position >= 0 && isDigit(line[position])) {
+            position--;
+        }
+        int integerDigits = integerEnd - position;
+        if (integerDigits < 1 || integerDigits > MAX_AMOUNT_DIGITS || line[position] != ' ') {
+            return RejectReason.AMOUNT_FORMAT;
+        }
+        amountStart = position + 1;
+
+        innStart = position - INN_LENGTH;
+        if (innStart <= companyStart || !digits(innStart, INN_LENGTH) || line[innStart - 1] != ' ') {
+            return RejectReason.PAYER_INN;
+        }
+        return decodeAmount() ? null : RejectReason.AMOUNT_FORMAT;
+    }
+
+    /**
+     * {@code .{0,65} +} между ID платежа и ИНН: минимум один пробел перед разделителем ИНН,
+     * не более 65 символов без учета хвостовых пробелов.
+     */
+    private boolean validateCompany() {
+        int end = innStart - 1;
+        if (end <= companyStart || line[end - 1] != ' ') {
+            return false;
+        }
+        while (end > companyStart && line[end - 1] == ' ') {
+            end--;
+        }
+        return charLength(companyStart, end) <= MAX_COMPANY_LENGTH;
+    }
+
+    private boolean decodeAmount() {
+        long cents = 0;
+        for (int i = amountStart; i < length; i++) {
+            byte b = line[i];
+            if (b == '.') {
+                continue;
+            }
+            int digit = b - '0';
+            if (cents > (Long.MAX_VALUE - digit) / 10) {
+                return false;
+            }
+            cents = cents * 10 + digit;
+        }
+        amountCents = cents;
+        return true;
+    }
+
+    private String ascii(int offset, int count) {
+        return new String(line, offset, count, StandardCharsets.US_ASCII);
+    }
+
+    private String company() {
+        int start = companyStart;
+        int end = innStart - 1;
+        while (start < end && line[start] == ' ') {
+            start++;
+        }
+        while (end > start && line[end - 1] == ' ') {
+            end--;
+        }
+        return new String(line, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private boolean digits(int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            if (!isDigit(line[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Длина участка в символах UTF-16, как у {@link String#length()}.
+     */
+    private int charLength(int from, int to) {
+        int chars = 0;
+        for (int i = from; i < to; i++) {
+            int b = line[i] & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                chars += b >= 0xF0 ? 2 : 1;
+            }
+        }
+        return chars;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
@@ -0,0 +1,91 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Правила проверки BCP-файлов из {@code spring.parser.validation.*}.
+ * <p>
+ * Формат строки проверяется самим {@link BcpRecordParser} без регулярных выражений; здесь
+ * собираются дополнительные правила (контрольная сумма ИНН, диапазон суммы) и один раз
+ * компилируется шаблон имени файла. Каждому потоку разбора нужен свой {@link #newParser()}.
+ */
+@Component
+public class BcpValidation {
+
+    private static final Logger log = LoggerFactory.getLogger(BcpValidation.class);
+    private static final String DEFAULT_FILE_NAME_PATTERN = "BCP_\\d{8}_\\d{6}_\\d{4}";
+
+    @Value("${spring.parser.validation.file-name-pattern:" + DEFAULT_FILE_NAME_PATTERN + "}")
+    private String fileNamePattern;
+
+    @Value("${spring.parser.validation.inn-checksum:false}")
+    private boolean innChecksum;
+
+    @Value("${spring.parser.validation.amount-min:0.00}")
+    private BigDecimal amountMin;
+
+    /**
+     * Пустое значение - без верхней границы.
+     */
+    @Value("${spring.parser.validation.amount-max:#{null}}")
+    private BigDecimal amountMax;
+
+    private Pattern compiledFileNamePattern;
+    private List<BcpLineRule> rules;
+
+    @PostConstruct
+    public void init() {
+        compiledFileNamePattern = Pattern.compile(fileNamePattern);
+
+        List<BcpLineRule> configured = new ArrayList<>();
+        if (innChecksum) {
+            configured.add(BcpLineRule.innChecksum());
+        }
+        long minCents = amountMin != null ? toCents(amountMin) : 0;
+        long maxCents = amountMax != null ? toCents(amountMax) : Long.MAX_VALUE;
+        if (minCents > 0 || maxCents < Long.MAX_VALUE) {
+            configured.add(BcpLineRule.amountRange(minCents, maxCents));
+        }
+        rules = List.copyOf(configured);
+        log.info("Проверка строк: контрольная сумма ИНН {}, сумма от {} до {}, шаблон имени файла {}",
+                innChecksum ? "включена" : "выключена", amountMin, amountMax != null ? amountMax : "-", fileNamePattern);
+    }
+
+    /**
+     * Проверка без дополнительных правил и со стандартным шаблоном имени - для бенчмарков и тестов.
+     */
+    public static BcpValidation defaults() {
+        BcpValidation validation = new BcpValidation();
+        validation.fileNamePattern = DEFAULT_FILE_NAME_PATTERN;
+        validation.amountMin = BigDecimal.ZERO;
+        validation.init();
+        return validation;
+    }
+
+    /**
+     * Новый разборщик с настроенными правилами. Разборщик не потокобезопасен.
+     */
+    public BcpRecordParser newParser() {
+        return new BcpRecordParser(rules);
+    }
+
+    /**
+     * Имя файла целиком соответствует {@code spring.parser.validation.file-name-pattern}.
+     */
+    public boolean isValidFileName(String fileName) {
+        return compiledFileNamePattern.matcher(fileName).matches();
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+}
@@ -0,0 +1,118 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import com.levandr.custompaymentsystem.enums.RejectReason;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Журнал разбора одного файла.
+ * <p>
+ * Недействительные строки пишутся в лог полностью только первые {@code invalidLinesLimit} раз,
+ * дальше - каждая {@code invalidLinesSampleEvery}-я (0 - ни одной); остальные только считаются.
+ * Строка декодируется лишь тогда, когда действительно попадает в лог. По завершении файла
+ * пишется одна итоговая строка с количеством строк, причинами отклонения, длительностью и скоростью разбора.
+ * <p>
+ * {@link #invalidLine} потокобезопасен, он вызывается и из параллельного разбора.
+ */
+class FileParseLog {
+
+    private static final Logger log = LoggerFactory.getLogger(FileParseLog.class);
+
+    private final String fileName;
+    private final int invalidLinesLimit;
+    private final int invalidLinesSampleEvery;
+    private final long startedAt = System.nanoTime();
+    private final AtomicLong invalidLines = new AtomicLong();
+    private final AtomicLongArray rejectsByReason = new AtomicLongArray(RejectReason.values().length);
+    private long duplicates;
+    private long lines;
+
+    FileParseLog(String fileName, int invalidLinesLimit, int invalidLinesSampleEvery) {
+        this.fileName = fileName;
+        this.invalidLinesLimit = invalidLinesLimit;
+        this.invalidLinesSampleEvery = invalidLinesSampleEvery;
+    }
+
+    void invalidLine(ByteBuffer buffer, int start, int end, RejectReason reason) {
+        long number = invalidLines.incrementAndGet();
+        rejectsByReason.incrementAndGet(reason.ordinal());
+        if (number <= invalidLinesLimit) {
+            log.error("Строка недействительна ({}): {}", reason, decode(buffer, start, end));
+        } else if (invalidLinesSampleEvery > 0 && (number - invalidLinesLimit) % invalidLinesSampleEvery == 0) {
+            log.error("Строка недействительна ({}, {}-я в файле {}): {}", reason, number, fileName, decode(buffer, start, end));
+        } else if (number == invalidLinesLimit + 1) {
+            log.warn("Лимит вывода недействительных строк для файла {} исчерпан, дальше только подсчет", fileName);
+        }
+    }
+
+    void duplicate(String paymentId) {
+        duplicates++;
+        if (log.isDebugEnabled()) {
+            log.debug("Платеж с идентификатором {} является дубликатом, статус установлен на DUPLICATE.", paymentId);
+        }
+    }
+
+    long invalidLines() {
+        return invalidLines.get();
+    }
+
+    long duplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Число разобранных строк, включая недействительные.
+     */
+    void setLines(long lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Итог разбора по строкам, когда проверочного прохода не было.
+     */
+    FileScanResult result() {
+        long invalid = invalidLines.get();
+        return new FileScanResult(lines - invalid, invalid);
+    }
+
+    /**
+     * Число отклоненных строк по причинам, только ненулевые.
+     */
+    Map<RejectReason, Long> rejectsByReason() {
+        Map<RejectReason, Long> rejects = new EnumMap<>(RejectReason.class);
+        for (RejectReason reason : RejectReason.values()) {
+            long count = rejectsByReason.get(reason.ordinal());
+            if (count > 0) {
+                rejects.put(reason, count);
+            }
+        }
+        return rejects;
+    }
+
+    /**
+     * Итоговая строка по файлу в формате {@code ключ=значение}.
+     */
+    void summary(FileScanResult scanResult, boolean success) {
+        long elapsedNanos = System.nanoTime() - startedAt;
+        long totalLines = scanResult.validLines() + scanResult.invalidLines();
+        long linesPerSecond = elapsedNanos > 0 ? totalLines * TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+
+        log.info("Итог файла: file={} success={} lines={} valid={} invalid={} rejects={} duplicates={} durationMs={} linesPerSec={}",
+                fileName, success, totalLines, scanResult.validLines(), scanResult.invalidLines(), rejectsByReason(),
+                duplicates, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), linesPerSecond);
+    }
+
+    static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,14 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+/**
+ * Результат проверочного прохода по файлу.
+ *
+ * @param validLines   количество валидных строк.
+ * @param invalidLines количество невалидных строк.
+ */
+public record FileScanResult(long validLines, long invalidLines) {
+
+    public boolean hasInvalidLines() {
+        return invalidLines > 0;
+    }
+}
@@ -0,0 +1,149 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Построчное чтение файла через {@link MappedByteBuffer}.
+ * <p>
+ * Файл отображается в память окнами по {@code windowSize} байт; строка, не поместившаяся
+ * в окно целиком, перечитывается в следующем окне с ее начала. Строка длиннее окна
+ * передается обработчику обрезанной (она заведомо невалидна), остаток пропускается.
+ */
+public final class MappedLineReader {
+
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private MappedLineReader() {
+    }
+
+    @FunctionalInterface
+    public interface LineConsumer {
+        /**
+         * @param buffer окно файла.
+         * @param start  начало строки в окне (включительно).
+         * @param end    конец строки в окне (исключительно, без '\n').
+         */
+        void accept(ByteBuffer buffer, int start, int end) throws IOException;
+    }
+
+    public static void forEachLine(FileChannel channel, LineConsumer consumer) throws IOException {
+        forEachLine(channel, 0, channel.size(), DEFAULT_WINDOW_SIZE, consumer);
+    }
+
+    /**
+     * Читает строки из диапазона {@code [from, to)} файла.
+     * Диапазон должен начинаться с начала строки.
+     */
+    public static void forEachLine(FileChannel channel, long from, long to, int windowSize,
+                                   LineConsumer consumer) throws IOException {
+        long position = from;
+        boolean skipping = false;
+
+        while (position < to) {
+            int length = (int) Math.min(windowSize, to - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            boolean lastWindow = position + length >= to;
+
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (window.get(i) == '\n') {
+                    if (skipping) {
+                        skipping = false;
+                    } else {
+                        consumer.accept(window, lineStart, i);
+                    }
+                    lineStart = i + 1;
+                }
+            }
+
+            if (lastWindow) {
+                if (lineStart < length && !skipping) {
+                    consumer.accept(window, lineStart, length);
+                }
+                return;
+            }
+
+            if (lineStart == 0) {
+                if (!skipping) {
+                    consumer.accept(window, 0, length);
+                    skipping = true;
+                }
+                position += length;
+            } else {
+                position += lineStart;
+            }
+        }
+    }
+
+    /**
+     * Конец последней полной строки в диапазоне {@code [from, to)}: позиция сразу после последнего '\n'
+     * или {@code from}, если полных строк нет. Читает файл с конца небольшими блоками.
+     */
+    public static long lastLineEnd(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long end = to;
+        while (end > from) {
+            int length = (int) Math.min(probe.capacity(), end - from);
+            probe.clear().limit(length);
+            long position = end - length;
+            while (probe.hasRemaining()) {
+                if (channel.read(probe, position + probe.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = probe.position() - 1; i >= 0; i--) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            end = position;
+        }
+        return from;
+    }
+
+    /**
+     * Делит файл на диапазоны примерно по {@code segmentSize} байт, выровненные по границам строк.
+     *
+     * @return границы диапазонов: {@code [0, b1, ..., size]}.
+     */
+    public static long[] splitByLines(FileChannel channel, long segmentSize) throws IOException {
+        long size = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long position = segmentSize;
+        while (position < size) {
+            long lineStart = nextLineStart(channel, position, probe);
+            if (lineStart >= size) {
+                break;
+            }
+            boundaries.add(lineStart);
+            position = lineStart + segmentSize;
+        }
+        boundaries.add(size);
+
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+        while (true) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Параллельный разбор одного большого файла.
+ * <p>
+ * Файл делится на диапазоны по границам строк ({@link MappedLineReader#splitByLines}).
+ * Диапазоны обрабатываются волнами по {@code parallelism} штук: внутри волны они разбираются
+ * параллельно на {@link ForkJoinPool}, затем записи волны передаются обработчику в исходном
+ * порядке строк. Поэтому проверка дубликатов и отчет на стороне вызывающего кода работают так же,
+ * как при последовательном чтении, а в памяти одновременно находится не больше одной волны.
+ * Вместе с записью передаются конец ее строки в файле и номер строки - по ним вызывающий код
+ * отмечает сохраненные диапазоны файла.
+ */
+@Component
+@RequiredArgsConstructor
+public class ParallelBcpParser {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelBcpParser.class);
+    private final BcpValidation bcpValidation;
+
+    @Value("${spring.parser.parallel.enabled:false}")
+    private boolean enabled;
+
+    @Value("${spring.parser.parallel.threshold-bytes:67108864}")
+    private long thresholdBytes;
+
+    @Value("${spring.parser.parallel.segment-bytes:8388608}")
+    private long segmentBytes;
+
+    @Value("${spring.parser.parallel.parallelism:0}")
+    private int parallelism;
+
+    private ForkJoinPool pool;
+
+    @FunctionalInterface
+    public interface RecordConsumer {
+        /**
+         * @param record     разобранная запись.
+         * @param lineEnd    смещение начала следующей строки.
+         * @param lineNumber номер строки записи (с 1), считая недействительные.
+         */
+        void accept(BcpRecord record, long lineEnd, long lineNumber) throws IOException;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        if (enabled) {
+            pool = new ForkJoinPool(parallelism);
+            log.info("Параллельный разбор включен: {} потоков, порог {} байт", parallelism, thresholdBytes);
+        }
+    }
+
+    /**
+     * Нужно ли разбирать файл данного размера параллельно.
+     */
+    public boolean isApplicable(long fileSize) {
+        return enabled && fileSize >= thresholdBytes;
+    }
+
+    /**
+     * Параллельный проверочный проход: только подсчет валидных и невалидных строк.
+     */
+    public FileScanResult scan(FileChannel channel) throws IOException {
+        long validLines = 0;
+        long invalidLines = 0;
+        for (Segment segment : parseInWaves(channel, false, null, null)) {
+            validLines += segment.validLines;
+            invalidLines += segment.invalidLines;
+        }
+        return new FileScanResult(validLines, invalidLines);
+    }
+
+    /**
+     * Разбирает файл параллельно и передает валидные записи обработчику в порядке строк файла.
+     * Недействительные строки передаются в {@code parseLog}.
+     *
+     * @return число строк файла, включая недействительные.
+     */
+    long parse(FileChannel channel, RecordConsumer consumer, FileParseLog parseLog) throws IOException {
+        long lines = 0;
+        for (Segment segment : parseInWaves(channel, true, consumer, parseLog)) {
+            lines += segment.validLines + segment.invalidLines;
+        }
+        return lines;
+    }
+
+    private List<Segment> parseInWaves(FileChannel channel, boolean collect, RecordConsumer consumer,
+                                       FileParseLog parseLog) throws IOException {
+        long[] boundaries = MappedLineReader.splitByLines(channel, segmentBytes);
+        List<Segment> segments = new ArrayList<>(boundaries.length - 1);
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            segments.add(new Segment(boundaries[i], boundaries[i + 1]));
+        }
+        log.debug("Файл разбит на {} диапазонов", segments.size());
+
+        long lineBase = 0;
+        for (int waveStart = 0; waveStart < segments.size(); waveStart += parallelism) {
+            List<Segment> wave = segments.subList(waveStart, Math.min(waveStart + parallelism, segments.size()));
+            try {
+                pool.invoke(new SegmentTask(channel, wave, collect, parseLog, bcpValidation));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            if (consumer != null) {
+                for (Segment segment : wave) {
+                    for (int i = 0; i < segment.records.size(); i++) {
+                        consumer.accept(segment.records.get(i), segment.recordEnds[i], lineBase + segment.recordLines[i]);
+                    }
+                    lineBase += segment.validLines + segment.invalidLines;
+                    segment.records = null;
+                    segment.recordEnds = null;
+                    segment.recordLines = null;
+                }
+            }
+        }
+        return segments;
+    }
+
+    private static final class Segment {
+        final long from;
+        final long to;
+        List<BcpRecord> records;
+        /**
+         * Конец строки и номер строки внутри диапазона (с 1) для каждой записи {@link #records}.
+         */
+        long[] recordEnds;
+        long[] recordLines;
+        long validLines;
+        long invalidLines;
+
+        Segment(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        void addRecord(BcpRecord record, long lineEnd) {
+            int index = records.size();
+            if (index == recordEnds.length) {
+                recordEnds = Arrays.copyOf(recordEnds, index * 2);
+                recordLines = Arrays.copyOf(recordLines, index * 2);
+            }
+            records.add(record);
+            recordEnds[index] = lineEnd;
+            recordLines[index] = validLines + invalidLines;
+        }
+    }
+
+    private static final class SegmentTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final List<Segment> segments;
+        private final boolean collect;
+        private final FileParseLog parseLog;
+        private final BcpValidation validation;
+
+        SegmentTask(FileChannel channel, List<Segment> segments, boolean collect, FileParseLog parseLog,
+                    BcpValidation validation) {
+            this.channel = channel;
+            this.segments = segments;
+            this.collect = collect;
+            this.parseLog = parseLog;
+            this.validation = validation;
+        }
+
+        @Override
+        protected void compute() {
+            if (segments.size() > 1) {
+                int middle = segments.size() / 2;
+                invokeAll(new SegmentTask(channel, segments.subList(0, middle), collect, parseLog, validation),
+                        new SegmentTask(channel, segments.subList(middle, segments.size()), collect, parseLog, validation));
+                return;
+            }
+            try {
+                parseSegment(segments.get(0));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void parseSegment(Segment segment) throws IOException {
+            BcpRecordParser recordParser = validation.newParser();
+            long[] position = {segment.from};
+            if (collect) {
+                segment.records = new ArrayList<>();
+                segment.recordEnds = new long[1024];
+                segment.recordLines = new long[1024];
+            }
+
+            MappedLineReader.forEachLine(channel, segment.from, segment.to, MappedLineReader.DEFAULT_WINDOW_SIZE,
+                    (buffer, start, end) -> {
+                        if (!collect) {
+                            if (recordParser.isValid(buffer, start, end)) {
+                                segment.validLines++;
+                            } else {
+                                segment.invalidLines++;
+                            }
+                            return;
+                        }
+                        position[0] = Math.min(position[0] + end - start + 1, segment.to);
+                        BcpRecord record = recordParser.parse(buffer, start, end);
+                        if (record == null) {
+                            segment.invalidLines++;
+                            parseLog.invalidLine(buffer, start, end, recordParser.rejectReason());
+                        } else {
+                            segment.validLines++;
+                            segment.addRecord(record, position[0]);
+                        }
+                    });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
@@ -1,24 +1,35 @@
 package com.levandr.custompaymentsystem.service.parser;
 
+import com.levandr.custompaymentsystem.entity.FileCheckpoint;
 import com.levandr.custompaymentsystem.entity.Payment;
 import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.enums.StatusFinalization;
 import com.levandr.custompaymentsystem.exception.FileProcessingException;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+import com.levandr.custompaymentsystem.service.payment.PaymentIdIndex;
 import com.levandr.custompaymentsystem.service.payment.PaymentService;
+import com.levandr.custompaymentsystem.service.payment.SpillingPaymentIdSet;
+import com.levandr.custompaymentsystem.service.pipeline.IngestPipeline;
+import com.levandr.custompaymentsystem.service.repoter.ReportSink;
 import com.levandr.custompaymentsystem.service.repoter.ReporterService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationSummary;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @RequiredArgsConstructor
@@ -27,35 +38,98 @@ public class ParserService {
     private static final Logger log = LoggerFactory.getLogger(ParserService.class);
     private final PaymentService paymentService;
     private final ReporterService reporterService;
+    private final ParallelBcpParser parallelBcpParser;
+    private final PaymentIdIndex paymentIdIndex;
+    private final IngestMetrics ingestMetrics;
+    private final IngestPipeline ingestPipeline;
+    private final BcpValidation bcpValidation;
 
     @Value("${spring.input.directory}")
     private Path inputDirectory;
 
+    @Value("${spring.parser.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${spring.parser.status-finalization:SCAN}")
+    private StatusFinalization statusFinalization;
+
+    @Value("${spring.parser.checkpoint.enabled:true}")
+    private boolean checkpointEnabled;
+
+    @Value("${spring.parser.duplicates.memory-bytes:67108864}")
+    private long duplicatesMemoryBytes;
+
+    @Value("${spring.parser.duplicates.spill-directory:#{null}}")
+    private Path duplicatesSpillDirectory;
+
+    @Value("${spring.reconciliation.top-payers:10}")
+    private int topPayers;
+
+    @Value("${spring.parser.log.invalid-lines-limit:20}")
+    private int invalidLinesLimit;
+
+    @Value("${spring.parser.log.invalid-lines-sample-every:10000}")
+    private int invalidLinesSampleEvery;
+
+    /**
+     * Обрабатывает файл и ждет, пока все его блоки будут сохранены и отчет зафиксирован.
+     */
     public void parseFile(Path filePath) throws FileProcessingException {
+        try {
+            parseFileAsync(filePath).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof FileProcessingException cause) {
+                throw cause;
+            }
+            throw new FileProcessingException("Обработка файла не удалась", e.getCause());
+        }
+    }
+
+    /**
+     * Разбирает файл в текущем потоке и передает блоки в {@link IngestPipeline}.
+     * Возвращается сразу после разбора, не дожидаясь сохранения и отчета.
+     *
+     * @return future, завершающийся после сохранения всех блоков и фиксации отчета.
+     */
+    public CompletableFuture<Void> parseFileAsync(Path filePath) {
         log.info("Разбор файла: {}", filePath);
 
         if (!isValidFilePath(filePath)) {
             log.warn("Неверный путь или имя файла: {}", filePath);
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(filePath, StandardCharsets.UTF_8)) {
-            List<Payment> payments = new ArrayList<>();
-            Set<String> paymentIds = new HashSet<>();
-
-            boolean hasInvalidLines = processFile(reader, payments, paymentIds);
-
-            if (payments.isEmpty()) {
-                log.warn("Нет действительных платежей для сохранения или отчета.");
-                return;
+        long startedAt = System.nanoTime();
+        try {
+            FileScanResult scanResult = null;
+            if (statusFinalization != StatusFinalization.BULK_UPDATE) {
+                scanResult = scanFile(filePath);
+                ingestMetrics.recordLines(scanResult.validLines() + scanResult.invalidLines(), scanResult.invalidLines());
+
+                if (scanResult.validLines() == 0) {
+                    log.warn("Нет действительных платежей для сохранения или отчета.");
+                    return CompletableFuture.completedFuture(null);
+                }
             }
 
-            updatePaymentStatuses(payments, hasInvalidLines);
-            saveAndReport(payments, filePath.getFileName().toString());
+            String fileName = filePath.getFileName().toString();
+            FileParseLog parseLog = new FileParseLog(fileName, invalidLinesLimit, invalidLinesSampleEvery);
+            FileScanResult scanned = scanResult;
+            return processFile(filePath, scanned != null ? scanned.hasInvalidLines() : null, parseLog)
+                    .whenComplete((reportPath, error) -> {
+                        ingestMetrics.recordParse(System.nanoTime() - startedAt);
+                        parseLog.summary(scanned != null ? scanned : parseLog.result(), error == null);
+                    })
+                    .thenApply(reportPath -> {
+                        if (checkpointEnabled) {
+                            paymentService.clearCheckpoints(fileName);
+                        }
+                        return null;
+                    });
 
         } catch (IOException e) {
             log.error("Ошибка чтения файла: {}", e.getMessage());
-            throw new FileProcessingException("Обработка файла не удалась", e);
+            return CompletableFuture.failedFuture(new FileProcessingException("Обработка файла не удалась", e));
         }
     }
 
@@ -65,98 +139,352 @@ public class ParserService {
 
     public boolean isValidFileName(Path filePath) {
         String fileName = filePath.getFileName().toString();
-        String regex = "^BCP_\\d{8}_\\d{6}_\\d{4}";
-        boolean isValid = Pattern.matches(regex, fileName);
+        boolean isValid = bcpValidation.isValidFileName(fileName);
 
         log.info("Имя файла: {} is {}", fileName, isValid ? "valid" : "invalid");
         return isValid;
     }
 
-    private boolean processFile(BufferedReader reader, List<Payment> payments, Set<String> paymentIds) throws IOException {
-        String line;
-        boolean hasInvalidLines = false;
+    /**
+     * Первый проход по файлу: только валидация строк, без создания платежей.
+     * Нужен, чтобы итоговый статус (PARTIAL_OK/FULL_SAVED) был известен до записи первого блока.
+     * При {@code spring.parser.status-finalization: BULK_UPDATE} не выполняется: статусы выставляются
+     * после сохранения одним UPDATE.
+     */
+    private FileScanResult scanFile(Path filePath) throws IOException {
+        BcpRecordParser recordParser = bcpValidation.newParser();
+        long[] counters = new long[2];
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            if (parallelBcpParser.isApplicable(channel.size())) {
+                return parallelBcpParser.scan(channel);
+            }
+            MappedLineReader.forEachLine(channel, (buffer, start, end) ->
+                    counters[recordParser.isValid(buffer, start, end) ? 0 : 1]++);
+        }
+        return new FileScanResult(counters[0], counters[1]);
+    }
 
-        while ((line = reader.readLine()) != null) {
-            log.info("Parsing line: {}", line);
-            Payment payment = parseLine(line);
+    /**
+     * Второй проход: разбор, сохранение и отчет блоками по {@code chunkSize} платежей,
+     * поэтому потребление памяти не зависит от размера файла. Блоки хранятся в колоночном
+     * {@link PaymentBatch}; сущности создаются только на стадии сохранения. Итоги файла для сверки
+     * ({@link ReconciliationSummary}) накапливаются по каждому переданному блоку.
+     * Построчные сообщения пишутся только на уровне DEBUG; недействительные строки - через {@link FileParseLog}.
+     * <p>
+     * При {@code spring.parser.checkpoint.enabled} каждый блок несет диапазон строк файла, который он
+     * закрывает, и сохраняется в одной транзакции с контрольной точкой. Если после сбоя у файла остались
+     * контрольные точки, разбираются только непокрытые ими диапазоны, а отчет и сводка строятся из БД
+     * ({@link IngestPipeline#startStored}). Статусы при этом те же: проверочный проход повторяется целиком,
+     * а ID уже сохраненных платежей файла читаются из БД ({@link #restoreSeenIds}).
+     * <p>
+     * Без проверочного прохода ({@code hasInvalidLines == null}) блоки сохраняются с предварительными
+     * статусами OK/DUPLICATE, а в конце файла статусы меняются set-based UPDATE по {@code file_name}
+     * ({@link PaymentService#finalizeStatuses}) и отчет строится из БД; платежи прежней загрузки файла
+     * к этому моменту удалены ({@link #committedRanges}). Продолженный файл тоже
+     * завершается этим UPDATE: до сбоя его строки могли быть сохранены с предварительными статусами.
+     *
+     * @param hasInvalidLines итог проверочного прохода; {@code null}, если его не было.
+     */
+    private CompletableFuture<Path> processFile(Path filePath, Boolean hasInvalidLines,
+                                                FileParseLog parseLog) throws IOException {
+        String fileName = filePath.getFileName().toString();
+        BcpRecordParser recordParser = bcpValidation.newParser();
+        ReconciliationSummary summary = new ReconciliationSummary(fileName, topPayers);
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ);
+             SpillingPaymentIdSet fileIds = paymentIdIndex.isEnabled()
+                     ? null
+                     : new SpillingPaymentIdSet(duplicatesMemoryBytes, duplicatesSpillDirectory)) {
+            long size = channel.size();
+            List<FileCheckpoint> committed = committedRanges(fileName, size);
+            boolean resumed = !committed.isEmpty();
+            boolean storedReport = resumed || hasInvalidLines == null;
+            ReportSink report = reporterService.openReport(fileName);
+            IngestPipeline.FileJob job = storedReport
+                    ? ingestPipeline.startStored(fileName, report)
+                    : ingestPipeline.start(fileName, report);
+            FileChunks chunks = new FileChunks(job, fileName, hasInvalidLines, storedReport ? null : summary,
+                    parseLog);
+            long lines = 0;
+            long committedInvalidLines = 0;
+
+            try {
+                ParallelBcpParser.RecordConsumer consumer = (record, lineEnd, lineNumber) -> {
+                    logRecord(record);
+                    boolean duplicate = isDuplicate(record.paymentId(), fileIds);
+                    if (duplicate) {
+                        parseLog.duplicate(record.paymentId());
+                    }
+                    chunks.add(record, duplicate, lineEnd, lineNumber);
+                };
+
+                if (resumed) {
+                    List<long[]> ranges = uncommittedRanges(committed, size);
+                    long restored = restoreSeenIds(fileName, fileIds);
+                    log.info("Продолжение файла {} с контрольных точек: сохранено диапазонов {} (принятых ID {}), осталось {}",
+                            fileName, committed.size(), restored, ranges.size());
+                    for (FileCheckpoint checkpoint : committed) {
+                        committedInvalidLines += checkpoint.getInvalidLines();
+                    }
+                    for (long[] range : ranges) {
+                        chunks.startRange(range[0]);
+                        long rangeLines = parseRange(channel, range[0], range[1], recordParser, parseLog, consumer);
+                        chunks.endRange(range[1], rangeLines);
+                        lines += rangeLines;
+                    }
+                } else {
+                    chunks.startRange(0);
+                    lines = parallelBcpParser.isApplicable(size)
+                            ? parallelBcpParser.parse(channel, consumer, parseLog)
+                            : parseRange(channel, 0, size, recordParser, parseLog, consumer);
+                    chunks.endRange(size, lines);
+                }
+                parseLog.setLines(lines);
+                summary.setInvalidLines(committedInvalidLines + parseLog.invalidLines());
+            } catch (IOException | RuntimeException e) {
+                chunks.discard();
+                job.abort();
+                throw e;
+            }
+            if (!storedReport) {
+                return job.complete(summary);
+            }
+            if (hasInvalidLines == null) {
+                ingestMetrics.recordLines(lines, parseLog.invalidLines());
+                return job.complete(summary, summary.invalidLines() > 0)
+                        .thenApply(reportPath -> {
+                            ingestMetrics.recordPayments(summary);
+                            return reportPath;
+                        });
+            }
+            return job.complete(summary, hasInvalidLines);
+        }
+    }
 
-            if (payment == null) {
-                hasInvalidLines = true;
-                continue;
+    /**
+     * Последовательный разбор диапазона {@code [from, to)}, границы которого совпадают с границами строк.
+     * Конец строки считается по длинам строк: они идут подряд, разделитель - один байт '\n'.
+     *
+     * @return число строк диапазона, включая недействительные.
+     */
+    private long parseRange(FileChannel channel, long from, long to, BcpRecordParser recordParser,
+                            FileParseLog parseLog, ParallelBcpParser.RecordConsumer consumer) throws IOException {
+        long[] position = {from, 0};
+        MappedLineReader.forEachLine(channel, from, to, MappedLineReader.DEFAULT_WINDOW_SIZE, (buffer, start, end) -> {
+            position[0] = Math.min(position[0] + end - start + 1, to);
+            position[1]++;
+            if (log.isDebugEnabled()) {
+                log.debug("Parsing line: {}", FileParseLog.decode(buffer, start, end));
             }
+            BcpRecord record = recordParser.parse(buffer, start, end);
 
-            if (isDuplicate(payment, paymentIds)) {
-                markAsDuplicate(payment);
-            } else {
-                paymentIds.add(payment.getPaymentId());
-                markAsValid(payment);
+            if (record == null) {
+                parseLog.invalidLine(buffer, start, end, recordParser.rejectReason());
+                return;
             }
+            consumer.accept(record, position[0], position[1]);
+        });
+        return position[1];
+    }
 
-            payments.add(payment);
+    /**
+     * Контрольные точки прошлой попытки. Если продолжать нечего, файл загружается с начала, и сохраненные
+     * платежи с тем же {@code file_name} удаляются ({@link IngestPipeline#discardFile}): итоговый UPDATE статусов
+     * и отчет из БД выбирают платежи по имени файла и не должны захватить строки прежней загрузки.
+     * Такие строки остаются после загрузки файла с тем же именем, но другим содержимым (журнал пропускает
+     * только неизменные файлы), после падения узла без контрольных точек и после замены файла более коротким,
+     * чем сохраненные диапазоны.
+     */
+    private List<FileCheckpoint> committedRanges(String fileName, long size) {
+        List<FileCheckpoint> committed = checkpointEnabled ? paymentService.findCommittedRanges(fileName) : List.of();
+        if (!committed.isEmpty() && committed.get(committed.size() - 1).getByteOffset() <= size) {
+            return committed;
+        }
+        if (!committed.isEmpty()) {
+            log.warn("Файл {} изменился после частичной загрузки и загружается заново", fileName);
+        }
+        if (paymentService.hasPayments(fileName)) {
+            ingestPipeline.discardFile(fileName);
         }
-        return hasInvalidLines;
+        return List.of();
     }
 
-    private boolean isDuplicate(Payment payment, Set<String> paymentIds) {
-        return paymentIds.contains(payment.getPaymentId());
+    /**
+     * Принятые ID продолженного файла восстанавливаются из его сохраненных платежей, а не берутся из памяти:
+     * прошлую попытку мог выполнять другой узел, чьи вставки индекс этого узла не видел, а при выключенном
+     * индексе множество файла ({@code fileIds}) создается пустым. Сохраненные дубликаты не восстанавливаются:
+     * первое вхождение их ID может лежать в несохраненном диапазоне, и при продолжении оно снова принимается.
+     *
+     * @return число восстановленных ID.
+     */
+    private long restoreSeenIds(String fileName, SpillingPaymentIdSet fileIds) {
+        return paymentService.forEachPaymentId(fileName, chunkSize, paymentId -> {
+            if (fileIds != null) {
+                fileIds.add(paymentId);
+            }
+            paymentIdIndex.register(paymentId);
+        });
     }
 
-    private void markAsDuplicate(Payment payment) {
-        payment.setStatusCode(PaymentStatus.DUPLICATE.getCode());
-        log.info("Платеж с идентификатором {} является дубликатом, статус установлен на DUPLICATE.", payment.getPaymentId());
+    /**
+     * Диапазоны {@code [from, to)} файла размером {@code size}, не покрытые сохраненными.
+     *
+     * @param committed сохраненные диапазоны по возрастанию начала.
+     */
+    static List<long[]> uncommittedRanges(List<FileCheckpoint> committed, long size) {
+        List<long[]> ranges = new ArrayList<>();
+        long position = 0;
+        for (FileCheckpoint checkpoint : committed) {
+            if (checkpoint.getStartOffset() > position) {
+                ranges.add(new long[]{position, checkpoint.getStartOffset()});
+            }
+            position = Math.max(position, checkpoint.getByteOffset());
+        }
+        if (position < size) {
+            ranges.add(new long[]{position, size});
+        }
+        return ranges;
     }
 
-    private void markAsValid(Payment payment) {
-        payment.setStatusCode(PaymentStatus.OK.getCode());
+    /**
+     * Дубликат внутри файла или ID, уже принятый из другого файла.
+     * Новый ID сразу регистрируется в {@link PaymentIdIndex}; включенный индекс ловит и повторы
+     * внутри файла, поэтому отдельное множество файла ({@code fileIds}) создается, только когда
+     * индекс выключен.
+     */
+    private boolean isDuplicate(String paymentId, SpillingPaymentIdSet fileIds) {
+        if (fileIds != null && !fileIds.add(paymentId)) {
+            return true;
+        }
+        return !paymentIdIndex.register(paymentId);
     }
 
     public Payment parseLine(String line) {
-        String cleanedLine = line.replace("\uFEFF", "").trim();
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        BcpRecordParser recordParser = bcpValidation.newParser();
+        BcpRecord record = recordParser.parse(ByteBuffer.wrap(bytes), 0, bytes.length);
 
-        if (!isValidLine(cleanedLine)) {
-            log.error("Строка недействительна: {}", cleanedLine);
+        if (record == null) {
+            log.error("Строка недействительна ({}): {}", recordParser.rejectReason(), line);
             return null;
         }
+        return toPayment(record);
+    }
 
-        try {
-            return extractPayment(cleanedLine);
-        } catch (Exception e) {
-            log.error("Ошибка разбора строки: {}", e.getMessage());
-            return null;
+    private Payment toPayment(BcpRecord record) {
+        logRecord(record);
+        return paymentService.createPayment(record.paymentId(), record.recordNumber(), record.companyName(),
+                record.payerInn(), BigDecimal.valueOf(record.amountCents(), 2), PaymentStatus.OK.getCode(), "");
+    }
+
+    private static void logRecord(BcpRecord record) {
+        if (log.isDebugEnabled()) {
+            log.debug("Parsed payment - Record: {}, ID: {}, Company: {}, PayerInn: {}, Amount: {}",
+                    record.recordNumber(), record.paymentId(), record.companyName(), record.payerInn(),
+                    BigDecimal.valueOf(record.amountCents(), 2));
+        }
+    }
+
+    private void updatePaymentStatuses(PaymentBatch payments, boolean hasInvalidLines) {
+        for (int i = 0; i < payments.size(); i++) {
+            if (hasInvalidLines) {
+                if (payments.statusCode(i) == PaymentStatus.OK.getCode()) {
+                    payments.setStatusCode(i, PaymentStatus.PARTIAL_OK.getCode());
+                }
+            } else {
+                payments.setStatusCode(i, PaymentStatus.FULL_SAVED.getCode());
+            }
         }
     }
 
-    private boolean isValidLine(String line) {
-        String regex = "^\\d{12} \\d{9}-\\d{9}-\\d{9}-\\d{9}-\\d{9,10} .{0,65} + \\d{12} \\d{1,19}\\.\\d{2}$";
-        return line.length() >= 154 && line.length() <= 156 && line.matches(regex);
+    /**
+     * Выставляет итоговые статусы блока и передает его на сохранение и отчет.
+     * После передачи блок принадлежит конвейеру.
+     *
+     * @param hasInvalidLines {@code null}, если статусы выставляются после сохранения.
+     * @param summary         итоги файла; {@code null}, если они строятся из БД.
+     */
+    private void submitChunk(IngestPipeline.FileJob job, PaymentBatch chunk, Boolean hasInvalidLines,
+                             ReconciliationSummary summary) {
+        if (hasInvalidLines != null) {
+            updatePaymentStatuses(chunk, hasInvalidLines);
+            ingestMetrics.recordPayments(chunk);
+        }
+        if (summary != null) {
+            summary.add(chunk);
+        }
+        job.submit(chunk);
     }
 
-    private Payment extractPayment(String line) {
-        String recordNumber = line.substring(0, 12).trim();
-        String paymentId = line.substring(13, 63).trim();
-        String companyName = line.substring(64, 129).trim();
-        String payerInn = line.substring(130, 142).trim();
-        BigDecimal amount = new BigDecimal(line.substring(143).trim());
+    /**
+     * Текущий блок файла и диапазон строк, который он закрывает: от конца предыдущего блока до конца
+     * своей последней строки, а последний блок диапазона - до конца диапазона, включая
+     * недействительные строки после последней записи.
+     */
+    private final class FileChunks {
+        private final IngestPipeline.FileJob job;
+        private final String fileName;
+        private final Boolean hasInvalidLines;
+        private final ReconciliationSummary summary;
+        private final FileParseLog parseLog;
+        private PaymentBatch chunk;
+        private long rangeFrom;
+        private long linesBefore;
+
+        FileChunks(IngestPipeline.FileJob job, String fileName, Boolean hasInvalidLines, ReconciliationSummary summary,
+                   FileParseLog parseLog) {
+            this.job = job;
+            this.fileName = fileName;
+            this.hasInvalidLines = hasInvalidLines;
+            this.summary = summary;
+            this.parseLog = parseLog;
+            this.chunk = new PaymentBatch(fileName, chunkSize);
+        }
 
-        log.info("Parsed payment - Record: {}, ID: {}, Company: {}, PayerInn: {}, Amount: {}",
-                recordNumber, paymentId, companyName, payerInn, amount);
+        void startRange(long from) {
+            rangeFrom = from;
+            linesBefore = 0;
+        }
 
-        return paymentService.createPayment(paymentId, recordNumber, companyName, payerInn, amount, PaymentStatus.OK.getCode(), "");
-    }
+        void add(BcpRecord record, boolean duplicate, long lineEnd, long lineNumber) {
+            chunk.add(record.recordNumber(), record.paymentId(), record.companyName(), record.payerInn(),
+                    record.amountCents(), duplicate ? PaymentStatus.DUPLICATE.getCode() : PaymentStatus.OK.getCode());
+            if (!duplicate) {
+                chunk.markRegistered(chunk.size() - 1);
+            }
+            if (chunk.isFull()) {
+                submit(lineEnd, lineNumber);
+            }
+        }
 
-    private void updatePaymentStatuses(List<Payment> payments, boolean hasInvalidLines) {
-        if (hasInvalidLines) {
-            payments.stream()
-                    .filter(payment -> payment.getStatusCode() == PaymentStatus.OK.getCode())
-                    .forEach(payment -> payment.setStatusCode(PaymentStatus.PARTIAL_OK.getCode()));
-        } else {
-            payments.forEach(payment -> payment.setStatusCode(PaymentStatus.FULL_SAVED.getCode()));
+        /**
+         * @param to    конец диапазона.
+         * @param lines число строк диапазона.
+         */
+        void endRange(long to, long lines) {
+            if (!chunk.isEmpty() || (checkpointEnabled && to > rangeFrom)) {
+                submit(to, lines);
+            }
+        }
+
+        /**
+         * Снимает регистрацию ID текущего, еще не переданного блока: файл прерван, блок не будет сохранен.
+         * Переданные блоки делают это сами на стадии сохранения.
+         */
+        void discard() {
+            paymentIdIndex.unregister(chunk);
         }
-    }
 
-    private void saveAndReport(List<Payment> payments, String fileName) {
-        paymentService.saveAll(payments);
-        reporterService.createReport(payments, fileName);
+        private void submit(long to, long lineNumber) {
+            if (checkpointEnabled) {
+                chunk.setFileRange(rangeFrom, to, lineNumber - linesBefore);
+            }
+            paymentIdIndex.findStoredDuplicates(chunk, parseLog::duplicate);
+            submitChunk(job, chunk, hasInvalidLines, summary);
+            chunk = new PaymentBatch(fileName, chunkSize);
+            rangeFrom = to;
+            linesBefore = lineNumber;
+        }
     }
 }
-
@@ -0,0 +1,339 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import com.levandr.custompaymentsystem.entity.FileCheckpoint;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
+import com.levandr.custompaymentsystem.service.ledger.FileLedgerService;
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+import com.levandr.custompaymentsystem.service.payment.PaymentIdIndex;
+import com.levandr.custompaymentsystem.service.payment.PaymentService;
+import com.levandr.custompaymentsystem.service.query.PaymentQueryService;
+import com.levandr.custompaymentsystem.service.repoter.ReportSink;
+import com.levandr.custompaymentsystem.service.repoter.ReporterService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationSummary;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Загрузка файлов, которые дописываются постепенно (режим tail, {@code spring.watcher.tail.enabled}).
+ * <p>
+ * Каждый сохраненный блок отмечает прочитанный диапазон файла контрольной точкой ({@link FileCheckpoint})
+ * в той же транзакции. {@link #ingestAppended(Path)} разбирает только новые полные строки
+ * (до последнего '\n') и сохраняет их со статусом OK или DUPLICATE; после перезапуска чтение
+ * продолжается с конца сохраненных диапазонов. Итоговый статус и отчет появляются только в {@link #finish(Path)} по сигналу
+ * завершения: статусы файла меняются одним UPDATE, а отчет строится из БД страницами по ID,
+ * так что уже загруженная часть файла повторно не читается.
+ * <p>
+ * Хеш содержимого для журнала считается по ходу чтения; после перезапуска с контрольной точки
+ * он пересчитывается при завершении файла.
+ */
+@Service
+@RequiredArgsConstructor
+public class TailIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(TailIngestService.class);
+    private final PaymentService paymentService;
+    private final PaymentQueryService paymentQueryService;
+    private final PaymentIdIndex paymentIdIndex;
+    private final FileLedgerService fileLedgerService;
+    private final ReporterService reporterService;
+    private final BcpValidation bcpValidation;
+    private final IngestMetrics ingestMetrics;
+    private final ReconciliationService reconciliationService;
+
+    @Value("${spring.watcher.tail.enabled:false}")
+    private boolean enabled;
+
+    @Value("${spring.parser.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${spring.reconciliation.top-payers:10}")
+    private int topPayers;
+
+    @Value("${spring.parser.log.invalid-lines-limit:20}")
+    private int invalidLinesLimit;
+
+    @Value("${spring.parser.log.invalid-lines-sample-every:10000}")
+    private int invalidLinesSampleEvery;
+
+    private final Map<Path, TailState> states = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Разбирает и сохраняет полные строки, дописанные с прошлого вызова.
+     * При первом обращении файл захватывается в журнале, чтение продолжается с контрольной точки.
+     *
+     * @return {@code false}, если имя файла не подходит, файл уже обработан или захвачен другим узлом.
+     */
+    public boolean ingestAppended(Path filePath) throws IOException {
+        TailState state = state(filePath);
+        if (state == null) {
+            return false;
+        }
+        synchronized (state) {
+            readAppended(filePath, state, false);
+        }
+        return true;
+    }
+
+    /**
+     * Дочитывает файл до конца (включая строку без '\n'), выставляет итоговые статусы,
+     * пишет отчет и отмечает файл в журнале как обработанный.
+     *
+     * @return {@code false}, если файл не захвачен этим узлом и не завершен.
+     */
+    public boolean finish(Path filePath) throws IOException {
+        TailState state = state(filePath);
+        if (state == null) {
+            return false;
+        }
+        synchronized (state) {
+            readAppended(filePath, state, true);
+            String fileName = filePath.getFileName().toString();
+
+            int updated = paymentService.finalizeStatuses(fileName, state.invalidLines > 0);
+            paymentQueryService.evictFile(fileName);
+            writeReport(fileName, state.invalidLines);
+
+            // Сначала контрольные точки: если узел упадет до отметки в журнале, файл будет загружен заново
+            // с начала, а не продолжен с точек уже завершенной загрузки.
+            paymentService.clearCheckpoints(fileName);
+            fileLedgerService.markDone(filePath, state.digest != null
+                    ? HexFormat.of().formatHex(state.digest.digest())
+                    : FileLedgerService.hash(filePath));
+            states.remove(filePath);
+            log.info("Файл завершен: file={} lines={} invalid={} bytes={} statusUpdated={}",
+                    fileName, state.lineCount, state.invalidLines, state.offset, updated);
+        }
+        return true;
+    }
+
+    /**
+     * Отмечает файл как FAILED; контрольная точка сохраняется, следующее событие продолжит с нее.
+     */
+    public void fail(Path filePath) {
+        states.remove(filePath);
+        fileLedgerService.markFailed(filePath);
+    }
+
+    private synchronized TailState state(Path filePath) {
+        TailState state = states.get(filePath);
+        if (state != null) {
+            return state;
+        }
+        if (!bcpValidation.isValidFileName(filePath.getFileName().toString())) {
+            log.debug("Имя файла не соответствует шаблону, файл пропущен: {}", filePath);
+            return null;
+        }
+        if (!fileLedgerService.tryStartTail(filePath)) {
+            return null;
+        }
+        List<FileCheckpoint> committed = paymentService.findCommittedRanges(filePath.getFileName().toString());
+        if (committed.isEmpty()) {
+            discardStoredPayments(filePath.getFileName().toString());
+        }
+        state = committed.isEmpty() ? new TailState() : TailState.resume(committed);
+        if (state.digest == null) {
+            // Прошлую часть файла мог загрузить другой узел: его ID берутся из БД, а не из индекса этого узла.
+            long restored = paymentService.forEachPaymentId(filePath.getFileName().toString(), chunkSize,
+                    paymentIdIndex::register);
+            log.info("Продолжение файла {} с позиции {} (строк {}, принятых ID {})",
+                    filePath, state.offset, state.lineCount, restored);
+        }
+        states.put(filePath, state);
+        return state;
+    }
+
+    /**
+     * Файл читается с начала: платежи прежней загрузки файла с тем же именем удаляются, иначе итоговый
+     * UPDATE статусов и отчет по {@code file_name} в {@link #finish(Path)} захватили бы и их.
+     */
+    private void discardStoredPayments(String fileName) {
+        if (!paymentService.hasPayments(fileName)) {
+            return;
+        }
+        if (paymentIdIndex.isEnabled()) {
+            paymentService.forEachFileOnlyPaymentId(fileName, chunkSize, paymentIdIndex::unregister);
+        }
+        int deleted = paymentService.discardFile(fileName);
+        paymentQueryService.evictFile(fileName);
+        log.warn("Удалены платежи прежней загрузки файла {}: {}", fileName, deleted);
+    }
+
+    /**
+     * Разбирает диапазон от текущего смещения до конца последней полной строки (или до конца файла).
+     * Позиция строки считается по длинам строк: они идут подряд, разделитель - один байт '\n'.
+     */
+    private void readAppended(Path filePath, TailState state, boolean toEndOfFile) throws IOException {
+        String fileName = filePath.getFileName().toString();
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long end = toEndOfFile ? size : MappedLineReader.lastLineEnd(channel, state.offset, size);
+            if (end <= state.offset) {
+                return;
+            }
+            long from = state.offset;
+            long baseLines = state.lineCount;
+            long baseInvalid = state.invalidLines;
+            BcpRecordParser recordParser = bcpValidation.newParser();
+            FileParseLog parseLog = new FileParseLog(fileName, invalidLinesLimit, invalidLinesSampleEvery);
+            PaymentBatch[] chunk = {new PaymentBatch(fileName, chunkSize)};
+            long[] cursor = {from, 0};
+            long[] range = {from, 0};
+
+            // Несохраненный блок снимает регистрацию своих ID: строки будут прочитаны снова.
+            try {
+                MappedLineReader.forEachLine(channel, from, end, MappedLineReader.DEFAULT_WINDOW_SIZE, (buffer, start, lineEnd) -> {
+                    cursor[0] = Math.min(cursor[0] + lineEnd - start + 1, end);
+                    cursor[1]++;
+                    BcpRecord record = recordParser.parse(buffer, start, lineEnd);
+                    if (record == null) {
+                        parseLog.invalidLine(buffer, start, lineEnd, recordParser.rejectReason());
+                        return;
+                    }
+                    boolean registered = paymentIdIndex.register(record.paymentId());
+                    if (!registered) {
+                        parseLog.duplicate(record.paymentId());
+                    }
+                    chunk[0].add(record.recordNumber(), record.paymentId(), record.companyName(), record.payerInn(),
+                            record.amountCents(), registered ? PaymentStatus.OK.getCode() : PaymentStatus.DUPLICATE.getCode());
+                    if (registered) {
+                        chunk[0].markRegistered(chunk[0].size() - 1);
+                    }
+                    if (chunk[0].isFull()) {
+                        persist(chunk[0], parseLog, range, cursor[0], cursor[1]);
+                        state.advance(cursor[0], baseLines + cursor[1], baseInvalid + parseLog.invalidLines());
+                        chunk[0] = new PaymentBatch(fileName, chunkSize);
+                    }
+                });
+
+                if (!chunk[0].isEmpty() || end > range[0]) {
+                    persist(chunk[0], parseLog, range, end, cursor[1]);
+                }
+            } catch (IOException | RuntimeException e) {
+                paymentIdIndex.unregister(chunk[0]);
+                throw e;
+            }
+            state.advance(end, baseLines + cursor[1], baseInvalid + parseLog.invalidLines());
+            ingestMetrics.recordLines(cursor[1], parseLog.invalidLines());
+            if (state.digest != null) {
+                digest(channel, from, end, state.digest);
+            }
+            log.debug("Файл {}: прочитано {} байт, {} строк", fileName, end - from, cursor[1]);
+        }
+    }
+
+    /**
+     * Сохраняет блок вместе с контрольной точкой диапазона от {@code range[0]} до {@code to};
+     * {@code range} - начало диапазона и число строк до него, сдвигается на конец сохраненного.
+     * ID, которые блок принял впервые, перед этим проверяются по БД ({@link PaymentIdIndex#findStoredDuplicates}).
+     */
+    private void persist(PaymentBatch batch, FileParseLog parseLog, long[] range, long to, long lines) {
+        paymentIdIndex.findStoredDuplicates(batch, parseLog::duplicate);
+        batch.setFileRange(range[0], to, lines - range[1]);
+        range[0] = to;
+        range[1] = lines;
+        paymentService.saveAll(batch);
+        paymentQueryService.evict(batch);
+        ingestMetrics.recordPayments(batch);
+    }
+
+    /**
+     * Отчет и сводка файла строятся из сохраненных платежей ({@link ReporterService#appendStoredPayments}).
+     */
+    private void writeReport(String fileName, long invalidLines) throws IOException {
+        ReconciliationSummary summary = new ReconciliationSummary(fileName, topPayers);
+        summary.setInvalidLines(invalidLines);
+        try (ReportSink report = reporterService.openReport(fileName)) {
+            if (reporterService.appendStoredPayments(report, fileName, summary) == 0) {
+                log.warn("Нет действительных платежей для отчета: {}", fileName);
+                return;
+            }
+            report.appendSummary(summary);
+            reconciliationService.save(summary);
+            report.commit();
+        }
+    }
+
+    private static void digest(FileChannel channel, long from, long to, MessageDigest digest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        long position = from;
+        while (position < to) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), to - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            buffer.flip();
+            digest.update(buffer);
+            position += read;
+        }
+    }
+
+    /**
+     * Состояние файла в режиме tail; доступ синхронизирован на самом объекте.
+     */
+    private static final class TailState {
+        private long offset;
+        private long lineCount;
+        private long invalidLines;
+        /**
+         * {@code null}, если чтение продолжено с контрольной точки и начало файла не хешировалось.
+         */
+        private final MessageDigest digest;
+
+        TailState() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 недоступен", e);
+            }
+        }
+
+        private TailState(long offset, long lineCount, long invalidLines) {
+            this.offset = offset;
+            this.lineCount = lineCount;
+            this.invalidLines = invalidLines;
+            this.digest = null;
+        }
+
+        /**
+         * Диапазоны файла в режиме tail сохраняются подряд, поэтому позиция - конец последнего из них.
+         */
+        static TailState resume(List<FileCheckpoint> committed) {
+            long lineCount = 0;
+            long invalidLines = 0;
+            for (FileCheckpoint checkpoint : committed) {
+                lineCount += checkpoint.getLineCount();
+                invalidLines += checkpoint.getInvalidLines();
+            }
+            return new TailState(committed.get(committed.size() - 1).getByteOffset(), lineCount, invalidLines);
+        }
+
+        void advance(long offset, long lineCount, long invalidLines) {
+            this.offset = offset;
+            this.lineCount = lineCount;
+            this.invalidLines = invalidLines;
+        }
+    }
+}
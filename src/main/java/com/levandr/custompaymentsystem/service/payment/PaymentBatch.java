@@ -0,0 +1,291 @@
+package com.levandr.custompaymentsystem.service.payment;
+
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Блок разобранных платежей одного файла в колоночном виде на примитивных массивах.
+ * <p>
+ * Номер записи и ИНН (по 12 цифр) хранятся как {@code long}, ID платежа - тремя {@code long}
+ * ({@link PaymentIdSet#encode(String)}), сумма - в копейках, статус - {@code byte}, имена компаний -
+ * байтами UTF-8 в общем массиве. Строка блока занимает около 130 байт против ~500 байт у сущности
+ * {@link Payment} с пятью строками и {@link BigDecimal}. Сущности создаются только на время
+ * сохранения ({@link #toPayments()}), после чего в блок переносятся только их ID.
+ * <p>
+ * Не потокобезопасен; после передачи в конвейер блок изменяет только стадия сохранения.
+ */
+public class PaymentBatch {
+
+    private static final int ID_STRIDE = 3;
+
+    private final String fileName;
+    private final long[] ids;
+    private final long[] recordNumbers;
+    private final long[] paymentIds;
+    private final long[] payerInns;
+    private final long[] amountCents;
+    private final byte[] statusCodes;
+    private final boolean[] registered;
+    private final boolean[] duplicates;
+    private final int[] companyOffsets;
+    private byte[] companyNames;
+    private int size;
+    private long rangeFrom = -1;
+    private long rangeTo = -1;
+    private long rangeLines;
+
+    public PaymentBatch(String fileName, int capacity) {
+        this.fileName = fileName;
+        this.ids = new long[capacity];
+        this.recordNumbers = new long[capacity];
+        this.paymentIds = new long[capacity * ID_STRIDE];
+        this.payerInns = new long[capacity];
+        this.amountCents = new long[capacity];
+        this.statusCodes = new byte[capacity];
+        this.registered = new boolean[capacity];
+        this.duplicates = new boolean[capacity];
+        this.companyOffsets = new int[capacity + 1];
+        this.companyNames = new byte[capacity * 32];
+    }
+
+    /**
+     * Добавляет строку. Номер записи и ИНН - строки из 12 цифр, ID платежа - в формате
+     * {@link PaymentIdSet#encode(String)}. Строка со статусом DUPLICATE отмечается как дубликат
+     * ({@link #isDuplicate}).
+     *
+     * @throws IllegalStateException если блок заполнен.
+     */
+    public void add(String recordNumber, String paymentId, String companyName, String payerInn,
+                    long amount, int statusCode) {
+        if (isFull()) {
+            throw new IllegalStateException("Блок платежей заполнен: " + size);
+        }
+        long[] key = PaymentIdSet.encode(paymentId);
+        System.arraycopy(key, 0, paymentIds, size * ID_STRIDE, ID_STRIDE);
+        recordNumbers[size] = Long.parseLong(recordNumber);
+        payerInns[size] = Long.parseLong(payerInn);
+        amountCents[size] = amount;
+        statusCodes[size] = (byte) statusCode;
+        duplicates[size] = statusCode == PaymentStatus.DUPLICATE.getCode();
+
+        byte[] company = companyName.getBytes(StandardCharsets.UTF_8);
+        int offset = companyOffsets[size];
+        if (offset + company.length > companyNames.length) {
+            companyNames = Arrays.copyOf(companyNames, Math.max(companyNames.length * 2, offset + company.length));
+        }
+        System.arraycopy(company, 0, companyNames, offset, company.length);
+        companyOffsets[size + 1] = offset + company.length;
+        size++;
+    }
+
+    public String fileName() {
+        return fileName;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == ids.length;
+    }
+
+    /**
+     * Диапазон файла, все строки которого (и недействительные тоже) вошли в этот блок.
+     * Блок с диапазоном сохраняется вместе с контрольной точкой; пустой блок с диапазоном
+     * отмечает диапазон только из недействительных строк.
+     *
+     * @param from  смещение начала первой строки.
+     * @param to    смещение конца диапазона.
+     * @param lines число строк в диапазоне.
+     */
+    public void setFileRange(long from, long to, long lines) {
+        this.rangeFrom = from;
+        this.rangeTo = to;
+        this.rangeLines = lines;
+    }
+
+    public boolean hasFileRange() {
+        return rangeFrom >= 0;
+    }
+
+    public long rangeFrom() {
+        return rangeFrom;
+    }
+
+    public long rangeTo() {
+        return rangeTo;
+    }
+
+    public long rangeLines() {
+        return rangeLines;
+    }
+
+    /**
+     * Недействительные строки диапазона: все строки, не ставшие записями блока.
+     */
+    public long rangeInvalidLines() {
+        return rangeLines - size;
+    }
+
+    /**
+     * ID записи в БД; {@code 0}, пока блок не сохранен.
+     */
+    public long id(int index) {
+        return ids[index];
+    }
+
+    public String recordNumber(int index) {
+        return twelveDigits(recordNumbers[index]);
+    }
+
+    public String paymentId(int index) {
+        int key = index * ID_STRIDE;
+        return PaymentIdSet.decode(paymentIds[key], paymentIds[key + 1], paymentIds[key + 2]);
+    }
+
+    public String companyName(int index) {
+        int offset = companyOffsets[index];
+        return new String(companyNames, offset, companyOffsets[index + 1] - offset, StandardCharsets.UTF_8);
+    }
+
+    public String payerInn(int index) {
+        return twelveDigits(payerInns[index]);
+    }
+
+    /**
+     * ИНН плательщика числом, без создания строки.
+     */
+    public long payerInnNumber(int index) {
+        return payerInns[index];
+    }
+
+    public long amountCents(int index) {
+        return amountCents[index];
+    }
+
+    public BigDecimal amount(int index) {
+        return BigDecimal.valueOf(amountCents[index], 2);
+    }
+
+    public int statusCode(int index) {
+        return statusCodes[index];
+    }
+
+    public void setStatusCode(int index, int statusCode) {
+        statusCodes[index] = (byte) statusCode;
+    }
+
+    /**
+     * Отмечает, что ID строки впервые зарегистрирован в {@link PaymentIdIndex} при разборе этого блока.
+     * Статус строки для этого не годится: итоговые статусы перезаписывают DUPLICATE.
+     */
+    public void markRegistered(int index) {
+        registered[index] = true;
+    }
+
+    public boolean isRegistered(int index) {
+        return registered[index];
+    }
+
+    /**
+     * Делает строку дубликатом после разбора: ее ID уже сохранен в БД другим узлом
+     * ({@link PaymentIdIndex#findStoredDuplicates}). Блок при этом ID не принимал, поэтому отметка
+     * регистрации снимается.
+     */
+    public void markDuplicate(int index) {
+        statusCodes[index] = (byte) PaymentStatus.DUPLICATE.getCode();
+        duplicates[index] = true;
+        registered[index] = false;
+    }
+
+    /**
+     * Строка добавлена как дубликат. Отметка сохраняется и после того, как итоговый статус файла
+     * заменил DUPLICATE на FULL_SAVED.
+     */
+    public boolean isDuplicate(int index) {
+        return duplicates[index];
+    }
+
+    /**
+     * Сущности для сохранения, в порядке строк блока.
+     */
+    public List<Payment> toPayments() {
+        List<Payment> payments = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            payments.add(new Payment(null, paymentId(i), recordNumber(i), companyName(i), payerInn(i),
+                    amount(i), statusCode(i), fileName, duplicates[i]));
+        }
+        return payments;
+    }
+
+    /**
+     * Переносит ID сохраненных сущностей, полученных из {@link #toPayments()}.
+     */
+    public void assignIds(List<Payment> saved) {
+        for (int i = 0; i < size; i++) {
+            Long id = saved.get(i).getId();
+            ids[i] = id != null ? id : 0;
+        }
+    }
+
+    /**
+     * Назначает ID записям блока, зарезервированные вне JPA.
+     */
+    public void assignIds(long[] reservedIds) {
+        System.arraycopy(reservedIds, 0, ids, 0, size);
+    }
+
+    /**
+     * Сумма в виде {@link BigDecimal#toPlainString()} без создания {@link BigDecimal}.
+     */
+    public void appendAmount(StringBuilder target, int index) {
+        long cents = amountCents[index];
+        target.append(cents / 100).append('.');
+        if (cents % 100 < 10) {
+            target.append('0');
+        }
+        target.append(cents % 100);
+    }
+
+    /**
+     * Строка отчета в формате {@link Payment#toString()}.
+     */
+    public void appendTo(StringBuilder target, int index) {
+        target.append("PaymentEntity{id=").append(ids[index] != 0 ? ids[index] : null)
+                .append(", paymentId='").append(paymentId(index))
+                .append("', recordNumber='").append(recordNumber(index))
+                .append("', companyName='").append(companyName(index))
+                .append("', payerInn='").append(payerInn(index))
+                .append("', amount=");
+        appendAmount(target, index);
+        target.append(", status=").append(statusCodes[index])
+                .append('}');
+    }
+
+    /**
+     * Примерный объем памяти блока в байтах.
+     */
+    public long memoryBytes() {
+        return (long) (ids.length * 4 + paymentIds.length) * Long.BYTES
+                + statusCodes.length + registered.length + duplicates.length + (long) companyOffsets.length * Integer.BYTES + companyNames.length;
+    }
+
+    /**
+     * Номер записи или ИНН, хранимый числом, обратно в строку из 12 цифр с ведущими нулями.
+     */
+    public static String twelveDigits(long value) {
+        String digits = Long.toString(value);
+        return digits.length() >= 12 ? digits : "0".repeat(12 - digits.length()) + digits;
+    }
+}
@@ -0,0 +1,156 @@
+package com.levandr.custompaymentsystem.service.payment;
+
+import com.levandr.custompaymentsystem.repository.PaymentEntityRepository;
+import com.levandr.custompaymentsystem.repository.PaymentEntityRepository.PaymentIdView;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Индекс уже принятых идентификаторов платежей по всем файлам.
+ * <p>
+ * При старте загружается из БД постранично, дальше пополняется при разборе файлов.
+ * Проверка дубликата между файлами - O(1) в памяти, без обращения к БД.
+ * <p>
+ * Индекс свой у каждого узла. Узлы на общем каталоге Input видят при старте все ID из БД, а после
+ * старта - только ID файлов, разобранных этим узлом. Поэтому в кластерном режиме ({@code spring.cluster.enabled})
+ * ID, которые блок принял впервые, перед сохранением проверяются по БД ({@link #findStoredDuplicates}).
+ * Остается гонка: два узла одновременно разбирают файлы с одним ID, и ни один из блоков еще не сохранен -
+ * тогда оба платежа сохраняются принятыми.
+ */
+@Component
+@RequiredArgsConstructor
+public class PaymentIdIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentIdIndex.class);
+    private final PaymentEntityRepository paymentEntityRepository;
+
+    @Value("${spring.payment.id-index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${spring.payment.id-index.warmup-page-size:10000}")
+    private int warmupPageSize;
+
+    @Value("${spring.cluster.enabled:false}")
+    private boolean clusterEnabled;
+
+    private final PaymentIdSet knownIds = new PaymentIdSet();
+
+    @PostConstruct
+    public void warmUp() {
+        if (!enabled) {
+            log.info("Индекс идентификаторов платежей отключен");
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        long lastId = 0;
+        List<PaymentIdView> page;
+        do {
+            page = paymentEntityRepository.findPaymentIdsAfter(lastId, PageRequest.ofSize(warmupPageSize));
+            for (PaymentIdView view : page) {
+                register(view.getPaymentId());
+                lastId = view.getId();
+            }
+        } while (page.size() == warmupPageSize);
+
+        log.info("Индекс идентификаторов платежей загружен: {} ID за {} мс", size(), System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * Атомарно регистрирует ID платежа.
+     *
+     * @return {@code false}, если ID уже был принят ранее (платеж - дубликат).
+     */
+    public synchronized boolean register(String paymentId) {
+        if (!enabled) {
+            return true;
+        }
+        try {
+            return knownIds.add(paymentId);
+        } catch (IllegalArgumentException e) {
+            log.warn("ID платежа не может быть проиндексирован: {}", paymentId);
+            return true;
+        }
+    }
+
+    /**
+     * Снимает регистрацию ID, принятых блоком ({@link PaymentBatch#isRegistered}), когда блок не сохранен
+     * (ошибка вставки или прерванный файл). Иначе при повторной обработке файла его платежи оказались бы
+     * дубликатами самих себя.
+     */
+    public synchronized void unregister(PaymentBatch batch) {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isRegistered(i)) {
+                knownIds.remove(batch.paymentId(i));
+            }
+        }
+    }
+
+    /**
+     * Снимает регистрацию ID, платежи с которым удалены из БД.
+     */
+    public synchronized void unregister(String paymentId) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            knownIds.remove(paymentId);
+        } catch (IllegalArgumentException e) {
+            log.warn("ID платежа не может быть проиндексирован: {}", paymentId);
+        }
+    }
+
+    /**
+     * В кластерном режиме ищет в БД ID, которые блок принял впервые ({@link PaymentBatch#isRegistered}),
+     * среди платежей других файлов: их мог сохранить другой узел уже после старта этого. Такие строки
+     * становятся дубликатами ({@link PaymentBatch#markDuplicate}), а их ID остаются в индексе.
+     * Вызывается до того, как по блоку посчитаны итоги и метрики.
+     *
+     * @param onDuplicate получает ID каждой найденной строки.
+     */
+    public void findStoredDuplicates(PaymentBatch batch, Consumer<String> onDuplicate) {
+        if (!enabled || !clusterEnabled) {
+            return;
+        }
+        Set<String> candidates = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isRegistered(i)) {
+                candidates.add(batch.paymentId(i));
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Set<String> stored = new HashSet<>(paymentEntityRepository.findPaymentIdsInOtherFiles(candidates,
+                batch.fileName()));
+        for (int i = 0; i < batch.size() && !stored.isEmpty(); i++) {
+            if (batch.isRegistered(i) && stored.remove(batch.paymentId(i))) {
+                batch.markDuplicate(i);
+                onDuplicate.accept(batch.paymentId(i));
+            }
+        }
+    }
+
+    /**
+     * Включен ли индекс; выключенный индекс принимает любой ID.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized int size() {
+        return knownIds.size();
+    }
+}
@@ -0,0 +1,251 @@
+package com.levandr.custompaymentsystem.service.payment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Множество идентификаторов платежей на примитивных массивах (открытая адресация, линейное пробирование).
+ * <p>
+ * ID вида {@code \d{9}-\d{9}-\d{9}-\d{9}-\d{9,10}} кодируется тремя {@code long}:
+ * первые два сегмента, вторые два сегмента и последний сегмент вместе с признаком его длины
+ * (иначе "012345678" и "0012345678" дали бы одинаковый ключ). 46 десятичных цифр не помещаются
+ * в 128 бит, поэтому ключ занимает 24 байта - против ~150 байт на {@code String} в {@code HashSet}.
+ * <p>
+ * Не потокобезопасен.
+ */
+public class PaymentIdSet {
+
+    static final int STRIDE = 3;
+    static final long EMPTY = -1L;
+    private static final long SEGMENT_BASE = 1_000_000_000L;
+    private static final long TEN_DIGITS_FLAG = 1L << 40;
+
+    private long[] table;
+    private int mask;
+    private int size;
+
+    public PaymentIdSet() {
+        this(1024);
+    }
+
+    public PaymentIdSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Добавляет ID.
+     *
+     * @return {@code true}, если ID еще не было в множестве.
+     * @throws IllegalArgumentException если ID не соответствует формату.
+     */
+    public boolean add(String paymentId) {
+        long[] key = encode(paymentId);
+        return add(key[0], key[1], key[2]);
+    }
+
+    public boolean contains(String paymentId) {
+        long[] key = encode(paymentId);
+        return table[indexOf(key[0], key[1], key[2]) + 2] != EMPTY;
+    }
+
+    public boolean contains(long high, long middle, long low) {
+        return table[indexOf(high, middle, low) + 2] != EMPTY;
+    }
+
+    public boolean add(long high, long middle, long low) {
+        if ((size + 1) * 2L > table.length / STRIDE) {
+            resize();
+        }
+        int slot = indexOf(high, middle, low);
+        if (table[slot + 2] != EMPTY) {
+            return false;
+        }
+        table[slot] = high;
+        table[slot + 1] = middle;
+        table[slot + 2] = low;
+        size++;
+        return true;
+    }
+
+    /**
+     * Удаляет ID.
+     *
+     * @return {@code true}, если ID был в множестве.
+     * @throws IllegalArgumentException если ID не соответствует формату.
+     */
+    public boolean remove(String paymentId) {
+        long[] key = encode(paymentId);
+        return remove(key[0], key[1], key[2]);
+    }
+
+    /**
+     * Удаление со сдвигом: ключи дальше по цепочке пробирования переносятся в освободившуюся позицию,
+     * если их собственная позиция не лежит между ней и их текущим местом. Так цепочки не рвутся
+     * и не нужны отметки удаленных позиций.
+     */
+    public boolean remove(long high, long middle, long low) {
+        int index = indexOf(high, middle, low);
+        if (table[index + 2] == EMPTY) {
+            return false;
+        }
+        int hole = index / STRIDE;
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            int from = slot * STRIDE;
+            if (table[from + 2] == EMPTY) {
+                break;
+            }
+            int home = (int) (hash(table[from], table[from + 1], table[from + 2]) & mask);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                System.arraycopy(table, from, table, hole * STRIDE, STRIDE);
+                hole = slot;
+            }
+        }
+        table[hole * STRIDE + 2] = EMPTY;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Примерный объем памяти таблицы в байтах.
+     */
+    public long memoryBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    /**
+     * Число позиций таблицы, степень двойки.
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Записывает таблицу как есть, по {@link #STRIDE} {@code long} (big-endian) на позицию;
+     * искать в записанной таблице можно тем же пробированием с {@link #hash}.
+     */
+    void writeTo(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        for (long value : table) {
+            buffer.putLong(value);
+            if (!buffer.hasRemaining()) {
+                writeFully(channel, buffer);
+            }
+        }
+        writeFully(channel, buffer);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Кодирует ID платежа в три {@code long}.
+     *
+     * @throws IllegalArgumentException если ID не соответствует формату.
+     */
+    public static long[] encode(String paymentId) {
+        int length = paymentId.length();
+        if (length != 49 && length != 50) {
+            throw new IllegalArgumentException("Некорректный ID платежа: " + paymentId);
+        }
+        long s1 = segment(paymentId, 0, 9);
+        long s2 = segment(paymentId, 10, 9);
+        long s3 = segment(paymentId, 20, 9);
+        long s4 = segment(paymentId, 30, 9);
+        long s5 = segment(paymentId, 40, length - 40);
+        for (int dash = 9; dash < 40; dash += 10) {
+            if (paymentId.charAt(dash) != '-') {
+                throw new IllegalArgumentException("Некорректный ID платежа: " + paymentId);
+            }
+        }
+        long low = length == 50 ? s5 | TEN_DIGITS_FLAG : s5;
+        return new long[]{s1 * SEGMENT_BASE + s2, s3 * SEGMENT_BASE + s4, low};
+    }
+
+    /**
+     * Восстанавливает ID платежа из ключа {@link #encode(String)}.
+     */
+    public static String decode(long high, long middle, long low) {
+        boolean tenDigits = (low & TEN_DIGITS_FLAG) != 0;
+        StringBuilder id = new StringBuilder(50);
+        appendSegment(id, high / SEGMENT_BASE, 9).append('-');
+        appendSegment(id, high % SEGMENT_BASE, 9).append('-');
+        appendSegment(id, middle / SEGMENT_BASE, 9).append('-');
+        appendSegment(id, middle % SEGMENT_BASE, 9).append('-');
+        return appendSegment(id, low & ~TEN_DIGITS_FLAG, tenDigits ? 10 : 9).toString();
+    }
+
+    private static StringBuilder appendSegment(StringBuilder target, long value, int digits) {
+        int start = target.length();
+        target.append(value);
+        while (target.length() - start < digits) {
+            target.insert(start, '0');
+        }
+        return target;
+    }
+
+    private static long segment(String paymentId, int offset, int count) {
+        long value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = paymentId.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Некорректный ID платежа: " + paymentId);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Позиция ключа в таблице либо первая свободная позиция в его цепочке пробирования.
+     */
+    private int indexOf(long high, long middle, long low) {
+        int slot = (int) (hash(high, middle, low) & mask);
+        while (true) {
+            int index = slot * STRIDE;
+            if (table[index + 2] == EMPTY
+                    || (table[index] == high && table[index + 1] == middle && table[index + 2] == low)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    static long hash(long high, long middle, long low) {
+        long h = high * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 32) ^ middle) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ (h >>> 29) ^ low) * 0x165667B19E3779F9L;
+        return h ^ (h >>> 32);
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity * STRIDE];
+        mask = capacity - 1;
+        for (int i = 2; i < table.length; i += STRIDE) {
+            table[i] = EMPTY;
+        }
+    }
+
+    private void resize() {
+        long[] old = table;
+        allocate((mask + 1) * 2);
+        size = 0;
+        for (int i = 0; i < old.length; i += STRIDE) {
+            if (old[i + 2] != EMPTY) {
+                add(old[i], old[i + 1], old[i + 2]);
+            }
+        }
+    }
+}
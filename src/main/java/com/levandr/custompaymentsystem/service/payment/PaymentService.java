@@ -1,18 +1,52 @@
 package com.levandr.custompaymentsystem.service.payment;
 
+import com.levandr.custompaymentsystem.entity.FileCheckpoint;
 import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.enums.PersistenceMode;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
+import com.levandr.custompaymentsystem.repository.FileCheckpointRepository;
 import com.levandr.custompaymentsystem.repository.PaymentEntityRepository;
+import com.levandr.custompaymentsystem.repository.PaymentEntityRepository.PaymentIdView;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 public class PaymentService {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentService.class);
     private final PaymentEntityRepository paymentEntityRepository;
+    private final IngestMetrics ingestMetrics;
+    private final PostgresCopyWriter postgresCopyWriter;
+    private final FileCheckpointRepository fileCheckpointRepository;
+
+    @Value("${spring.payment.persistence:JPA}")
+    private PersistenceMode persistenceMode;
+
+    /**
+     * Режим COPY включается только на PostgreSQL, иначе используется JPA.
+     */
+    @PostConstruct
+    public void init() {
+        if (persistenceMode == PersistenceMode.COPY && !postgresCopyWriter.isAvailable()) {
+            log.warn("COPY поддерживается только PostgreSQL, платежи будут сохраняться через JPA");
+            persistenceMode = PersistenceMode.JPA;
+        }
+        log.info("Режим сохранения платежей: {}", persistenceMode);
+    }
 
     /**
      * Сохраняет платеж и возвращает сохраненный объект.
@@ -48,7 +82,8 @@ public class PaymentService {
     }
 
     /**
-     * Создает новый платеж и сохраняет его в базе данных.
+     * Создает новый платеж без сохранения в базе данных.
+     * Сохранение выполняется пакетно через {@link #saveAll(List)}.
      *
      * @param paymentId    уникальный идентификатор платежа.
      * @param recordNumber номер записи.
@@ -57,24 +92,165 @@ public class PaymentService {
      * @param amount       сумма платежа.
      * @param status       статус платежа.
      * @param fileName     имя файла, из которого получены данные.
-     * @return сохраненный объект Payment.
+     * @return новый объект Payment.
      */
     public Payment createPayment(String paymentId, String recordNumber,
                                  String companyName, String payerInn,
                                  BigDecimal amount, Integer status,
                                  String fileName) {
 
-        Payment payment = new Payment(null,
-                paymentId, recordNumber, companyName, payerInn, amount, status, fileName);
-        return paymentEntityRepository.save(payment);
+        return new Payment(null,
+                paymentId, recordNumber, companyName, payerInn, amount, status, fileName,
+                status != null && status == PaymentStatus.DUPLICATE.getCode());
     }
 
     /**
-     * Сохраняет список платежей.
+     * Сохраняет список платежей в одной транзакции.
+     * Вставки группируются в JDBC-пакеты размером {@code hibernate.jdbc.batch_size}.
      *
      * @param payments список платежей для сохранения.
      */
+    @Transactional
     public List<Payment> saveAll(List<Payment> payments) {
-        return paymentEntityRepository.saveAll(payments);
+        long startedAt = System.nanoTime();
+        try {
+            return paymentEntityRepository.saveAll(payments);
+        } finally {
+            ingestMetrics.recordDbWrite(System.nanoTime() - startedAt);
+        }
+    }
+
+    /**
+     * Сохраняет блок платежей в одной транзакции: командой COPY или через JPA, в зависимости
+     * от {@code spring.payment.persistence}. При JPA сущности создаются только на время вставки,
+     * в блок переносятся их ID. Если у блока задан диапазон файла, в той же транзакции сохраняется
+     * контрольная точка ({@link FileCheckpoint}), поэтому после сбоя диапазон либо сохранен целиком
+     * вместе с отметкой, либо не сохранен вовсе.
+     *
+     * @param batch блок платежей для сохранения.
+     */
+    @Transactional
+    public PaymentBatch saveAll(PaymentBatch batch) {
+        if (persistenceMode == PersistenceMode.COPY) {
+            long startedAt = System.nanoTime();
+            try {
+                postgresCopyWriter.write(batch);
+            } finally {
+                ingestMetrics.recordDbWrite(System.nanoTime() - startedAt);
+            }
+        } else {
+            batch.assignIds(saveAll(batch.toPayments()));
+        }
+        if (batch.hasFileRange()) {
+            fileCheckpointRepository.save(new FileCheckpoint(null, batch.fileName(), batch.rangeFrom(),
+                    batch.rangeTo(), batch.rangeLines(), batch.rangeInvalidLines(), Instant.now()));
+        }
+        return batch;
+    }
+
+    /**
+     * Выставляет итоговые статусы всех платежей файла set-based UPDATE по индексу {@code file_name},
+     * без загрузки сущностей: при недействительных строках OK становится PARTIAL_OK, иначе OK и DUPLICATE
+     * становятся FULL_SAVED - как при выставлении статусов в блоке перед вставкой.
+     *
+     * @param fileName        имя файла.
+     * @param hasInvalidLines были ли в файле недействительные строки.
+     * @return число измененных записей.
+     */
+    @Transactional
+    public int finalizeStatuses(String fileName, boolean hasInvalidLines) {
+        long startedAt = System.nanoTime();
+        try {
+            if (hasInvalidLines) {
+                return paymentEntityRepository.updateStatusCode(fileName,
+                        PaymentStatus.OK.getCode(), PaymentStatus.PARTIAL_OK.getCode());
+            }
+            return paymentEntityRepository.updateStatusCode(fileName,
+                    PaymentStatus.OK.getCode(), PaymentStatus.FULL_SAVED.getCode())
+                    + paymentEntityRepository.updateStatusCode(fileName,
+                    PaymentStatus.DUPLICATE.getCode(), PaymentStatus.FULL_SAVED.getCode());
+        } finally {
+            ingestMetrics.recordDbWrite(System.nanoTime() - startedAt);
+        }
+    }
+
+    /**
+     * Есть ли у файла сохраненные платежи.
+     *
+     * @param fileName имя файла.
+     */
+    public boolean hasPayments(String fileName) {
+        return paymentEntityRepository.existsByFileName(fileName);
+    }
+
+    /**
+     * Сохраненные диапазоны файла по возрастанию смещения.
+     *
+     * @param fileName имя файла.
+     */
+    public List<FileCheckpoint> findCommittedRanges(String fileName) {
+        return fileCheckpointRepository.findByFileNameOrderByStartOffset(fileName);
+    }
+
+    /**
+     * Передает {@code consumer} ID сохраненных платежей файла, кроме дубликатов, читая их страницами по ID
+     * (keyset-пагинация). Продолжение файла после сбоя восстанавливает по ним уже принятые ID,
+     * не полагаясь на память узла. Дубликаты пропускаются: блоки сохраняются не по порядку, и сохраненный
+     * повтор ID может стоять в файле после несохраненного первого вхождения, которое при продолжении
+     * должно остаться принятым.
+     *
+     * @param fileName имя файла.
+     * @param pageSize размер страницы.
+     * @return число переданных ID.
+     */
+    public long forEachPaymentId(String fileName, int pageSize, Consumer<String> consumer) {
+        return forEachPaymentId(fileName, pageSize, consumer, false);
+    }
+
+    /**
+     * Передает {@code consumer} ID платежей файла, которые не встречаются в других файлах, включая дубликаты:
+     * при удалении файла только они перестают быть принятыми.
+     */
+    public long forEachFileOnlyPaymentId(String fileName, int pageSize, Consumer<String> consumer) {
+        return forEachPaymentId(fileName, pageSize, consumer, true);
+    }
+
+    private long forEachPaymentId(String fileName, int pageSize, Consumer<String> consumer, boolean fileOnly) {
+        long count = 0;
+        long afterId = 0;
+        List<PaymentIdView> page;
+        do {
+            page = fileOnly
+                    ? paymentEntityRepository.findFileOnlyPaymentIdsAfter(fileName, afterId, PageRequest.ofSize(pageSize))
+                    : paymentEntityRepository.findFileAcceptedPaymentIdsAfter(fileName, afterId,
+                            PageRequest.ofSize(pageSize));
+            for (PaymentIdView view : page) {
+                consumer.accept(view.getPaymentId());
+                afterId = view.getId();
+            }
+            count += page.size();
+        } while (page.size() == pageSize);
+        return count;
+    }
+
+    /**
+     * Удаляет контрольные точки файла после того, как его отчет зафиксирован.
+     *
+     * @param fileName имя файла.
+     */
+    public void clearCheckpoints(String fileName) {
+        fileCheckpointRepository.deleteByFileName(fileName);
+    }
+
+    /**
+     * Удаляет частично загруженный файл - его платежи и контрольные точки - в одной транзакции.
+     *
+     * @param fileName имя файла.
+     * @return число удаленных платежей.
+     */
+    @Transactional
+    public int discardFile(String fileName) {
+        fileCheckpointRepository.deleteByFileName(fileName);
+        return paymentEntityRepository.deleteByFileName(fileName);
     }
 }
@@ -0,0 +1,141 @@
+package com.levandr.custompaymentsystem.service.payment;
+
+import com.levandr.custompaymentsystem.entity.Payment;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Сохранение блоков платежей через {@code COPY payment FROM STDIN (FORMAT csv)}.
+ * <p>
+ * ID записей резервируются заранее из {@code payment_seq}: каждое значение последовательности
+ * дает диапазон из {@link Payment#ID_ALLOCATION_SIZE} ID, как у оптимизатора pooled в Hibernate,
+ * поэтому COPY и вставки через JPA могут работать на одной таблице одновременно.
+ * Соединение берется из текущей транзакции Spring, так что COPY откатывается вместе с ней.
+ */
+@Component
+@RequiredArgsConstructor
+public class PostgresCopyWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresCopyWriter.class);
+    private static final String COPY_SQL = "COPY payment (id, payment_id, record_number, company_name, payer_inn, "
+            + "amount, status_code, file_name, duplicate) FROM STDIN (FORMAT csv)";
+    private static final String RESERVE_SQL = "SELECT nextval('payment_seq') FROM generate_series(1, ?)";
+    private static final int BYTES_PER_ROW = 192;
+
+    private final DataSource dataSource;
+
+    /**
+     * Проверяет, что источник данных - PostgreSQL.
+     */
+    public boolean isAvailable() {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isWrapperFor(PGConnection.class);
+        } catch (SQLException e) {
+            log.warn("Не удалось проверить поддержку COPY: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Записывает блок одной командой COPY и назначает записям зарезервированные ID.
+     */
+    public PaymentBatch write(PaymentBatch batch) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            batch.assignIds(reserveIds(connection, batch.size()));
+
+            StringBuilder csv = new StringBuilder(batch.size() * BYTES_PER_ROW);
+            for (int i = 0; i < batch.size(); i++) {
+                appendCsv(csv, batch, i);
+            }
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            long rows = copyManager.copyIn(COPY_SQL, new StringReader(csv.toString()));
+            if (rows != batch.size()) {
+                throw new DataAccessResourceFailureException("COPY записал " + rows + " строк из " + batch.size());
+            }
+            return batch;
+        } catch (SQLException | IOException e) {
+            throw new DataAccessResourceFailureException("Не удалось выполнить COPY для файла " + batch.fileName(), e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * Берет {@code ceil(count / ID_ALLOCATION_SIZE)} значений последовательности; значение {@code v}
+     * соответствует диапазону {@code (v - ID_ALLOCATION_SIZE, v]}.
+     */
+    static long[] reserveIds(Connection connection, int count) throws SQLException {
+        long[] ids = new long[count];
+        int blocks = (count + Payment.ID_ALLOCATION_SIZE - 1) / Payment.ID_ALLOCATION_SIZE;
+        int next = 0;
+        try (PreparedStatement statement = connection.prepareStatement(RESERVE_SQL)) {
+            statement.setInt(1, blocks);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next() && next < count) {
+                    long high = resultSet.getLong(1);
+                    for (long id = Math.max(1, high - Payment.ID_ALLOCATION_SIZE + 1); id <= high && next < count; id++) {
+                        ids[next++] = id;
+                    }
+                }
+            }
+        }
+        if (next < count) {
+            return reserveRest(connection, ids, next);
+        }
+        return ids;
+    }
+
+    /**
+     * Добирает ID, если первый диапазон последовательности оказался неполным (значение 1).
+     */
+    private static long[] reserveRest(Connection connection, long[] ids, int filled) throws SQLException {
+        long[] rest = reserveIds(connection, ids.length - filled);
+        System.arraycopy(rest, 0, ids, filled, rest.length);
+        return ids;
+    }
+
+    /**
+     * Строка CSV для COPY; текстовые поля всегда в кавычках.
+     */
+    static void appendCsv(StringBuilder csv, PaymentBatch batch, int index) {
+        csv.append(batch.id(index)).append(',');
+        quoted(csv, batch.paymentId(index)).append(',');
+        quoted(csv, batch.recordNumber(index)).append(',');
+        quoted(csv, batch.companyName(index)).append(',');
+        quoted(csv, batch.payerInn(index)).append(',');
+        batch.appendAmount(csv, index);
+        csv.append(',').append(batch.statusCode(index)).append(',');
+        quoted(csv, batch.fileName()).append(',');
+        csv.append(batch.isDuplicate(index)).append('\n');
+    }
+
+    private static StringBuilder quoted(StringBuilder csv, String value) {
+        csv.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                csv.append('"');
+            }
+            csv.append(c);
+        }
+        return csv.append('"');
+    }
+}
@@ -0,0 +1,151 @@
+package com.levandr.custompaymentsystem.service.payment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Множество ID платежей одного файла с ограниченным объемом кучи.
+ * <p>
+ * ID хранятся в {@link PaymentIdSet} (три {@code long} на ключ). Когда таблица заполняется до
+ * {@code memoryBudgetBytes}, она как есть записывается во временный файл и отображается в память
+ * только для чтения - вне кучи, страницами управляет ОС, - а в куче начинается новая таблица.
+ * В сброшенной таблице ищется тем же линейным пробированием, что и в памяти, поэтому ни сортировки,
+ * ни слияния не нужно. Куча занята не больше бюджета при любом размере файла; цена - по одному
+ * пробированию каждой сброшенной таблицы на каждый новый ID.
+ * <p>
+ * Не потокобезопасен. Временные файлы удаляются в {@link #close()}.
+ */
+public class SpillingPaymentIdSet implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SpillingPaymentIdSet.class);
+    private static final long MAX_TABLE_BYTES = 1L << 30;
+    private static final int MIN_CAPACITY = 32;
+
+    private final Path spillDirectory;
+    private final int maxKeys;
+    private final List<SpilledTable> spilled = new ArrayList<>();
+    private PaymentIdSet memory;
+    private long size;
+
+    /**
+     * @param memoryBudgetBytes объем таблицы в куче (не больше 1 ГБ), после которого она сбрасывается на диск.
+     * @param spillDirectory    каталог временных файлов; {@code null} - системный.
+     */
+    public SpillingPaymentIdSet(long memoryBudgetBytes, Path spillDirectory) {
+        long slots = Math.min(memoryBudgetBytes, MAX_TABLE_BYTES) / ((long) PaymentIdSet.STRIDE * Long.BYTES);
+        this.maxKeys = Integer.highestOneBit((int) Math.max(MIN_CAPACITY, slots)) / 2;
+        this.spillDirectory = spillDirectory;
+        this.memory = newTable();
+    }
+
+    /**
+     * Добавляет ID.
+     *
+     * @return {@code true}, если ID встретился впервые.
+     * @throws IllegalArgumentException если ID не соответствует формату.
+     * @throws UncheckedIOException     если таблицу не удалось сбросить на диск.
+     */
+    public boolean add(String paymentId) {
+        long[] key = PaymentIdSet.encode(paymentId);
+        if (memory.contains(key[0], key[1], key[2])) {
+            return false;
+        }
+        for (SpilledTable table : spilled) {
+            if (table.contains(key[0], key[1], key[2])) {
+                return false;
+            }
+        }
+        if (memory.size() >= maxKeys) {
+            spill();
+        }
+        memory.add(key[0], key[1], key[2]);
+        size++;
+        return true;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Число таблиц, сброшенных на диск.
+     */
+    public int spilledTables() {
+        return spilled.size();
+    }
+
+    /**
+     * Объем таблицы в куче в байтах.
+     */
+    public long memoryBytes() {
+        return memory.memoryBytes();
+    }
+
+    private void spill() {
+        try {
+            Path file = spillDirectory != null
+                    ? Files.createTempFile(spillDirectory, "payment-ids-", ".spill")
+                    : Files.createTempFile("payment-ids-", ".spill");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                memory.writeTo(channel);
+                LongBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asLongBuffer();
+                spilled.add(new SpilledTable(file, table, memory.capacity() - 1));
+            }
+            log.info("ID платежей сброшены на диск: {} ключей, {} байт, файл {}",
+                    memory.size(), memory.memoryBytes(), file);
+            memory = newTable();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сбросить ID платежей на диск", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (SpilledTable table : spilled) {
+            try {
+                Files.deleteIfExists(table.file);
+            } catch (IOException e) {
+                log.warn("Не удалось удалить временный файл {}", table.file, e);
+            }
+        }
+        spilled.clear();
+        memory = newTable();
+    }
+
+    /**
+     * Таблица растет от малой, но не дальше бюджета: при {@code maxKeys} ключах она сбрасывается.
+     */
+    private PaymentIdSet newTable() {
+        return new PaymentIdSet(Math.min(maxKeys, 1024));
+    }
+
+    /**
+     * Таблица {@link PaymentIdSet}, отображенная из файла.
+     */
+    private record SpilledTable(Path file, LongBuffer table, int mask) {
+
+        boolean contains(long high, long middle, long low) {
+            int slot = (int) (PaymentIdSet.hash(high, middle, low) & mask);
+            while (true) {
+                int index = slot * PaymentIdSet.STRIDE;
+                if (table.get(index + 2) == PaymentIdSet.EMPTY) {
+                    return false;
+                }
+                if (table.get(index) == high && table.get(index + 1) == middle && table.get(index + 2) == low) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.levandr.custompaymentsystem.service.pipeline;
+
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+import com.levandr.custompaymentsystem.service.payment.PaymentIdIndex;
+import com.levandr.custompaymentsystem.service.payment.PaymentService;
+import com.levandr.custompaymentsystem.service.query.PaymentQueryService;
+import com.levandr.custompaymentsystem.service.repoter.ReportSink;
+import com.levandr.custompaymentsystem.service.repoter.ReporterService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationSummary;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Стадии сохранения и отчета, связанные ограниченными очередями.
+ * <p>
+ * Разбор идет в потоке обработчика файла и передает сюда готовые блоки платежей.
+ * Стадия сохранения ({@code spring.pipeline.persist.*}) пишет блоки в БД, стадия отчета
+ * ({@code spring.pipeline.report.*}) дописывает их в отчет строго в порядке файла.
+ * <p>
+ * Обратное давление: когда очередь сохранения заполнена, поток разбора блокируется на передаче
+ * блока; когда заполнена очередь отчета, задачу выполняет поток стадии сохранения. Блоки, уже
+ * сохраненные, но еще ждущие своей очереди в отчете, тоже ограничены: у задания не больше
+ * {@code persist.queue-capacity + report.queue-capacity} переданных и еще не дописанных в отчет блоков,
+ * сверх этого поток разбора ждет. Поэтому память не растет, даже если отчет отстает от вставок, а разбор
+ * следующего файла идет параллельно со вставками предыдущего.
+ * <p>
+ * Если файл не удался, а его блоки сохранялись без контрольных точек, уже сохраненные блоки удаляются:
+ * повторная обработка загрузит файл заново, и в БД не должна оставаться его часть. С контрольными точками
+ * они остаются - с них файл будет продолжен. После остановки конвейера новые блоки и задачи отчета
+ * не теряются, а завершают задание ошибкой.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestPipeline.class);
+    private final PaymentService paymentService;
+    private final ReporterService reporterService;
+    private final PaymentQueryService paymentQueryService;
+    private final ReconciliationService reconciliationService;
+    private final PaymentIdIndex paymentIdIndex;
+
+    @Value("${spring.pipeline.persist.parallelism:4}")
+    private int persistParallelism;
+
+    @Value("${spring.pipeline.persist.queue-capacity:16}")
+    private int persistQueueCapacity;
+
+    @Value("${spring.pipeline.report.parallelism:2}")
+    private int reportParallelism;
+
+    @Value("${spring.pipeline.report.queue-capacity:16}")
+    private int reportQueueCapacity;
+
+    @Value("${spring.parser.chunk-size:1000}")
+    private int pageSize;
+
+    private ThreadPoolExecutor persistExecutor;
+    private ThreadPoolExecutor reportExecutor;
+
+    @PostConstruct
+    public void init() {
+        persistExecutor = stageExecutor("persist", persistParallelism, persistQueueCapacity, IngestPipeline::blockUntilQueued);
+        reportExecutor = stageExecutor("report", reportParallelism, reportQueueCapacity, IngestPipeline::runInCaller);
+        log.info("Конвейер: сохранение {} потоков / очередь {}, отчет {} потоков / очередь {}",
+                persistParallelism, persistQueueCapacity, reportParallelism, reportQueueCapacity);
+    }
+
+    /**
+     * Начинает обработку файла; отчет принадлежит заданию до его завершения.
+     */
+    public FileJob start(String fileName, ReportSink report) {
+        return new FileJob(fileName, report, false);
+    }
+
+    /**
+     * Начинает файл, отчет по которому строится из БД: продолжение после сбоя, когда часть файла уже
+     * сохранена, или статусы, выставляемые после сохранения. Блоки только сохраняются; отчет и сводка
+     * строятся при завершении из всех сохраненных платежей файла
+     * ({@link ReporterService#appendStoredPayments}).
+     */
+    public FileJob startStored(String fileName, ReportSink report) {
+        return new FileJob(fileName, report, true);
+    }
+
+    /**
+     * Удаляет сохраненные платежи и контрольные точки файла. Их ID, не встречающиеся в других файлах,
+     * снимаются с регистрации в {@link PaymentIdIndex}, чтобы при новой загрузке файла его платежи
+     * не стали дубликатами удаленных.
+     *
+     * @return число удаленных платежей.
+     */
+    public int discardFile(String fileName) {
+        if (paymentIdIndex.isEnabled()) {
+            paymentService.forEachFileOnlyPaymentId(fileName, pageSize, paymentIdIndex::unregister);
+        }
+        int deleted = paymentService.discardFile(fileName);
+        paymentQueryService.evictFile(fileName);
+        log.warn("Удалены сохраненные платежи файла {}: {}", fileName, deleted);
+        return deleted;
+    }
+
+    public int persistQueueSize() {
+        return persistExecutor.getQueue().size();
+    }
+
+    public int reportQueueSize() {
+        return reportExecutor.getQueue().size();
+    }
+
+    /**
+     * Блоки одного файла в конвейере.
+     */
+    public final class FileJob {
+        private final String fileName;
+        private final ReportSink report;
+        private final boolean reportFromDatabase;
+        private final AtomicBoolean failed = new AtomicBoolean();
+        private final AtomicBoolean savedWithoutCheckpoint = new AtomicBoolean();
+        private final Semaphore pending = new Semaphore(persistQueueCapacity + reportQueueCapacity);
+        private CompletableFuture<Void> reportTail = CompletableFuture.completedFuture(null);
+
+        private FileJob(String fileName, ReportSink report, boolean reportFromDatabase) {
+            this.fileName = fileName;
+            this.report = report;
+            this.reportFromDatabase = reportFromDatabase;
+        }
+
+        /**
+         * Передает блок на сохранение. Блокируется, если очередь сохранения заполнена или у задания
+         * слишком много блоков, еще не дописанных в отчет. Блок после передачи не должен изменяться
+         * вызывающим кодом.
+         *
+         * @throws RejectedExecutionException если конвейер остановлен; задание при этом завершается ошибкой.
+         */
+        public void submit(PaymentBatch chunk) {
+            try {
+                pending.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.set(true);
+                throw new CancellationException("Передача блоков файла " + fileName + " прервана");
+            }
+            CompletableFuture<PaymentBatch> persisted;
+            try {
+                persisted = CompletableFuture.supplyAsync(() -> persist(chunk), persistExecutor);
+            } catch (RejectedExecutionException e) {
+                pending.release();
+                failed.set(true);
+                paymentIdIndex.unregister(chunk);
+                throw e;
+            }
+            reportTail = reportTail.thenCombineAsync(persisted, (ignored, saved) -> {
+                append(saved);
+                return null;
+            }, this::runReportStage);
+            reportTail.whenComplete((ignored, error) -> pending.release());
+        }
+
+        /**
+         * Завершает задание: после сохранения всех блоков дописывает в отчет сводку,
+         * сохраняет ее в БД и фиксирует отчет.
+         *
+         * @param summary итоги файла, собранные по всем переданным блокам; у продолженного файла
+         *                платежи добавляются в нее из БД.
+         * @return future, завершающийся после сохранения всех блоков и фиксации отчета.
+         */
+        public CompletableFuture<Path> complete(ReconciliationSummary summary) {
+            return finish(summary, null);
+        }
+
+        /**
+         * Завершает задание {@link IngestPipeline#startStored}: после сохранения всех блоков выставляет итоговые статусы
+         * файла одним set-based UPDATE ({@link PaymentService#finalizeStatuses}), затем строит отчет
+         * и сводку из сохраненных платежей.
+         *
+         * @param summary         итоги файла без платежей; платежи добавляются в нее из БД.
+         * @param hasInvalidLines были ли в файле недействительные строки.
+         * @return future с путем отчета; {@code null}, если у файла нет сохраненных платежей.
+         */
+        public CompletableFuture<Path> complete(ReconciliationSummary summary, boolean hasInvalidLines) {
+            if (!reportFromDatabase) {
+                throw new IllegalStateException("Статусы после сохранения выставляются только при отчете из БД: " + fileName);
+            }
+            return finish(summary, hasInvalidLines);
+        }
+
+        private CompletableFuture<Path> finish(ReconciliationSummary summary, Boolean hasInvalidLines) {
+            return reportTail
+                    .thenApplyAsync(ignored -> commit(summary, hasInvalidLines), this::runReportStage)
+                    .whenComplete((path, error) -> {
+                        if (error != null) {
+                            failed.set(true);
+                            log.error("Ошибка конвейера для файла {}", fileName, error);
+                            discardSaved();
+                            closeReport();
+                        }
+                    });
+        }
+
+        /**
+         * Прерывает задание: оставшиеся блоки не сохраняются, незавершенный отчет удаляется.
+         * Ждет блоки, которые уже сохраняются, чтобы удаление частично сохраненного файла их не пропустило.
+         */
+        public void abort() {
+            failed.set(true);
+            reportTail.handle((ignored, error) -> null).join();
+            discardSaved();
+            closeReport();
+        }
+
+        /**
+         * Задача отчета уходит в {@code reportExecutor}. Если он уже остановлен, задача выполняется
+         * в текущем потоке с отметкой сбоя и завершает задание ошибкой: потерянная задача оставила бы
+         * ожидание файла незавершенным навсегда.
+         */
+        private void runReportStage(Runnable task) {
+            try {
+                reportExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                if (failed.compareAndSet(false, true)) {
+                    log.error("Стадия отчета остановлена, файл {} прерван", fileName);
+                }
+                task.run();
+            }
+        }
+
+        /**
+         * Удаляет сохраненные блоки не удавшегося файла, если они сохранялись без контрольных точек
+         * ({@link IngestPipeline#discardFile}).
+         */
+        private void discardSaved() {
+            if (!savedWithoutCheckpoint.get()) {
+                return;
+            }
+            try {
+                discardFile(fileName);
+            } catch (RuntimeException e) {
+                log.error("Не удалось удалить частично сохраненные платежи файла {}", fileName, e);
+            }
+        }
+
+        /**
+         * Блок, который не удалось сохранить или который отброшен после сбоя файла, снимает регистрацию
+         * своих ID в {@link PaymentIdIndex}: файл будет обработан заново, и его платежи не должны стать
+         * дубликатами самих себя.
+         */
+        private PaymentBatch persist(PaymentBatch chunk) {
+            if (failed.get()) {
+                paymentIdIndex.unregister(chunk);
+                throw new CancellationException("Обработка файла " + fileName + " прервана");
+            }
+            PaymentBatch saved;
+            try {
+                saved = paymentService.saveAll(chunk);
+            } catch (RuntimeException e) {
+                failed.set(true);
+                paymentIdIndex.unregister(chunk);
+                throw e;
+            }
+            if (!saved.hasFileRange()) {
+                savedWithoutCheckpoint.set(true);
+            }
+            paymentQueryService.evict(saved);
+            return saved;
+        }
+
+        private void append(PaymentBatch chunk) {
+            checkNotFailed();
+            if (reportFromDatabase) {
+                return;
+            }
+            try {
+                reporterService.appendReport(report, chunk);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private Path commit(ReconciliationSummary summary, Boolean hasInvalidLines) {
+            checkNotFailed();
+            try {
+                if (hasInvalidLines != null) {
+                    int updated = paymentService.finalizeStatuses(fileName, hasInvalidLines);
+                    paymentQueryService.evictFile(fileName);
+                    log.debug("Итоговые статусы файла {}: изменено {} записей", fileName, updated);
+                }
+                if (reportFromDatabase && reporterService.appendStoredPayments(report, fileName, summary) == 0) {
+                    log.warn("Нет действительных платежей для сохранения или отчета: {}", fileName);
+                    closeReport();
+                    return null;
+                }
+                report.appendSummary(summary);
+                reconciliationService.save(summary);
+                return report.commit();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void checkNotFailed() {
+            if (failed.get()) {
+                throw new CancellationException("Обработка файла " + fileName + " прервана");
+            }
+        }
+
+        private void closeReport() {
+            try {
+                report.close();
+            } catch (IOException e) {
+                log.warn("Не удалось закрыть отчет для файла {}", fileName, e);
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor stageExecutor(String stage, int parallelism, int queueCapacity,
+                                                    RejectedExecutionHandler rejectionHandler) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-" + stage + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, rejectionHandler);
+    }
+
+    /**
+     * Как {@link ThreadPoolExecutor.CallerRunsPolicy}, но после остановки конвейера отказывает явно,
+     * а не отбрасывает задачу молча.
+     */
+    private static void runInCaller(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Конвейер остановлен");
+        }
+        task.run();
+    }
+
+    /**
+     * Вместо отказа ждет места в очереди - так стадия разбора притормаживается сохранением.
+     */
+    private static void blockUntilQueued(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Конвейер остановлен");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Ожидание очереди конвейера прервано", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        persistExecutor.shutdown();
+        reportExecutor.shutdown();
+        try {
+            if (!persistExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                persistExecutor.shutdownNow();
+            }
+            if (!reportExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                reportExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            persistExecutor.shutdownNow();
+            reportExecutor.shutdownNow();
+        }
+    }
+}
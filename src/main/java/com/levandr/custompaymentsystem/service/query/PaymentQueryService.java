@@ -0,0 +1,136 @@
+package com.levandr.custompaymentsystem.service.query;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
+import com.levandr.custompaymentsystem.repository.PaymentEntityRepository;
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Запросы чтения платежей по ID платежа, файлу, ИНН и статусу.
+ * <p>
+ * Результаты кэшируются в Caffeine с ограничением по размеру ({@code spring.payment.query-cache.maximum-size})
+ * и времени жизни ({@code spring.payment.query-cache.ttl-seconds}). После сохранения каждого блока
+ * {@link #evict(PaymentBatch)} сбрасывает записи, которые он мог изменить, поэтому чтение после
+ * завершения вставки видит новые данные. Метрики кэшей - {@code cache.gets} с тегом {@code cache=payments.*}.
+ */
+@Service
+@RequiredArgsConstructor
+public class PaymentQueryService {
+
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private final PaymentEntityRepository paymentEntityRepository;
+    private final IngestMetrics ingestMetrics;
+
+    @Value("${spring.payment.query-cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${spring.payment.query-cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    private Cache<String, List<PaymentView>> byPaymentId;
+    private Cache<PageKey, List<PaymentView>> byFileName;
+    private Cache<PageKey, List<PaymentView>> byPayerInn;
+    private Cache<PageKey, List<PaymentView>> byStatusCode;
+
+    @PostConstruct
+    public void init() {
+        byPaymentId = cache("payments.by-payment-id");
+        byFileName = cache("payments.by-file");
+        byPayerInn = cache("payments.by-inn");
+        byStatusCode = cache("payments.by-status");
+    }
+
+    /**
+     * Все записи с данным ID платежа; дубликаты хранятся отдельными записями.
+     */
+    @Transactional(readOnly = true)
+    public List<PaymentView> findByPaymentId(String paymentId) {
+        return byPaymentId.get(paymentId, key -> views(paymentEntityRepository.findAllByPaymentIdOrderById(key)));
+    }
+
+    @Transactional(readOnly = true)
+    public List<PaymentView> findByFileName(String fileName, int page, int size) {
+        return byFileName.get(new PageKey(fileName, page, pageSize(size)),
+                key -> views(paymentEntityRepository.findByFileNameOrderById(key.value(), key.pageable())));
+    }
+
+    @Transactional(readOnly = true)
+    public List<PaymentView> findByPayerInn(String payerInn, int page, int size) {
+        return byPayerInn.get(new PageKey(payerInn, page, pageSize(size)),
+                key -> views(paymentEntityRepository.findByPayerInnOrderById(key.value(), key.pageable())));
+    }
+
+    @Transactional(readOnly = true)
+    public List<PaymentView> findByStatusCode(int statusCode, int page, int size) {
+        return byStatusCode.get(new PageKey(Integer.toString(statusCode), page, pageSize(size)),
+                key -> views(paymentEntityRepository.findByStatusCodeOrderById(statusCode, key.pageable())));
+    }
+
+    /**
+     * Сбрасывает кэш для платежей только что сохраненного блока.
+     */
+    public void evict(PaymentBatch batch) {
+        Set<String> payerInns = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            byPaymentId.invalidate(batch.paymentId(i));
+            payerInns.add(batch.payerInn(i));
+        }
+        evictPages(byFileName, Set.of(batch.fileName()));
+        evictPages(byPayerInn, payerInns);
+        byStatusCode.invalidateAll();
+    }
+
+    /**
+     * Сбрасывает кэш после смены статусов всех платежей файла одним UPDATE: страницы файла
+     * и все выборки по ID, ИНН и статусу, в которые могли попасть его платежи.
+     */
+    public void evictFile(String fileName) {
+        evictPages(byFileName, Set.of(fileName));
+        byPaymentId.invalidateAll();
+        byPayerInn.invalidateAll();
+        byStatusCode.invalidateAll();
+    }
+
+    private static void evictPages(Cache<PageKey, ?> cache, Set<String> values) {
+        cache.asMap().keySet().removeIf(key -> values.contains(key.value()));
+    }
+
+    private <K> Cache<K, List<PaymentView>> cache(String name) {
+        Cache<K, List<PaymentView>> cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        ingestMetrics.monitorCache(cache, name);
+        return cache;
+    }
+
+    private static int pageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    private static List<PaymentView> views(List<Payment> payments) {
+        return payments.stream().map(PaymentView::of).toList();
+    }
+
+    record PageKey(String value, int page, int size) {
+        PageRequest pageable() {
+            return PageRequest.of(Math.max(page, 0), size);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.levandr.custompaymentsystem.service.query;
+
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+
+import java.math.BigDecimal;
+
+/**
+ * Неизменяемое представление платежа для API чтения и кэша.
+ */
+public record PaymentView(Long id,
+                          String paymentId,
+                          String recordNumber,
+                          String companyName,
+                          String payerInn,
+                          BigDecimal amount,
+                          Integer statusCode,
+                          PaymentStatus status,
+                          String fileName) {
+
+    public static PaymentView of(Payment payment) {
+        return new PaymentView(payment.getId(), payment.getPaymentId(), payment.getRecordNumber(),
+                payment.getCompanyName(), payment.getPayerInn(), payment.getAmount(), payment.getStatusCode(),
+                PaymentStatus.fromCode(payment.getStatusCode()), payment.getFileName());
+    }
+}
@@ -0,0 +1,153 @@
+package com.levandr.custompaymentsystem.service.repoter;
+
+import com.levandr.custompaymentsystem.entity.PayerTotal;
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Потоковая запись отчета по одному файлу.
+ * <p>
+ * Блоки платежей дописываются во временный файл через буферизованный канал по мере сохранения.
+ * Каталог назначения определяется по ходу записи: отчет уходит в ReportSuccess, только если все
+ * платежи имеют статус FULL_SAVED. {@link #commit()} атомарно переносит готовый отчет на место,
+ * поэтому читатели каталогов отчетов никогда не видят его частично записанным.
+ * Незакоммиченный отчет удаляется при {@link #close()}.
+ */
+public class ReportSink implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportSink.class);
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path tempPath;
+    private final Path successPath;
+    private final Path errorPath;
+    private final FileChannel channel;
+    private final BufferedWriter writer;
+
+    private boolean fullSaved = true;
+    private boolean empty = true;
+    private boolean finished;
+
+    ReportSink(Path tempPath, Path successPath, Path errorPath) throws IOException {
+        this.tempPath = tempPath;
+        this.successPath = successPath;
+        this.errorPath = errorPath;
+        Files.createDirectories(tempPath.getParent());
+        this.channel = FileChannel.open(tempPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Дописывает блок платежей в отчет.
+     */
+    public void append(List<Payment> payments) throws IOException {
+        for (Payment payment : payments) {
+            writer.write(payment.toString());
+            writer.write(System.lineSeparator());
+            if (fullSaved && !Integer.valueOf(PaymentStatus.FULL_SAVED.getCode()).equals(payment.getStatusCode())) {
+                fullSaved = false;
+            }
+        }
+        if (!payments.isEmpty()) {
+            empty = false;
+        }
+    }
+
+    /**
+     * Дописывает блок платежей в отчет без создания сущностей.
+     */
+    public void append(PaymentBatch batch) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        for (int i = 0; i < batch.size(); i++) {
+            line.setLength(0);
+            batch.appendTo(line, i);
+            writer.append(line);
+            writer.write(System.lineSeparator());
+            if (fullSaved && batch.statusCode(i) != PaymentStatus.FULL_SAVED.getCode()) {
+                fullSaved = false;
+            }
+        }
+        if (!batch.isEmpty()) {
+            empty = false;
+        }
+    }
+
+    /**
+     * Дописывает в конец отчета раздел сводки: итог файла, число платежей по статусам
+     * и крупнейших плательщиков. На выбор каталога назначения не влияет.
+     */
+    public void appendSummary(ReconciliationSummary summary) throws IOException {
+        writer.write("ReconciliationSummary{fileName='" + summary.fileName()
+                + "', businessDate=" + summary.businessDate()
+                + ", payments=" + summary.paymentCount()
+                + ", amount=" + summary.amount().toPlainString()
+                + ", invalidLines=" + summary.invalidLines() + '}');
+        writer.write(System.lineSeparator());
+        for (PaymentStatus status : PaymentStatus.values()) {
+            long count = summary.count(status);
+            if (count > 0) {
+                writer.write("StatusTotal{status=" + status + ", payments=" + count + '}');
+                writer.write(System.lineSeparator());
+            }
+        }
+        for (PayerTotal payer : summary.topPayers()) {
+            writer.write(payer.toString());
+            writer.write(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Дописывает отчет на диск и атомарно переносит его в каталог назначения.
+     *
+     * @return итоговый путь отчета.
+     */
+    public Path commit() throws IOException {
+        writer.flush();
+        channel.force(false);
+        writer.close();
+        finished = true;
+
+        Path target = fullSaved && !empty ? successPath : errorPath;
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(tempPath, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.warn("Атомарный перенос отчета невозможен (разные файловые системы): {}", target);
+            Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        log.info("Отчет сохранен: {}", target);
+        return target;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            writer.close();
+        } finally {
+            Files.deleteIfExists(tempPath);
+            log.warn("Отчет не завершен и удален: {}", tempPath);
+        }
+    }
+}
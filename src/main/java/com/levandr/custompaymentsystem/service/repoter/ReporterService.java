@@ -1,47 +1,121 @@
 package com.levandr.custompaymentsystem.service.repoter;
 
 import com.levandr.custompaymentsystem.entity.Payment;
-import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
+import com.levandr.custompaymentsystem.repository.PaymentEntityRepository;
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationSummary;
+import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 
 @Service
+@RequiredArgsConstructor
 public class ReporterService {
 
     private static final Logger log = LoggerFactory.getLogger(ReporterService.class);
+    private final IngestMetrics ingestMetrics;
+    private final PaymentEntityRepository paymentEntityRepository;
+
     @Value("${spring.output.error}")
     private Path reportErrorDir;
     @Value("${spring.output.success}")
     private Path reportSuccessDir;
-
+    @Value("${spring.output.tmp:#{null}}")
+    private Path reportTempDir;
+    @Value("${spring.parser.chunk-size:1000}")
+    private int pageSize;
 
     public void createReport(List<Payment> payments, String fileName) {
         log.info("CreateReport запускается...");
+        long startedAt = System.nanoTime();
 
-        StringBuilder reportContent = new StringBuilder();
-        for (Payment payment : payments) {
-            reportContent.append(payment.toString()).append(System.lineSeparator());
+        try (ReportSink report = openReport(fileName)) {
+            report.append(payments);
+            report.commit();
+        } catch (IOException e) {
+            log.error("Отчет не сохранять {0}", e);
+        } finally {
+            ingestMetrics.recordReportWrite(System.nanoTime() - startedAt);
         }
-        Path outputPath;
-        if (payments.stream().allMatch(payment ->
-                payment.getStatusCode().equals(PaymentStatus.FULL_SAVED.getCode()))) {
-            outputPath = reportSuccessDir.resolve("Report " + fileName);
-        } else {
-            outputPath = reportErrorDir.resolve("Report " + fileName);
+    }
+
+    /**
+     * Открывает потоковый отчет по файлу. Каталог назначения выбирается при {@link ReportSink#commit()}.
+     *
+     * @param fileName имя обрабатываемого файла.
+     */
+    public ReportSink openReport(String fileName) throws IOException {
+        String reportName = "Report " + fileName;
+        return new ReportSink(tempDirectory().resolve(reportName + ".part"),
+                reportSuccessDir.resolve(reportName), reportErrorDir.resolve(reportName));
+    }
+
+    /**
+     * Дописывает блок платежей в отчет с учетом метрик.
+     */
+    public void appendReport(ReportSink report, List<Payment> payments) throws IOException {
+        long startedAt = System.nanoTime();
+        try {
+            report.append(payments);
+        } finally {
+            ingestMetrics.recordReportWrite(System.nanoTime() - startedAt);
         }
+    }
+
+    /**
+     * Дописывает блок платежей в отчет с учетом метрик.
+     */
+    public void appendReport(ReportSink report, PaymentBatch batch) throws IOException {
+        long startedAt = System.nanoTime();
         try {
-            Files.createDirectories(outputPath.getParent());
-            Files.writeString(outputPath, reportContent.toString());
-            log.info("Отчет сохранен.!");
-        } catch (IOException e) {
-            log.error("Отчет не сохранять {0}", e);
+            report.append(batch);
+        } finally {
+            ingestMetrics.recordReportWrite(System.nanoTime() - startedAt);
+        }
+    }
+
+    /**
+     * Дописывает в отчет уже сохраненные платежи файла, читая их из БД страницами по ID
+     * (keyset-пагинация), и учитывает их в сводке. Нужен, когда файл целиком заново не разбирается:
+     * режим tail и продолжение после сбоя. Строки идут в порядке ID, а не в порядке файла.
+     *
+     * @return число платежей в отчете.
+     */
+    public long appendStoredPayments(ReportSink report, String fileName, ReconciliationSummary summary)
+            throws IOException {
+        long count = 0;
+        long afterId = 0;
+        List<Payment> page;
+        do {
+            page = paymentEntityRepository.findByFileNameAndIdGreaterThanOrderById(fileName, afterId,
+                    PageRequest.of(0, pageSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            appendReport(report, page);
+            page.forEach(summary::add);
+            count += page.size();
+            afterId = page.get(page.size() - 1).getId();
+        } while (page.size() == pageSize);
+        return count;
+    }
+
+    /**
+     * Временный каталог лежит рядом с каталогами отчетов, чтобы перенос был атомарным.
+     */
+    private Path tempDirectory() {
+        if (reportTempDir != null) {
+            return reportTempDir;
         }
+        Path parent = reportErrorDir.toAbsolutePath().getParent();
+        return parent != null ? parent.resolve("ReportTmp") : reportErrorDir.resolve(".tmp");
     }
 }
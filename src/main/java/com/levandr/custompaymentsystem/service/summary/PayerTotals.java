@@ -0,0 +1,110 @@
+package com.levandr.custompaymentsystem.service.summary;
+
+import com.levandr.custompaymentsystem.entity.PayerTotal;
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Суммы в копейках и число платежей по ИНН плательщика.
+ * <p>
+ * Открытая адресация на примитивных массивах: около 20 байт на плательщика вместо ~100 у
+ * {@code HashMap<Long, long[]>}. ИНН хранится числом плюс один, ноль означает пустую ячейку.
+ * Не потокобезопасен.
+ */
+class PayerTotals {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private long[] keys;
+    private long[] cents;
+    private int[] counts;
+    private int size;
+
+    PayerTotals() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    void add(long payerInn, long amountCents) {
+        long key = payerInn + 1;
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (keys[index] != 0 && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        cents[index] += amountCents;
+        counts[index]++;
+        if (keys[index] == 0) {
+            keys[index] = key;
+            if (++size * 4 > keys.length * 3) {
+                resize();
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * До {@code limit} плательщиков с наибольшей суммой, по убыванию суммы, затем по ИНН.
+     */
+    List<PayerTotal> top(int limit) {
+        Comparator<Integer> byAmount = Comparator.<Integer>comparingLong(i -> cents[i])
+                .thenComparing(Comparator.<Integer>comparingLong(i -> keys[i]).reversed());
+        PriorityQueue<Integer> heap = new PriorityQueue<>(byAmount);
+        for (int i = 0; i < keys.length && limit > 0; i++) {
+            if (keys[i] == 0) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(i);
+            } else if (byAmount.compare(i, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        List<PayerTotal> top = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            int i = heap.poll();
+            top.add(0, new PayerTotal(PaymentBatch.twelveDigits(keys[i] - 1), (long) counts[i],
+                    BigDecimal.valueOf(cents[i], 2)));
+        }
+        return top;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        cents = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldCents = cents;
+        int[] oldCounts = counts;
+        allocate(oldKeys.length * 2);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) {
+                continue;
+            }
+            int index = hash(oldKeys[i]) & mask;
+            while (keys[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = oldKeys[i];
+            cents[index] = oldCents[i];
+            counts[index] = oldCounts[i];
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.levandr.custompaymentsystem.service.summary;
+
+import com.levandr.custompaymentsystem.entity.DailySummary;
+import com.levandr.custompaymentsystem.entity.FileSummary;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.repository.DailySummaryRepository;
+import com.levandr.custompaymentsystem.repository.FileSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Сводки по файлам и дням для сверки.
+ * <p>
+ * Итоги файла считаются во время загрузки ({@link ReconciliationSummary}) и сохраняются одной строкой
+ * {@code file_summary}; итоги дня в {@code daily_summary} увеличиваются одним UPDATE. Повторная загрузка
+ * файла сначала вычитает его прежние итоги из дня, так что итоги дня не удваиваются.
+ * Строку нового дня могут одновременно создавать несколько узлов: она вставляется нулевой в отдельной
+ * транзакции, проигравший вставку получает нарушение уникальности по дате и прибавляет тем же UPDATE.
+ * Чтение любой сводки - один запрос по уникальному индексу.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReconciliationService.class);
+    private final FileSummaryRepository fileSummaryRepository;
+    private final DailySummaryRepository dailySummaryRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Transactional
+    public FileSummary save(ReconciliationSummary summary) {
+        FileSummary entry = fileSummaryRepository.findByFileName(summary.fileName()).orElse(null);
+        if (entry != null) {
+            addToDay(entry, -1);
+        } else {
+            entry = new FileSummary();
+            entry.setFileName(summary.fileName());
+        }
+        entry.setBusinessDate(summary.businessDate());
+        entry.setPaymentCount(summary.paymentCount());
+        entry.setAmount(summary.amount());
+        entry.setFullSavedCount(summary.count(PaymentStatus.FULL_SAVED));
+        entry.setPartialOkCount(summary.count(PaymentStatus.PARTIAL_OK));
+        entry.setDuplicateCount(summary.count(PaymentStatus.DUPLICATE));
+        entry.setInvalidLines(summary.invalidLines());
+        entry.setTopPayers(new ArrayList<>(summary.topPayers()));
+        entry.setUpdatedAt(Instant.now());
+        FileSummary saved = fileSummaryRepository.save(entry);
+        addToDay(saved, 1);
+
+        log.info("Сводка файла: file={} date={} payments={} amount={} fullSaved={} partialOk={} duplicates={} invalid={}",
+                saved.getFileName(), saved.getBusinessDate(), saved.getPaymentCount(), saved.getAmount(),
+                saved.getFullSavedCount(), saved.getPartialOkCount(), saved.getDuplicateCount(), saved.getInvalidLines());
+        return saved;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<FileSummary> findFile(String fileName) {
+        return fileSummaryRepository.findByFileName(fileName);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<DailySummary> findDay(LocalDate businessDate) {
+        return dailySummaryRepository.findByBusinessDate(businessDate);
+    }
+
+    @Transactional(readOnly = true)
+    public List<FileSummary> findFilesOfDay(LocalDate businessDate) {
+        return fileSummaryRepository.findByBusinessDateOrderByFileName(businessDate);
+    }
+
+    /**
+     * Прибавляет ({@code sign = 1}) или вычитает ({@code sign = -1}) итоги файла из итогов его дня.
+     * Строка дня создается при первом файле этого дня.
+     */
+    private void addToDay(FileSummary file, int sign) {
+        if (updateDay(file, sign) == 0 && sign > 0) {
+            createDay(file.getBusinessDate());
+            if (updateDay(file, sign) == 0) {
+                throw new IllegalStateException("Нет строки итогов дня " + file.getBusinessDate());
+            }
+        }
+    }
+
+    private int updateDay(FileSummary file, int sign) {
+        return dailySummaryRepository.add(file.getBusinessDate(), sign, sign * file.getPaymentCount(),
+                file.getAmount().multiply(BigDecimal.valueOf(sign)), sign * file.getFullSavedCount(),
+                sign * file.getPartialOkCount(), sign * file.getDuplicateCount(), sign * file.getInvalidLines(),
+                Instant.now());
+    }
+
+    /**
+     * Вставляет нулевую строку дня в отдельной транзакции: нарушение уникальности, если строку уже вставил
+     * другой узел, не помечает к откату транзакцию сохранения сводки файла.
+     */
+    private void createDay(LocalDate businessDate) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transaction.executeWithoutResult(status -> dailySummaryRepository.saveAndFlush(
+                    new DailySummary(null, businessDate, 0L, 0L, BigDecimal.ZERO, 0L, 0L, 0L, 0L, Instant.now())));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Строка итогов дня {} уже создана другим узлом", businessDate);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.levandr.custompaymentsystem.service.summary;
+
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.entity.PayerTotal;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.service.parser.BcpFileNames;
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Итоги файла, накапливаемые по ходу разбора: число и сумма платежей, число платежей
+ * по статусам и суммы по плательщикам.
+ * <p>
+ * Суммы считаются точно в копейках на {@code long}; {@link BigDecimal} создается только для результата.
+ * Дубликаты ({@link PaymentBatch#isDuplicate}, {@link Payment#isDuplicate}) входят в число платежей и в счетчик
+ * DUPLICATE, но не в сумму и не в суммы по плательщикам: повтор уже учтенного платежа не должен увеличивать
+ * итог сверки. Признак берется из отметки, а не из статуса: в файле без недействительных строк итоговый
+ * статус дубликата - FULL_SAVED.
+ * Блоки добавляются после выставления итоговых статусов, из одного потока.
+ */
+public class ReconciliationSummary {
+
+    private final String fileName;
+    private final LocalDate businessDate;
+    private final int topPayersLimit;
+    private final long[] statusCounts = new long[PaymentStatus.values().length];
+    private final PayerTotals payers;
+    private long paymentCount;
+    private long amountCents;
+    private long invalidLines;
+
+    /**
+     * @param topPayersLimit сколько крупнейших плательщиков хранить; {@code 0} - не считать суммы по плательщикам.
+     */
+    public ReconciliationSummary(String fileName, int topPayersLimit) {
+        this.fileName = fileName;
+        this.businessDate = BcpFileNames.date(fileName);
+        this.topPayersLimit = topPayersLimit;
+        this.payers = topPayersLimit > 0 ? new PayerTotals() : null;
+    }
+
+    public void add(PaymentBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            add(batch.statusCode(i), batch.isDuplicate(i), batch.payerInnNumber(i), batch.amountCents(i));
+        }
+    }
+
+    public void add(Payment payment) {
+        add(payment.getStatusCode(), payment.isDuplicate(), Long.parseLong(payment.getPayerInn()),
+                payment.getAmount().movePointRight(2).longValueExact());
+    }
+
+    private void add(int statusCode, boolean duplicate, long payerInn, long cents) {
+        paymentCount++;
+        PaymentStatus status = duplicate ? PaymentStatus.DUPLICATE : PaymentStatus.fromCode(statusCode);
+        if (status != null) {
+            statusCounts[status.ordinal()]++;
+        }
+        if (duplicate) {
+            return;
+        }
+        amountCents = Math.addExact(amountCents, cents);
+        if (payers != null) {
+            payers.add(payerInn, cents);
+        }
+    }
+
+    public void setInvalidLines(long invalidLines) {
+        this.invalidLines = invalidLines;
+    }
+
+    public String fileName() {
+        return fileName;
+    }
+
+    public LocalDate businessDate() {
+        return businessDate;
+    }
+
+    public long paymentCount() {
+        return paymentCount;
+    }
+
+    public long amountCents() {
+        return amountCents;
+    }
+
+    public BigDecimal amount() {
+        return BigDecimal.valueOf(amountCents, 2);
+    }
+
+    public long count(PaymentStatus status) {
+        return statusCounts[status.ordinal()];
+    }
+
+    public long invalidLines() {
+        return invalidLines;
+    }
+
+    public List<PayerTotal> topPayers() {
+        return payers != null ? payers.top(topPayersLimit) : List.of();
+    }
+}
@@ -1,7 +1,11 @@
 package com.levandr.custompaymentsystem.watcher;
 
-import com.levandr.custompaymentsystem.exception.FileProcessingException;
+import com.levandr.custompaymentsystem.enums.ExecutorMode;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
+import com.levandr.custompaymentsystem.service.archive.ArchiveService;
+import com.levandr.custompaymentsystem.service.ledger.FileLedgerService;
 import com.levandr.custompaymentsystem.service.parser.ParserService;
+import com.levandr.custompaymentsystem.service.parser.TailIngestService;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
@@ -12,10 +16,15 @@ import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.nio.file.*;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 @Component
@@ -23,27 +32,118 @@ import java.util.concurrent.TimeUnit;
 public class DirectoryWatcher {
 
     private static final Logger log = LoggerFactory.getLogger(DirectoryWatcher.class);
-    final ExecutorService executorService = Executors.newFixedThreadPool(5);
+    ExecutorService executorService;
+    private Thread watchThread;
+    private WatchService watchService;
+    private Semaphore processingPermits;
+    private PendingFiles pendingFiles;
+    private FileScheduler fileScheduler;
 
     @Value("${spring.input.directory}")
     private Path inputDirectory;
 
+    @Value("${spring.watcher.executor:FIXED}")
+    private ExecutorMode executorMode;
+
+    @Value("${spring.watcher.pool-size:5}")
+    private int poolSize;
+
+    /**
+     * Сколько файлов одновременно могут обрабатываться: разрешение держится от начала разбора до фиксации
+     * отчета, то есть и пока конвейер пишет блоки файла в БД. Не должно превышать размер пула соединений.
+     */
+    @Value("${spring.watcher.max-concurrent-files:8}")
+    private int maxConcurrentFiles;
+
+    /**
+     * Сколько миллисекунд размер файла должен оставаться неизменным, чтобы файл считался дописанным.
+     */
+    @Value("${spring.watcher.stable-millis:2000}")
+    private long stableMillis;
+
+    /**
+     * Файлы от этого размера считаются крупными и планируются отдельно от малых.
+     */
+    @Value("${spring.watcher.scheduling.large-file-bytes:16777216}")
+    private long largeFileBytes;
+
+    @Value("${spring.watcher.scheduling.small-weight:4}")
+    private int smallWeight;
+
+    @Value("${spring.watcher.scheduling.large-weight:1}")
+    private int largeWeight;
+
+    /**
+     * Сколько крупных файлов могут обрабатываться одновременно; остальные разрешения достаются малым.
+     */
+    @Value("${spring.watcher.scheduling.max-large-files:4}")
+    private int maxLargeFiles;
+
+    @Value("${spring.watcher.done-marker-suffix:.done}")
+    private String doneMarkerSuffix;
+
+    @Value("${spring.watcher.poll-millis:500}")
+    private long pollMillis;
+
+    /**
+     * Как часто искать файлы, аренда которых истекла (их узел упал).
+     */
+    @Value("${spring.cluster.reclaim-millis:30000}")
+    private long reclaimMillis;
+
+    private long lastReclaimAt;
+
+    /**
+     * Режим tail: файлы с новыми данными, файлы с маркером завершения и файлы, задача по которым
+     * сейчас выполняется (по одному файлу одновременно работает не больше одной задачи).
+     */
+    private final Set<Path> tailAppended = ConcurrentHashMap.newKeySet();
+    private final Set<Path> tailCompleted = ConcurrentHashMap.newKeySet();
+    private final Set<Path> tailRunning = ConcurrentHashMap.newKeySet();
+
     private final ParserService parserService;
-    final Set<Path> processedFiles = new HashSet<>();
+    private final FileLedgerService fileLedgerService;
+    private final IngestMetrics ingestMetrics;
+    private final TailIngestService tailIngestService;
+    private final ArchiveService archiveService;
 
     @PostConstruct
     public void init() {
         log.info("Инициализация наблюдателя каталогов для: {}", inputDirectory);
+        executorService = ingestMetrics.monitor(createExecutorService(), "file-executor");
+        processingPermits = new Semaphore(maxConcurrentFiles);
+        pendingFiles = new PendingFiles(stableMillis, doneMarkerSuffix);
+        fileScheduler = new FileScheduler(largeFileBytes, smallWeight, largeWeight, maxLargeFiles);
+        ingestMetrics.monitorFileQueue("small", fileScheduler::smallQueued);
+        ingestMetrics.monitorFileQueue("large", fileScheduler::largeQueued);
+        log.info("Планирование: крупные файлы от {} байт, веса малые/крупные {}/{}, крупных одновременно не больше {}",
+                largeFileBytes, smallWeight, largeWeight, maxLargeFiles);
+        if (tailIngestService.isEnabled()) {
+            log.info("Режим tail: новые строки загружаются по мере дописывания, завершение по маркеру {}",
+                    doneMarkerSuffix);
+        }
         processExistingFiles();
         startDirectoryWatch();
     }
 
+    private ExecutorService createExecutorService() {
+        log.info("Режим исполнителя: {}, одновременно файлов: {}", executorMode, maxConcurrentFiles);
+        return switch (executorMode) {
+            case FIXED -> Executors.newFixedThreadPool(poolSize);
+            case VIRTUAL -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("file-", 0).factory());
+        };
+    }
+
+    /**
+     * Ставит все файлы каталога в очередь ожидания готовности.
+     * Вызывается при старте и после переполнения очереди событий (OVERFLOW).
+     */
     public void processExistingFiles() {
         log.info("Обработка существующих файлов...");
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(inputDirectory)) {
             for (Path entry : stream) {
                 if (Files.isRegularFile(entry)) {
-                    processFileAsync(entry);
+                    enqueue(entry);
                 }
             }
         } catch (IOException e) {
@@ -53,59 +153,280 @@ public class DirectoryWatcher {
 
     public void startDirectoryWatch() {
         log.info("Начинаю смотреть каталог...");
-        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
-            inputDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            inputDirectory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
             log.info("Наблюдатель каталогов зарегистрирован для: {}", inputDirectory);
+        } catch (IOException e) {
+            log.error("Не удалось настроить наблюдатель каталогов.: {}", e.getMessage());
+            throw new RuntimeException("Не удалось настроить наблюдатель каталогов для: " + inputDirectory, e);
+        }
 
-            executorService.submit(() -> {
-                while (!Thread.currentThread().isInterrupted()) {
-                    WatchKey key;
-                    try {
-                        key = watchService.poll(1, TimeUnit.SECONDS);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        log.warn("Служба наблюдения прервана", e);
-                        break;
+        watchThread = Thread.ofPlatform().name("directory-watcher").daemon(true).start(this::watchLoop);
+    }
+
+    private void watchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Служба наблюдения прервана", e);
+                break;
+            } catch (ClosedWatchServiceException e) {
+                log.info("Служба наблюдения закрыта");
+                break;
+            }
+
+            if (key != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    WatchEvent.Kind<?> kind = event.kind();
+                    if (kind == StandardWatchEventKinds.OVERFLOW) {
+                        log.warn("Переполнение очереди событий, повторный просмотр каталога: {}", inputDirectory);
+                        processExistingFiles();
+                    } else {
+                        Path filePath = inputDirectory.resolve((Path) event.context());
+                        log.debug("Событие {} для файла: {}", kind.name(), filePath);
+                        enqueue(filePath);
                     }
+                }
+                if (!key.reset()) {
+                    log.error("Каталог больше недоступен для наблюдения: {}", inputDirectory);
+                    break;
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastReclaimAt >= reclaimMillis) {
+                lastReclaimAt = now;
+                reclaimExpiredFiles();
+            }
 
-                    if (key != null) {
-                        for (WatchEvent<?> event : key.pollEvents()) {
-                            WatchEvent.Kind<?> kind = event.kind();
-                            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
-                                Path filePath = inputDirectory.resolve((Path) event.context());
-                                log.info("Обнаружен новый файл: {}", filePath);
-                                processFileAsync(filePath);
-                            }
-                        }
-                        key.reset();
+            for (Path filePath : pendingFiles.pollReady(now)) {
+                log.info("Обнаружен новый файл: {}", filePath);
+                processFileAsync(filePath);
+            }
+            dispatch();
+            scheduleTail();
+        }
+    }
+
+    /**
+     * Без режима tail файл ждет готовности в {@link PendingFiles}. В режиме tail событие изменения
+     * сразу ставит файл на дочитывание, а маркер {@code <имя><done-marker-suffix>} - на завершение.
+     */
+    private void enqueue(Path path) {
+        if (!tailIngestService.isEnabled()) {
+            pendingFiles.touch(path);
+            return;
+        }
+        String name = path.getFileName().toString();
+        if (name.endsWith(doneMarkerSuffix)) {
+            tailCompleted.add(path.resolveSibling(name.substring(0, name.length() - doneMarkerSuffix.length())));
+        } else {
+            tailAppended.add(path);
+        }
+    }
+
+    /**
+     * Передает исполнителю файлы режима tail, по которым сейчас нет задачи.
+     * Завершение файла заменяет его дочитывание: оно и так читает файл до конца.
+     */
+    private void scheduleTail() {
+        for (Path filePath : List.copyOf(tailCompleted)) {
+            if (tailRunning.add(filePath)) {
+                tailCompleted.remove(filePath);
+                tailAppended.remove(filePath);
+                tailAsync(filePath, true);
+            }
+        }
+        for (Path filePath : new ArrayList<>(tailAppended)) {
+            if (tailRunning.add(filePath)) {
+                tailAppended.remove(filePath);
+                tailAsync(filePath, false);
+            }
+        }
+    }
+
+    private void tailAsync(Path filePath, boolean complete) {
+        executorService.submit(() -> {
+            try {
+                processingPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tailRunning.remove(filePath);
+                log.warn("Обработка файла прервана: {}", filePath);
+                return;
+            }
+            try {
+                if (!Files.isRegularFile(filePath)) {
+                    return;
+                }
+                if (complete) {
+                    if (tailIngestService.finish(filePath)) {
+                        archiveService.archive(filePath);
                     }
+                } else {
+                    tailIngestService.ingestAppended(filePath);
                 }
-            });
-        } catch (IOException e) {
-            log.error("Не удалось настроить наблюдатель каталогов.: {}", e.getMessage());
-            throw new RuntimeException("Не удалось настроить наблюдатель каталогов для: " + inputDirectory, e);
+            } catch (IOException | RuntimeException e) {
+                log.error("Ошибка обработки файла в режиме tail: {}", filePath, e);
+                tailIngestService.fail(filePath);
+            } finally {
+                processingPermits.release();
+                tailRunning.remove(filePath);
+            }
+        });
+    }
+
+    /**
+     * Возвращает в очередь файлы, захваченные узлами, которые перестали продлевать аренду.
+     */
+    private void reclaimExpiredFiles() {
+        try {
+            for (String fileName : fileLedgerService.expiredClaims()) {
+                Path filePath = inputDirectory.resolve(fileName);
+                if (Files.isRegularFile(filePath)) {
+                    log.info("Аренда файла истекла, файл поставлен в очередь: {}", filePath);
+                    enqueue(filePath);
+                    Path marker = filePath.resolveSibling(fileName + doneMarkerSuffix);
+                    if (tailIngestService.isEnabled() && Files.exists(marker)) {
+                        enqueue(marker);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось проверить истекшие аренды файлов", e);
         }
     }
 
+    /**
+     * Ставит готовый файл в очередь {@link FileScheduler}; порядок обработки определяет планировщик,
+     * а не очередь исполнителя.
+     */
     void processFileAsync(Path filePath) {
-        synchronized (processedFiles) {
-            if (!processedFiles.contains(filePath)) {
-                executorService.submit(() -> {
-                    try {
-                        log.info("Обработка файла: {}", filePath);
-                        parserService.parseFile(filePath);
-                        processedFiles.add(filePath);
-                    } catch (FileProcessingException e) {
-                        log.error("Ошибка обработки файла: {}", filePath, e);
-                    }
-                });
+        long size;
+        try {
+            size = Files.size(filePath);
+        } catch (IOException e) {
+            size = 0;
+        }
+        fileScheduler.add(filePath, size, System.currentTimeMillis());
+        ingestMetrics.fileQueued();
+        dispatch();
+    }
+
+    /**
+     * Передает исполнителю файлы из очереди, пока есть свободные разрешения семафора.
+     * Вызывается при постановке файла, при освобождении разрешения и на каждом шаге цикла наблюдения.
+     */
+    private void dispatch() {
+        while (processingPermits.tryAcquire()) {
+            FileScheduler.Ticket ticket = fileScheduler.poll();
+            if (ticket == null) {
+                processingPermits.release();
+                return;
+            }
+            try {
+                executorService.submit(() -> processFile(ticket));
+            } catch (RejectedExecutionException e) {
+                log.warn("Исполнитель остановлен, файл не обработан: {}", ticket.path());
+                ingestMetrics.fileDequeued();
+                fileScheduler.finished(ticket);
+                processingPermits.release();
+                return;
             }
         }
     }
 
+    /**
+     * Разбор идет в потоке исполнителя под разрешением семафора, полученным в {@link #dispatch()};
+     * сохранение и отчет продолжаются в конвейере, а журнал и метрики обновляются по завершении конвейера.
+     * Разрешение освобождается только тогда же: {@code max-concurrent-files} ограничивает файлы, работающие
+     * с БД, а не только разбираемые.
+     * Файл, имя которого не подходит под шаблон, пропускается до журнала: записи в журнале и архива у него нет.
+     */
+    private void processFile(FileScheduler.Ticket ticket) {
+        Path filePath = ticket.path();
+        ingestMetrics.fileStarted();
+        CompletableFuture<Void> completion;
+        try {
+            completion = startFile(ticket);
+        } catch (RuntimeException e) {
+            completion = CompletableFuture.failedFuture(e);
+        }
+        if (completion == null) {
+            release(ticket);
+            return;
+        }
+
+        completion.whenComplete((ignored, error) -> {
+            try {
+                if (error == null) {
+                    fileLedgerService.markDone(filePath);
+                    archiveService.archive(filePath);
+                } else {
+                    log.error("Ошибка обработки файла: {}", filePath, error);
+                    fileLedgerService.markFailed(filePath);
+                }
+                ingestMetrics.fileFinished(error == null);
+            } finally {
+                release(ticket);
+            }
+        });
+    }
+
+    /**
+     * Захватывает файл в журнале и разбирает его.
+     *
+     * @return future конвейера; {@code null}, если файл пропущен.
+     */
+    private CompletableFuture<Void> startFile(FileScheduler.Ticket ticket) {
+        Path filePath = ticket.path();
+        if (!parserService.isValidFileName(filePath)) {
+            log.warn("Имя файла не соответствует шаблону, файл пропущен: {}", filePath);
+            ingestMetrics.fileSkipped();
+            return null;
+        }
+        if (!fileLedgerService.tryStart(filePath)) {
+            if (archiveService.isEnabled() && fileLedgerService.isDone(filePath)) {
+                archiveService.archive(filePath);
+            }
+            ingestMetrics.fileSkipped();
+            return null;
+        }
+        log.info("Обработка файла: {} ({} байт)", filePath, ticket.size());
+        return parserService.parseFileAsync(filePath);
+    }
+
+    private void release(FileScheduler.Ticket ticket) {
+        processingPermits.release();
+        fileScheduler.finished(ticket);
+        dispatch();
+    }
+
+    /**
+     * Состояние очереди файлов для API и диагностики.
+     */
+    public FileQueueState queueState() {
+        return fileScheduler.state(System.currentTimeMillis());
+    }
+
     @PreDestroy
     public void shutdown() {
         log.info("Выключение наблюдателя каталогов...");
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("Не удалось закрыть службу наблюдения", e);
+            }
+        }
         try {
             executorService.shutdown();
             if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
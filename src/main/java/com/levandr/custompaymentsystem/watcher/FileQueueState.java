@@ -0,0 +1,20 @@
+package com.levandr.custompaymentsystem.watcher;
+
+import java.util.List;
+
+/**
+ * Состояние очереди файлов наблюдателя.
+ *
+ * @param oldestWaitMillis сколько ждет самый старый файл в очереди.
+ * @param nextSmall        первые малые файлы в порядке обработки.
+ * @param nextLarge        первые крупные файлы в порядке обработки.
+ */
+public record FileQueueState(int smallQueued,
+                             long smallQueuedBytes,
+                             int largeQueued,
+                             long largeQueuedBytes,
+                             int largeRunning,
+                             long oldestWaitMillis,
+                             List<String> nextSmall,
+                             List<String> nextLarge) {
+}
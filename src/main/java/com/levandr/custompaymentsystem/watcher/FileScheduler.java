@@ -0,0 +1,126 @@
+package com.levandr.custompaymentsystem.watcher;
+
+import com.levandr.custompaymentsystem.service.parser.BcpFileNames;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Очередь готовых файлов с приоритетами вместо FIFO исполнителя.
+ * <p>
+ * Файлы делятся на малые и крупные по порогу {@code largeFileBytes}. Внутри класса раньше идет файл
+ * с более ранним временем в имени {@code BCP_YYYYMMDD_HHMMSS_XXXX}, затем меньший. Между классами
+ * очередь чередуется по весам: из каждых {@code smallWeight + largeWeight} выборов, когда ждут оба
+ * класса, {@code smallWeight} достаются малым файлам. Крупных файлов одновременно не больше
+ * {@code maxLargeFiles}, поэтому свободные обработчики остаются малым файлам даже при большой
+ * вечерней выгрузке.
+ */
+class FileScheduler {
+
+    private static final int PREVIEW_SIZE = 10;
+    private static final Comparator<Ticket> ORDER = Comparator.comparingLong(Ticket::nameTimestamp)
+            .thenComparingLong(Ticket::size)
+            .thenComparingLong(Ticket::sequence);
+
+    private final long largeFileBytes;
+    private final int smallWeight;
+    private final int largeWeight;
+    private final int maxLargeFiles;
+    private final PriorityQueue<Ticket> small = new PriorityQueue<>(ORDER);
+    private final PriorityQueue<Ticket> large = new PriorityQueue<>(ORDER);
+    private long sequence;
+    private int turn;
+    private int largeRunning;
+
+    /**
+     * Файл в очереди; после {@link #poll()} передается в {@link #finished(Ticket)}.
+     */
+    record Ticket(Path path, long size, boolean large, long nameTimestamp, long sequence, long queuedAt) {
+    }
+
+    FileScheduler(long largeFileBytes, int smallWeight, int largeWeight, int maxLargeFiles) {
+        this.largeFileBytes = largeFileBytes;
+        this.smallWeight = Math.max(1, smallWeight);
+        this.largeWeight = Math.max(1, largeWeight);
+        this.maxLargeFiles = Math.max(1, maxLargeFiles);
+    }
+
+    synchronized void add(Path path, long size, long now) {
+        boolean isLarge = size >= largeFileBytes;
+        Ticket ticket = new Ticket(path, size, isLarge, BcpFileNames.timestamp(path.getFileName().toString()), sequence++, now);
+        (isLarge ? large : small).add(ticket);
+    }
+
+    /**
+     * Следующий файл для обработки или {@code null}, если очередь пуста или ждут только крупные
+     * файлы, а лимит одновременных крупных файлов исчерпан.
+     */
+    synchronized Ticket poll() {
+        boolean largeAvailable = !large.isEmpty() && largeRunning < maxLargeFiles;
+        Ticket next;
+        if (!small.isEmpty() && largeAvailable) {
+            boolean smallTurn = turn < smallWeight;
+            turn = (turn + 1) % (smallWeight + largeWeight);
+            next = smallTurn ? small.poll() : large.poll();
+        } else if (!small.isEmpty()) {
+            next = small.poll();
+        } else if (largeAvailable) {
+            next = large.poll();
+        } else {
+            return null;
+        }
+        if (next.large()) {
+            largeRunning++;
+        }
+        return next;
+    }
+
+    /**
+     * Освобождает место крупного файла.
+     */
+    synchronized void finished(Ticket ticket) {
+        if (ticket.large()) {
+            largeRunning--;
+        }
+    }
+
+    synchronized int size() {
+        return small.size() + large.size();
+    }
+
+    synchronized int smallQueued() {
+        return small.size();
+    }
+
+    synchronized int largeQueued() {
+        return large.size();
+    }
+
+    synchronized FileQueueState state(long now) {
+        long oldestQueuedAt = now;
+        long smallBytes = 0;
+        long largeBytes = 0;
+        for (Ticket ticket : small) {
+            smallBytes += ticket.size();
+            oldestQueuedAt = Math.min(oldestQueuedAt, ticket.queuedAt());
+        }
+        for (Ticket ticket : large) {
+            largeBytes += ticket.size();
+            oldestQueuedAt = Math.min(oldestQueuedAt, ticket.queuedAt());
+        }
+        return new FileQueueState(small.size(), smallBytes, large.size(), largeBytes, largeRunning,
+                now - oldestQueuedAt, preview(small), preview(large));
+    }
+
+    private static List<String> preview(PriorityQueue<Ticket> queue) {
+        List<Ticket> sorted = new ArrayList<>(queue);
+        sorted.sort(ORDER);
+        return sorted.stream()
+                .limit(PREVIEW_SIZE)
+                .map(ticket -> ticket.path().getFileName().toString())
+                .toList();
+    }
+}
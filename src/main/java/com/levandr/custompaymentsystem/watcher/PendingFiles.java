@@ -0,0 +1,106 @@
+package com.levandr.custompaymentsystem.watcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Файлы, замеченные наблюдателем, но еще не переданные в обработку.
+ * <p>
+ * Повторные события для одного файла схлопываются в одну запись. Файл считается готовым,
+ * когда рядом появился маркер {@code <имя><markerSuffix>} или когда его размер и время изменения
+ * не менялись {@code stableMillis} миллисекунд - так недописанный файл не попадает в разбор.
+ */
+class PendingFiles {
+
+    private final long stableMillis;
+    private final String markerSuffix;
+    private final Map<Path, Candidate> candidates = new HashMap<>();
+
+    PendingFiles(long stableMillis, String markerSuffix) {
+        this.stableMillis = stableMillis;
+        this.markerSuffix = markerSuffix;
+    }
+
+    /**
+     * Регистрирует событие для файла или маркера готовности.
+     */
+    synchronized void touch(Path path) {
+        String name = path.getFileName().toString();
+        if (name.endsWith(markerSuffix)) {
+            Path target = path.resolveSibling(name.substring(0, name.length() - markerSuffix.length()));
+            candidates.computeIfAbsent(target, ignored -> new Candidate());
+            return;
+        }
+        candidates.computeIfAbsent(path, ignored -> new Candidate());
+    }
+
+    synchronized int size() {
+        return candidates.size();
+    }
+
+    /**
+     * Возвращает и забывает файлы, готовые к обработке.
+     */
+    synchronized List<Path> pollReady(long now) {
+        List<Path> ready = new ArrayList<>();
+        Iterator<Map.Entry<Path, Candidate>> iterator = candidates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Candidate> entry = iterator.next();
+            Path path = entry.getKey();
+            Candidate candidate = entry.getValue();
+
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                // маркер пришел раньше файла - ждем файл, иначе файл удален
+                if (!Files.exists(markerOf(path))) {
+                    iterator.remove();
+                }
+                continue;
+            } catch (IOException e) {
+                continue;
+            }
+            if (!attributes.isRegularFile()) {
+                iterator.remove();
+                continue;
+            }
+
+            if (Files.exists(markerOf(path)) || candidate.isStable(attributes, now, stableMillis)) {
+                ready.add(path);
+                iterator.remove();
+            }
+        }
+        return ready;
+    }
+
+    private Path markerOf(Path path) {
+        return path.resolveSibling(path.getFileName() + markerSuffix);
+    }
+
+    private static final class Candidate {
+        long size = -1;
+        long modifiedAt = -1;
+        long observedAt;
+
+        boolean isStable(BasicFileAttributes attributes, long now, long stableMillis) {
+            long currentSize = attributes.size();
+            long currentModifiedAt = attributes.lastModifiedTime().toMillis();
+            if (currentSize != size || currentModifiedAt != modifiedAt) {
+                size = currentSize;
+                modifiedAt = currentModifiedAt;
+                observedAt = now;
+                return false;
+            }
+            return now - observedAt >= stableMillis;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.levandr.custompaymentsystem;
+
+import com.levandr.custompaymentsystem.entity.DailySummary;
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.entity.ProcessedFile;
+import com.levandr.custompaymentsystem.enums.FileState;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.repository.FileSummaryRepository;
+import com.levandr.custompaymentsystem.repository.PaymentEntityRepository;
+import com.levandr.custompaymentsystem.repository.ProcessedFileRepository;
+import com.levandr.custompaymentsystem.service.ledger.FileLedgerService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Два контекста приложения в одной JVM - два узла на общей БД и общем каталоге Input.
+ * Каждый файл должен быть захвачен и загружен ровно одним из них, а итоги общего дня файлов -
+ * сложиться в одну строку, хотя ее первыми создают оба узла одновременно. Повтор ID из файла, загруженного
+ * другим узлом после старта, должен стать дубликатом, хотя индекс ID этого узла о нем не знает.
+ */
+class MultiNodeIngestTest {
+
+    private static final int FILES = 6;
+    private static final int LINES = 50;
+
+    @TempDir
+    Path directory;
+
+    private ConfigurableApplicationContext startNode(String databaseUrl) {
+        return new SpringApplicationBuilder(CustomPaymentSystemApplication.class).run(
+                "--spring.main.web-application-type=none",
+                "--spring.datasource.url=" + databaseUrl,
+                "--spring.jpa.hibernate.ddl-auto=update",
+                "--spring.input.directory=" + directory.resolve("Input"),
+                "--spring.output.error=" + directory.resolve("ReportError"),
+                "--spring.output.success=" + directory.resolve("ReportSuccess"),
+                "--spring.output.tmp=" + directory.resolve("ReportTmp"),
+                "--spring.cluster.enabled=true",
+                "--spring.cluster.node-id=",
+                "--spring.watcher.stable-millis=0",
+                "--spring.watcher.poll-millis=20");
+    }
+
+    private static String fileName(int file) {
+        return String.format("BCP_20230101_1200%02d_0001", file);
+    }
+
+    private void writeFile(int file) throws IOException {
+        writeFile(file, 0);
+    }
+
+    /**
+     * Файл пишется рядом и переносится в Input целиком, чтобы узлы не видели его недописанным.
+     * Первые {@code repeated} строк повторяют ID первой строки файлов 0, 1, ...
+     */
+    private void writeFile(int file, int repeated) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            int number = i < repeated ? i * 1000 : file * 1000 + i;
+            content.append(String.format("%012d 123456789-123456789-123456789-000000000-%010d %-64s 012345678912 %09d.%02d",
+                    i + 1, number, "Наименование", number, i)).append('\n');
+        }
+        Path written = Files.writeString(directory.resolve(fileName(file)), content, StandardCharsets.UTF_8);
+        Files.move(written, directory.resolve("Input").resolve(fileName(file)), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static double completedFiles(ConfigurableApplicationContext node) {
+        return node.getBean(MeterRegistry.class).counter("ingest.files.completed").count();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Файлы не обработаны за 30 секунд");
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    void testEachFileIsProcessedByExactlyOneNode() throws Exception {
+        Files.createDirectories(directory.resolve("Input"));
+        String databaseUrl = "jdbc:h2:mem:cluster-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+        try (ConfigurableApplicationContext first = startNode(databaseUrl);
+             ConfigurableApplicationContext second = startNode(databaseUrl)) {
+            assertNotEquals(first.getBean(FileLedgerService.class).nodeId(),
+                    second.getBean(FileLedgerService.class).nodeId());
+
+            for (int file = 0; file < FILES; file++) {
+                writeFile(file);
+            }
+            ProcessedFileRepository ledger = first.getBean(ProcessedFileRepository.class);
+            await(() -> ledger.findAll().stream().filter(entry -> entry.getState() == FileState.DONE).count() == FILES);
+            await(() -> completedFiles(first) + completedFiles(second) >= FILES);
+            Thread.sleep(500);
+
+            assertEquals(FILES, completedFiles(first) + completedFiles(second));
+            for (ProcessedFile entry : ledger.findAll()) {
+                assertNull(entry.getOwnerNode(), entry.getFileName());
+            }
+            List<Payment> payments = first.getBean(PaymentEntityRepository.class).findAll();
+            assertEquals(FILES * LINES, payments.size());
+            for (Payment payment : payments) {
+                assertEquals(PaymentStatus.FULL_SAVED.getCode(), payment.getStatusCode(), payment.toString());
+            }
+            assertEquals(FILES, first.getBean(FileSummaryRepository.class).count());
+            for (int file = 0; file < FILES; file++) {
+                assertTrue(Files.exists(directory.resolve("ReportSuccess").resolve("Report " + fileName(file))));
+            }
+
+            DailySummary day = first.getBean(ReconciliationService.class).findDay(LocalDate.of(2023, 1, 1)).orElseThrow();
+            assertEquals(FILES, day.getFileCount());
+            assertEquals(FILES * LINES, day.getPaymentCount());
+            assertEquals(FILES * LINES, day.getFullSavedCount());
+            assertEquals(new BigDecimal("757423.50"), day.getAmount());
+
+            // Новый файл повторяет первый ID каждого из файлов 0..5: ID файлов, загруженных другим узлом,
+            // индекс узла нового файла не знает, и они находятся только запросом к БД.
+            writeFile(FILES, FILES);
+            await(() -> ledger.findAll().stream().filter(entry -> entry.getState() == FileState.DONE).count() == FILES + 1);
+            await(() -> completedFiles(first) + completedFiles(second) >= FILES + 1);
+
+            payments = first.getBean(PaymentEntityRepository.class).findAll();
+            assertEquals((FILES + 1) * LINES, payments.size());
+            List<Payment> duplicates = payments.stream().filter(Payment::isDuplicate).toList();
+            assertEquals(FILES, duplicates.size());
+            for (Payment duplicate : duplicates) {
+                assertEquals(fileName(FILES), duplicate.getFileName());
+                assertTrue(Integer.parseInt(duplicate.getRecordNumber()) <= FILES, duplicate.toString());
+            }
+            day = first.getBean(ReconciliationService.class).findDay(LocalDate.of(2023, 1, 1)).orElseThrow();
+            assertEquals(FILES + 1, day.getFileCount());
+            assertEquals((FILES + 1) * LINES, day.getPaymentCount());
+            assertEquals((FILES + 1) * LINES - FILES, day.getFullSavedCount());
+            assertEquals(FILES, day.getDuplicateCount());
+            assertEquals(new BigDecimal("1022645.60"), day.getAmount());
+        }
+    }
+}
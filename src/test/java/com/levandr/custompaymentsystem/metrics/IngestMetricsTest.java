@@ -0,0 +1,45 @@
+package com.levandr.custompaymentsystem.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IngestMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final IngestMetrics ingestMetrics = new IngestMetrics(registry);
+
+    @Test
+    void testSkippedFileIsNotCountedAsCompleted() {
+        ingestMetrics.fileQueued();
+        ingestMetrics.fileStarted();
+        ingestMetrics.fileSkipped();
+
+        assertEquals(0, gauge("ingest.files.queued"));
+        assertEquals(0, gauge("ingest.files.in_flight"));
+        assertEquals(1, counter("ingest.files.skipped"));
+        assertEquals(0, counter("ingest.files.completed"));
+    }
+
+    @Test
+    void testDequeuedFileLeavesQueue() {
+        ingestMetrics.fileQueued();
+        ingestMetrics.fileQueued();
+        ingestMetrics.fileDequeued();
+        ingestMetrics.fileStarted();
+        ingestMetrics.fileFinished(true);
+
+        assertEquals(0, gauge("ingest.files.queued"));
+        assertEquals(0, gauge("ingest.files.in_flight"));
+        assertEquals(1, counter("ingest.files.completed"));
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).gauge().value();
+    }
+
+    private double counter(String name) {
+        return registry.get(name).counter().count();
+    }
+}
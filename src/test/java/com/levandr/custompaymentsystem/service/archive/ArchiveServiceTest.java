@@ -0,0 +1,96 @@
+package com.levandr.custompaymentsystem.service.archive;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveServiceTest {
+
+    private static final String FILE_NAME = "BCP_20230115_120000_0001";
+
+    @TempDir
+    Path directory;
+
+    private Path input;
+    private Path archive;
+    private final ArchiveService archiveService = new ArchiveService();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        input = Files.createDirectories(directory.resolve("Input"));
+        archive = directory.resolve("Archive");
+        ReflectionTestUtils.setField(archiveService, "enabled", true);
+        ReflectionTestUtils.setField(archiveService, "inputDirectory", input);
+        ReflectionTestUtils.setField(archiveService, "compressionLevel", 6);
+        ReflectionTestUtils.setField(archiveService, "doneMarkerSuffix", ".done");
+        ReflectionTestUtils.setField(archiveService, "compressIntervalMillis", 60_000L);
+        archiveService.init();
+    }
+
+    @Test
+    void testArchiveMovesFileToDatePartition() throws IOException {
+        Path file = Files.writeString(input.resolve(FILE_NAME), "line");
+        Files.writeString(input.resolve(FILE_NAME + ".done"), "");
+
+        archiveService.archive(file);
+
+        assertFalse(Files.exists(file));
+        assertFalse(Files.exists(input.resolve(FILE_NAME + ".done")));
+        assertEquals("line", Files.readString(archive.resolve("2023-01-15").resolve(FILE_NAME)));
+    }
+
+    @Test
+    void testCompressReplacesOldPartitionWithZip() throws IOException {
+        archiveService.archive(Files.writeString(input.resolve(FILE_NAME), "line"));
+
+        archiveService.compressPartitions(LocalDate.of(2023, 1, 16));
+
+        assertFalse(Files.exists(archive.resolve("2023-01-15")));
+        try (ZipFile zip = new ZipFile(archive.resolve("2023-01-15.zip").toFile())) {
+            assertNotNull(zip.getEntry(FILE_NAME));
+        }
+    }
+
+    @Test
+    void testRecentPartitionIsNotCompressed() throws IOException {
+        archiveService.archive(Files.writeString(input.resolve(FILE_NAME), "line"));
+
+        archiveService.compressPartitions(LocalDate.of(2023, 1, 15));
+
+        assertTrue(Files.exists(archive.resolve("2023-01-15").resolve(FILE_NAME)));
+    }
+
+    @Test
+    void testStalePartFileIsReplaced() throws IOException {
+        archiveService.archive(Files.writeString(input.resolve(FILE_NAME), "line"));
+        Path part = Files.writeString(archive.resolve("2023-01-15.zip.part"), "broken");
+        Files.setLastModifiedTime(part, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+
+        archiveService.compressPartitions(LocalDate.of(2023, 1, 16));
+
+        assertFalse(Files.exists(part));
+        assertFalse(Files.exists(archive.resolve("2023-01-15")));
+        assertTrue(Files.exists(archive.resolve("2023-01-15.zip")));
+    }
+
+    @Test
+    void testFreshPartFileIsLeftToItsWriter() throws IOException {
+        archiveService.archive(Files.writeString(input.resolve(FILE_NAME), "line"));
+        Path part = Files.writeString(archive.resolve("2023-01-15.zip.part"), "in progress");
+
+        archiveService.compressPartitions(LocalDate.of(2023, 1, 16));
+
+        assertEquals("in progress", Files.readString(part));
+        assertTrue(Files.exists(archive.resolve("2023-01-15").resolve(FILE_NAME)));
+    }
+}
@@ -0,0 +1,128 @@
+package com.levandr.custompaymentsystem.service.ledger;
+
+import com.levandr.custompaymentsystem.entity.ProcessedFile;
+import com.levandr.custompaymentsystem.enums.FileState;
+import com.levandr.custompaymentsystem.repository.ProcessedFileRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FileLedgerServiceTest {
+
+    private static final String FILE_NAME = "BCP_20230101_120000_0001";
+
+    @Mock
+    private ProcessedFileRepository processedFileRepository;
+
+    @InjectMocks
+    private FileLedgerService fileLedgerService;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testNewFileIsStarted() throws IOException {
+        Path file = Files.writeString(directory.resolve(FILE_NAME), "content");
+        when(processedFileRepository.findByFileName(FILE_NAME)).thenReturn(Optional.empty());
+
+        assertTrue(fileLedgerService.tryStart(file));
+
+        ArgumentCaptor<ProcessedFile> captor = ArgumentCaptor.forClass(ProcessedFile.class);
+        verify(processedFileRepository).save(captor.capture());
+        assertEquals(FileState.IN_PROGRESS, captor.getValue().getState());
+        assertEquals(7L, captor.getValue().getFileSize());
+        assertEquals(64, captor.getValue().getContentHash().length());
+    }
+
+    @Test
+    void testFileIsNotStartedTwiceWhileInFlight() throws IOException {
+        Path file = Files.writeString(directory.resolve(FILE_NAME), "content");
+        when(processedFileRepository.findByFileName(FILE_NAME)).thenReturn(Optional.empty());
+
+        assertTrue(fileLedgerService.tryStart(file));
+        assertFalse(fileLedgerService.tryStart(file));
+    }
+
+    @Test
+    void testDoneFileWithSameSizeAndTimeIsSkipped() throws IOException {
+        Path file = Files.writeString(directory.resolve(FILE_NAME), "content");
+        Instant modifiedAt = Instant.parse("2023-01-01T12:00:00Z");
+        Files.setLastModifiedTime(file, FileTime.from(modifiedAt));
+        ProcessedFile entry = new ProcessedFile(1L, FILE_NAME, 7L, modifiedAt, "hash", FileState.DONE, modifiedAt,
+                null, null);
+        when(processedFileRepository.findByFileName(FILE_NAME)).thenReturn(Optional.of(entry));
+
+        assertFalse(fileLedgerService.tryStart(file));
+        verify(processedFileRepository, never()).save(any());
+    }
+
+    @Test
+    void testTouchedFileWithSameContentIsSkipped() throws IOException {
+        Path file = Files.writeString(directory.resolve(FILE_NAME), "content");
+        ProcessedFile entry = new ProcessedFile(1L, FILE_NAME, 7L, Instant.EPOCH,
+                FileLedgerService.hash(file), FileState.DONE, Instant.EPOCH, null, null);
+        when(processedFileRepository.findByFileName(FILE_NAME)).thenReturn(Optional.of(entry));
+
+        assertFalse(fileLedgerService.tryStart(file));
+    }
+
+    @Test
+    void testFileClaimedByAnotherNodeIsSkipped() throws IOException {
+        ReflectionTestUtils.setField(fileLedgerService, "nodeId", "node-a");
+        Path file = Files.writeString(directory.resolve(FILE_NAME), "content");
+        Instant leaseUntil = Instant.now().plusSeconds(60);
+        ProcessedFile entry = new ProcessedFile(1L, FILE_NAME, 7L, Instant.EPOCH, "hash", FileState.IN_PROGRESS,
+                Instant.EPOCH, "node-b", leaseUntil);
+        when(processedFileRepository.findByFileName(FILE_NAME)).thenReturn(Optional.of(entry));
+        when(processedFileRepository.claim(eq(1L), eq("node-a"), any(), any(), eq(FileState.IN_PROGRESS))).thenReturn(0);
+
+        assertFalse(fileLedgerService.tryStart(file));
+        verify(processedFileRepository, never()).save(any());
+    }
+
+    @Test
+    void testExpiredClaimIsTakenOver() throws IOException {
+        ReflectionTestUtils.setField(fileLedgerService, "nodeId", "node-a");
+        ReflectionTestUtils.setField(fileLedgerService, "leaseMillis", 60_000L);
+        Path file = Files.writeString(directory.resolve(FILE_NAME), "content");
+        ProcessedFile entry = new ProcessedFile(1L, FILE_NAME, 7L, Instant.EPOCH, "hash", FileState.IN_PROGRESS,
+                Instant.EPOCH, "node-b", Instant.EPOCH);
+        when(processedFileRepository.findByFileName(FILE_NAME)).thenReturn(Optional.of(entry));
+        when(processedFileRepository.claim(eq(1L), eq("node-a"), any(), any(), eq(FileState.IN_PROGRESS))).thenReturn(1);
+
+        assertTrue(fileLedgerService.tryStart(file));
+
+        ArgumentCaptor<ProcessedFile> captor = ArgumentCaptor.forClass(ProcessedFile.class);
+        verify(processedFileRepository).save(captor.capture());
+        assertEquals("node-a", captor.getValue().getOwnerNode());
+        assertTrue(captor.getValue().getLeaseUntil().isAfter(Instant.now()));
+    }
+
+    @Test
+    void testDefaultNodeIdsDifferWithinOneJvm() {
+        FileLedgerService other = new FileLedgerService(processedFileRepository);
+        fileLedgerService.init();
+        other.init();
+
+        assertNotEquals(fileLedgerService.nodeId(), other.nodeId());
+        assertTrue(fileLedgerService.nodeId().contains("-" + ProcessHandle.current().pid() + "-"));
+    }
+}
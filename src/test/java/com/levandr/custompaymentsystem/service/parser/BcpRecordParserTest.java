@@ -0,0 +1,91 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import com.levandr.custompaymentsystem.enums.RejectReason;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BcpRecordParserTest {
+
+    private static final String VALID_LINE =
+            "000001000001 123456789-153456789-123456789-123456789-1234567890 Наименование"
+            + "                                                     012345678912 100000000.12";
+
+    private final BcpRecordParser parser = new BcpRecordParser();
+
+    private BcpRecord parse(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return parser.parse(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    @Test
+    void testParseValidLine() {
+        BcpRecord record = parse(VALID_LINE);
+
+        assertNotNull(record);
+        assertEquals("000001000001", record.recordNumber());
+        assertEquals("123456789-153456789-123456789-123456789-1234567890", record.paymentId());
+        assertEquals("Наименование", record.companyName());
+        assertEquals("012345678912", record.payerInn());
+        assertEquals(10000000012L, record.amountCents());
+    }
+
+    @Test
+    void testParseLineWithBomAndCarriageReturn() {
+        BcpRecord record = parse("﻿" + VALID_LINE + "\r");
+
+        assertNotNull(record);
+        assertEquals("000001000001", record.recordNumber());
+    }
+
+    @Test
+    void testParseInvalidPaymentId() {
+        assertNull(parse(VALID_LINE.replace("123456789-1234567890", "12345678-01234567890")));
+    }
+
+    @Test
+    void testParseInvalidAmount() {
+        assertNull(parse(VALID_LINE.replace("100000000.12", "1000000000.1")));
+    }
+
+    @Test
+    void testParseTooShortLine() {
+        assertNull(parse("000001000001 123456789-153456789-123456789-123456789-1234567890"));
+    }
+
+    @Test
+    void testRejectReasonNamesFirstBadField() {
+        parse(VALID_LINE.replace("123456789-1234567890", "12345678-01234567890"));
+        assertEquals(RejectReason.PAYMENT_ID, parser.rejectReason());
+
+        parse(VALID_LINE.replace("012345678912", "01234567891X"));
+        assertEquals(RejectReason.PAYER_INN, parser.rejectReason());
+
+        parse(VALID_LINE);
+        assertNull(parser.rejectReason());
+    }
+
+    @Test
+    void testInnChecksumRule() {
+        BcpRecordParser checked = new BcpRecordParser(List.of(BcpLineRule.innChecksum()));
+        byte[] invalid = VALID_LINE.getBytes(StandardCharsets.UTF_8);
+        byte[] valid = VALID_LINE.replace("012345678912", "500100732259").getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(checked.isValid(ByteBuffer.wrap(invalid), 0, invalid.length));
+        assertEquals(RejectReason.INN_CHECKSUM, checked.rejectReason());
+        assertTrue(checked.isValid(ByteBuffer.wrap(valid), 0, valid.length));
+    }
+
+    @Test
+    void testAmountRangeRule() {
+        BcpRecordParser checked = new BcpRecordParser(List.of(BcpLineRule.amountRange(1, 100_00)));
+        byte[] bytes = VALID_LINE.getBytes(StandardCharsets.UTF_8);
+
+        assertNull(checked.parse(ByteBuffer.wrap(bytes), 0, bytes.length));
+        assertEquals(RejectReason.AMOUNT_RANGE, checked.rejectReason());
+    }
+}
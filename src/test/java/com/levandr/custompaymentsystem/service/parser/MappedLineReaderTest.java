@@ -0,0 +1,77 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MappedLineReaderTest {
+
+    @TempDir
+    Path directory;
+
+    private long lastLineEnd(String content, long from) throws IOException {
+        Path file = Files.writeString(directory.resolve("file"), content, StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return MappedLineReader.lastLineEnd(channel, from, channel.size());
+        }
+    }
+
+    @Test
+    void testLastLineEndSkipsIncompleteLine() throws IOException {
+        assertEquals(9, lastLineEnd("first\nab\nincompl", 0));
+    }
+
+    @Test
+    void testLastLineEndWithoutNewLineReturnsFrom() throws IOException {
+        assertEquals(6, lastLineEnd("first\nincomplete", 6));
+    }
+
+    @Test
+    void testLastLineEndFindsNewLineBeforeLongTail() throws IOException {
+        assertEquals(6, lastLineEnd("first\n" + "x".repeat(20_000), 0));
+    }
+
+    private long[] splitByLines(String content, long segmentSize) throws IOException {
+        Path file = Files.writeString(directory.resolve("file"), content, StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return MappedLineReader.splitByLines(channel, segmentSize);
+        }
+    }
+
+    @Test
+    void testSplitByLinesPutsBoundariesOnLineStarts() throws IOException {
+        String content = "aaaa\nbbbb\ncccc\ndddd\n";
+        long[] boundaries = splitByLines(content, 5);
+
+        assertEquals(0, boundaries[0]);
+        assertEquals(content.length(), boundaries[boundaries.length - 1]);
+        for (int i = 1; i < boundaries.length - 1; i++) {
+            assertEquals('\n', content.charAt((int) boundaries[i] - 1));
+        }
+    }
+
+    @Test
+    void testSplitByLinesMovesBoundaryPastCrossingLine() throws IOException {
+        // Граница 4 приходится на середину второй строки: диапазон заканчивается после нее.
+        assertArrayEquals(new long[]{0, 10, 13}, splitByLines("ab\ncdefgh\nij\n", 4));
+    }
+
+    @Test
+    void testSplitByLinesKeepsLongLineInOneSegment() throws IOException {
+        assertArrayEquals(new long[]{0, 21, 23}, splitByLines("x".repeat(20) + "\nyz", 3));
+    }
+
+    @Test
+    void testSplitByLinesSmallFileIsOneSegment() throws IOException {
+        assertArrayEquals(new long[]{0, 5}, splitByLines("abcd\n", 100));
+    }
+}
@@ -0,0 +1,136 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelBcpParserTest {
+
+    private static final long SEGMENT_BYTES = 1000;
+    private static final int LINES = 201;
+
+    @TempDir
+    Path directory;
+
+    private final BcpValidation bcpValidation = BcpValidation.defaults();
+    private final ParallelBcpParser parallelBcpParser = new ParallelBcpParser(bcpValidation);
+
+    /**
+     * Запись вместе с концом и номером ее строки, как их видит обработчик.
+     */
+    private record Parsed(String recordNumber, long lineEnd, long lineNumber) {
+    }
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(parallelBcpParser, "enabled", true);
+        ReflectionTestUtils.setField(parallelBcpParser, "segmentBytes", SEGMENT_BYTES);
+        ReflectionTestUtils.setField(parallelBcpParser, "parallelism", 3);
+        parallelBcpParser.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        parallelBcpParser.shutdown();
+    }
+
+    private static String line(int i) {
+        return String.format("%012d 123456789-123456789-123456789-000000000-%010d %-64s 012345678912 %09d.%02d",
+                i + 1, i, "Наименование", i, i % 100);
+    }
+
+    /**
+     * Файл из валидных строк, где каждая седьмая строка испорчена; последняя строка без перевода строки.
+     */
+    private Path writeFile(int lines) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            String line = line(i);
+            content.append(i % 7 == 3 ? "X" + line.substring(1) : line);
+            if (i < lines - 1) {
+                content.append('\n');
+            }
+        }
+        return Files.writeString(directory.resolve("BCP_20230101_120000_0001"), content, StandardCharsets.UTF_8);
+    }
+
+    private List<Parsed> parseSequentially(FileChannel channel) throws IOException {
+        BcpRecordParser recordParser = bcpValidation.newParser();
+        List<Parsed> parsed = new ArrayList<>();
+        long[] position = {0};
+        long[] lineNumber = {0};
+        long size = channel.size();
+        MappedLineReader.forEachLine(channel, (buffer, start, end) -> {
+            position[0] = Math.min(position[0] + end - start + 1, size);
+            lineNumber[0]++;
+            BcpRecord record = recordParser.parse(buffer, start, end);
+            if (record != null) {
+                parsed.add(new Parsed(record.recordNumber(), position[0], lineNumber[0]));
+            }
+        });
+        return parsed;
+    }
+
+    @Test
+    void testParallelParseMatchesSequentialParse() throws IOException {
+        Path file = writeFile(LINES);
+        FileParseLog parseLog = new FileParseLog(file.getFileName().toString(), 0, 0);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Parsed> parsed = new ArrayList<>();
+            long lines = parallelBcpParser.parse(channel,
+                    (record, lineEnd, lineNumber) -> parsed.add(new Parsed(record.recordNumber(), lineEnd, lineNumber)),
+                    parseLog);
+
+            List<Parsed> expected = parseSequentially(channel);
+            assertEquals(LINES, lines);
+            assertEquals(expected, parsed);
+            assertEquals(LINES - expected.size(), parseLog.invalidLines());
+            assertEquals(channel.size(), parsed.get(parsed.size() - 1).lineEnd());
+        }
+    }
+
+    @Test
+    void testScanCountsMatchParse() throws IOException {
+        Path file = writeFile(LINES);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            FileScanResult result = parallelBcpParser.scan(channel);
+            long valid = parseSequentially(channel).size();
+
+            assertEquals(valid, result.validLines());
+            assertEquals(LINES - valid, result.invalidLines());
+        }
+    }
+
+    @Test
+    void testRecordsArriveInFileOrder() throws IOException {
+        Path file = writeFile(500);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Parsed> parsed = new ArrayList<>();
+            parallelBcpParser.parse(channel,
+                    (record, lineEnd, lineNumber) -> parsed.add(new Parsed(record.recordNumber(), lineEnd, lineNumber)),
+                    new FileParseLog(file.getFileName().toString(), 0, 0));
+
+            for (int i = 1; i < parsed.size(); i++) {
+                assertTrue(parsed.get(i - 1).lineNumber() < parsed.get(i).lineNumber());
+                assertTrue(parsed.get(i - 1).lineEnd() < parsed.get(i).lineEnd());
+                assertEquals(String.format("%012d", parsed.get(i).lineNumber()), parsed.get(i).recordNumber());
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.enums.StatusFinalization;
+import com.levandr.custompaymentsystem.exception.FileProcessingException;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
+import com.levandr.custompaymentsystem.repository.PaymentEntityRepository;
+import com.levandr.custompaymentsystem.service.payment.PaymentIdIndex;
+import com.levandr.custompaymentsystem.service.pipeline.IngestPipeline;
+import com.levandr.custompaymentsystem.service.query.PaymentQueryService;
+import com.levandr.custompaymentsystem.service.repoter.ReporterService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Повторная обработка файла после сбоя на полном конвейере: разбор, {@link IngestPipeline},
+ * {@link PaymentIdIndex} и отчет; БД заменена хранилищем в памяти ({@link StoredPayments}).
+ */
+class ParserServiceRecoveryTest {
+
+    private static final String FILE_NAME = "BCP_20230101_120000_0001";
+    private static final int DUPLICATE_LINE = 6;
+    private static final IngestMetrics METRICS = new IngestMetrics(new SimpleMeterRegistry());
+
+    @TempDir
+    Path directory;
+
+    private Path input;
+    private final StoredPayments stored = new StoredPayments();
+    private final ReconciliationService reconciliationService = mock(ReconciliationService.class);
+    private final List<IngestPipeline> pipelines = new ArrayList<>();
+    private int persistParallelism = 1;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        input = Files.createDirectories(directory.resolve("Input"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipelines.forEach(IngestPipeline::shutdown);
+    }
+
+    private static String line(int i) {
+        return String.format("%012d 123456789-123456789-123456789-000000000-%010d %-64s 012345678912 %09d.%02d",
+                i + 1, i, "Наименование", i, i % 100);
+    }
+
+    private Path writeFile(int valid) throws IOException {
+        return writeFile(valid, true);
+    }
+
+    /**
+     * Файл из {@code valid} платежей и, если {@code invalidLine}, одной недействительной строки в конце.
+     * Платеж в строке {@link #DUPLICATE_LINE} (с 0) повторяет ID строки 1, если строк столько есть.
+     */
+    private Path writeFile(int valid, boolean invalidLine) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < valid; i++) {
+            String line = line(i);
+            if (i == DUPLICATE_LINE) {
+                line = line.replace(String.format("-%010d ", i), String.format("-%010d ", 1));
+            }
+            content.append(line).append('\n');
+        }
+        if (invalidLine) {
+            content.append("invalid line\n");
+        }
+        return Files.writeString(input.resolve(FILE_NAME), content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Сервисы одного запуска приложения: у каждого свой индекс ID, хранилище общее.
+     */
+    private ParserService parserService(int chunkSize, boolean idIndexEnabled, boolean checkpointEnabled,
+                                        StatusFinalization statusFinalization) {
+        PaymentIdIndex paymentIdIndex = new PaymentIdIndex(null);
+        ReflectionTestUtils.setField(paymentIdIndex, "enabled", idIndexEnabled);
+
+        PaymentEntityRepository paymentRepository = mock(PaymentEntityRepository.class);
+        when(paymentRepository.findByFileNameAndIdGreaterThanOrderById(anyString(), anyLong(), any(Pageable.class)))
+                .thenAnswer(invocation -> stored.page(invocation.getArgument(0), invocation.getArgument(1),
+                        invocation.<Pageable>getArgument(2).getPageSize()));
+        ReporterService reporterService = new ReporterService(METRICS, paymentRepository);
+        ReflectionTestUtils.setField(reporterService, "reportErrorDir", directory.resolve("ReportError"));
+        ReflectionTestUtils.setField(reporterService, "reportSuccessDir", directory.resolve("ReportSuccess"));
+        ReflectionTestUtils.setField(reporterService, "pageSize", chunkSize);
+
+        PaymentQueryService paymentQueryService = mock(PaymentQueryService.class);
+        IngestPipeline ingestPipeline = new IngestPipeline(stored, reporterService, paymentQueryService,
+                reconciliationService, paymentIdIndex);
+        ReflectionTestUtils.setField(ingestPipeline, "persistParallelism", persistParallelism);
+        ReflectionTestUtils.setField(ingestPipeline, "persistQueueCapacity", 4);
+        ReflectionTestUtils.setField(ingestPipeline, "reportParallelism", 1);
+        ReflectionTestUtils.setField(ingestPipeline, "reportQueueCapacity", 4);
+        ReflectionTestUtils.setField(ingestPipeline, "pageSize", chunkSize);
+        ingestPipeline.init();
+        pipelines.add(ingestPipeline);
+
+        BcpValidation bcpValidation = BcpValidation.defaults();
+        ParserService parserService = new ParserService(stored, reporterService, new ParallelBcpParser(bcpValidation),
+                paymentIdIndex, METRICS, ingestPipeline, bcpValidation);
+        ReflectionTestUtils.setField(parserService, "inputDirectory", input);
+        ReflectionTestUtils.setField(parserService, "chunkSize", chunkSize);
+        ReflectionTestUtils.setField(parserService, "checkpointEnabled", checkpointEnabled);
+        ReflectionTestUtils.setField(parserService, "statusFinalization", statusFinalization);
+        ReflectionTestUtils.setField(parserService, "duplicatesMemoryBytes", 1L << 20);
+        return parserService;
+    }
+
+    private ParserService parserService(int chunkSize, boolean idIndexEnabled, boolean checkpointEnabled) {
+        return parserService(chunkSize, idIndexEnabled, checkpointEnabled, StatusFinalization.SCAN);
+    }
+
+    private ParserService parserService(int chunkSize) {
+        return parserService(chunkSize, true, false);
+    }
+
+    private String report() throws IOException {
+        return Files.readString(directory.resolve("ReportError").resolve("Report " + FILE_NAME));
+    }
+
+    private static long reportedPayments(String report) {
+        return report.lines().filter(line -> line.startsWith("PaymentEntity{")).count();
+    }
+
+    @Test
+    void testFailedBatchDoesNotMakeRetriedPaymentsDuplicates() throws IOException, FileProcessingException {
+        Path file = writeFile(5);
+        ParserService parserService = parserService(2);
+        stored.failSave(1);
+
+        assertThrows(FileProcessingException.class, () -> parserService.parseFile(file));
+        assertTrue(stored.payments().isEmpty());
+
+        parserService.parseFile(file);
+
+        assertEquals(5, stored.payments().size());
+        for (Payment payment : stored.payments()) {
+            assertEquals(PaymentStatus.PARTIAL_OK.getCode(), payment.getStatusCode());
+        }
+    }
+
+    /**
+     * Узел падает после двух сохраненных блоков; файл дочитывает новый узел с пустым индексом,
+     * который не видел этих вставок. Повтор ID из сохраненной части должен остаться дубликатом,
+     * а строки сохраненной части - не записаться второй раз.
+     */
+    @Test
+    void testResumeOnAnotherNodeFindsDuplicatesOfCommittedRanges() throws IOException, FileProcessingException {
+        assertResumeAfterCrash(true);
+    }
+
+    @Test
+    void testResumeWithoutIdIndexFindsDuplicatesOfCommittedRanges() throws IOException, FileProcessingException {
+        assertResumeAfterCrash(false);
+    }
+
+    private void assertResumeAfterCrash(boolean idIndexEnabled) throws IOException, FileProcessingException {
+        Path file = writeFile(8);
+        stored.failSave(3);
+        ParserService crashed = parserService(2, idIndexEnabled, true);
+        assertThrows(FileProcessingException.class, () -> crashed.parseFile(file));
+        assertEquals(4, stored.payments().size());
+        assertEquals(2, stored.findCommittedRanges(FILE_NAME).size());
+
+        parserService(2, idIndexEnabled, true).parseFile(file);
+
+        List<Payment> payments = stored.payments();
+        assertEquals(8, payments.size());
+        assertEquals(8, payments.stream().map(Payment::getRecordNumber).distinct().count());
+        for (Payment payment : payments) {
+            PaymentStatus expected = payment.getRecordNumber().equals(String.format("%012d", DUPLICATE_LINE + 1))
+                    ? PaymentStatus.DUPLICATE
+                    : PaymentStatus.PARTIAL_OK;
+            assertEquals(expected.getCode(), payment.getStatusCode(), payment.toString());
+        }
+        assertTrue(stored.findCommittedRanges(FILE_NAME).isEmpty());
+
+        String report = report();
+        assertEquals(8, reportedPayments(report));
+        assertTrue(report.contains("payments=8"));
+        assertTrue(report.contains("invalidLines=1"));
+        assertTrue(report.contains("StatusTotal{status=DUPLICATE, payments=1}"));
+    }
+
+    /**
+     * Блоки сохраняются параллельно: блок с повтором ID (строка {@link #DUPLICATE_LINE}) сохранен как дубликат,
+     * а более ранний блок с первым вхождением этого ID упал. При продолжении первое вхождение снова принимается,
+     * и у ID остается принятый платеж, а дубликатом - только повтор.
+     */
+    @Test
+    void testResumeKeepsFirstOccurrenceWhenOnlyLaterRepeatWasCommitted() throws IOException, FileProcessingException {
+        Path file = writeFile(8);
+        persistParallelism = 2;
+        stored.failSaveAfter(String.format("%012d", 1), String.format("%012d", DUPLICATE_LINE + 1));
+        ParserService crashed = parserService(2, true, true);
+        assertThrows(FileProcessingException.class, () -> crashed.parseFile(file));
+        assertTrue(stored.payments().stream().anyMatch(Payment::isDuplicate));
+        assertTrue(stored.payments().stream()
+                .noneMatch(payment -> payment.getRecordNumber().equals(String.format("%012d", 2))));
+
+        parserService(2, true, true).parseFile(file);
+
+        List<Payment> payments = stored.payments();
+        assertEquals(8, payments.size());
+        assertEquals(8, payments.stream().map(Payment::getRecordNumber).distinct().count());
+        for (Payment payment : payments) {
+            PaymentStatus expected = payment.getRecordNumber().equals(String.format("%012d", DUPLICATE_LINE + 1))
+                    ? PaymentStatus.DUPLICATE
+                    : PaymentStatus.PARTIAL_OK;
+            assertEquals(expected.getCode(), payment.getStatusCode(), payment.toString());
+        }
+        assertTrue(report().contains("StatusTotal{status=DUPLICATE, payments=1}"));
+    }
+
+    /**
+     * Файл с тем же именем, но другим содержимым загружается заново. В режиме BULK_UPDATE итоговый UPDATE
+     * статусов и отчет выбирают платежи по имени файла, поэтому строки прежней загрузки должны быть
+     * удалены, а их ID - не считаться дубликатами новых строк.
+     */
+    @Test
+    void testBulkUpdateReingestOfChangedFileReplacesEarlierPayments() throws IOException, FileProcessingException {
+        ParserService parserService = parserService(2, true, true, StatusFinalization.BULK_UPDATE);
+        parserService.parseFile(writeFile(5, false));
+        assertEquals(5, stored.payments().size());
+
+        parserService.parseFile(writeFile(3, true));
+
+        List<Payment> payments = stored.payments();
+        assertEquals(3, payments.size());
+        for (Payment payment : payments) {
+            assertEquals(PaymentStatus.PARTIAL_OK.getCode(), payment.getStatusCode(), payment.toString());
+        }
+        String report = report();
+        assertEquals(3, reportedPayments(report));
+        assertTrue(report.contains("payments=3"));
+        assertFalse(report.contains("StatusTotal{status=DUPLICATE"));
+    }
+
+    /**
+     * В файле без недействительных строк повтор ID сохраняется со статусом FULL_SAVED, как и остальные платежи,
+     * но в сводке остается дубликатом: в сумму и суммы по плательщикам он не входит.
+     */
+    @Test
+    void testCleanFileSummaryLeavesDuplicatesOutOfAmount() throws IOException, FileProcessingException {
+        assertCleanFileSummary(StatusFinalization.SCAN);
+    }
+
+    @Test
+    void testBulkUpdateCleanFileSummaryLeavesDuplicatesOutOfAmount() throws IOException, FileProcessingException {
+        assertCleanFileSummary(StatusFinalization.BULK_UPDATE);
+    }
+
+    private void assertCleanFileSummary(StatusFinalization statusFinalization)
+            throws IOException, FileProcessingException {
+        parserService(2, true, false, statusFinalization).parseFile(writeFile(8, false));
+
+        List<Payment> payments = stored.payments();
+        assertEquals(8, payments.size());
+        for (Payment payment : payments) {
+            assertEquals(PaymentStatus.FULL_SAVED.getCode(), payment.getStatusCode(), payment.toString());
+            assertEquals(payment.getRecordNumber().equals(String.format("%012d", DUPLICATE_LINE + 1)),
+                    payment.isDuplicate(), payment.toString());
+        }
+
+        ArgumentCaptor<ReconciliationSummary> captor = ArgumentCaptor.forClass(ReconciliationSummary.class);
+        verify(reconciliationService).save(captor.capture());
+        ReconciliationSummary summary = captor.getValue();
+        assertEquals(8, summary.paymentCount());
+        assertEquals(new BigDecimal("22.22"), summary.amount());
+        assertEquals(1, summary.count(PaymentStatus.DUPLICATE));
+        assertEquals(7, summary.count(PaymentStatus.FULL_SAVED));
+        assertEquals(7L, summary.topPayers().get(0).getPaymentCount());
+        assertEquals(new BigDecimal("22.22"), summary.topPayers().get(0).getAmount());
+
+        String report = Files.readString(directory.resolve("ReportSuccess").resolve("Report " + FILE_NAME));
+        assertTrue(report.contains("amount=22.22"));
+        assertTrue(report.contains("StatusTotal{status=DUPLICATE, payments=1}"));
+    }
+}
@@ -1,19 +1,26 @@
 package com.levandr.custompaymentsystem.service.parser;
 
+import com.levandr.custompaymentsystem.entity.FileCheckpoint;
 import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
 import com.levandr.custompaymentsystem.exception.FileProcessingException;
+import com.levandr.custompaymentsystem.service.payment.PaymentIdIndex;
 import com.levandr.custompaymentsystem.service.payment.PaymentService;
+import com.levandr.custompaymentsystem.service.pipeline.IngestPipeline;
 import com.levandr.custompaymentsystem.service.repoter.ReporterService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -26,6 +33,21 @@ class ParserServiceTest {
     @Mock
     private ReporterService reporterService;
 
+    @Mock
+    private ParallelBcpParser parallelBcpParser;
+
+    @Mock
+    private PaymentIdIndex paymentIdIndex;
+
+    @Mock
+    private IngestMetrics ingestMetrics;
+
+    @Mock
+    private IngestPipeline ingestPipeline;
+
+    @Spy
+    private BcpValidation bcpValidation = BcpValidation.defaults();
+
     @InjectMocks
     private ParserService parserService;
 
@@ -124,4 +146,19 @@ class ParserServiceTest {
 
         assertFalse(result);
     }
+
+    @Test
+    void testUncommittedRanges() {
+        List<FileCheckpoint> committed = List.of(
+                new FileCheckpoint(1L, VALID_FILE_NAME, 0L, 100L, 10L, 0L, Instant.now()),
+                new FileCheckpoint(2L, VALID_FILE_NAME, 250L, 400L, 15L, 1L, Instant.now()));
+
+        List<long[]> ranges = ParserService.uncommittedRanges(committed, 500);
+
+        assertEquals(2, ranges.size());
+        assertArrayEquals(new long[]{100, 250}, ranges.get(0));
+        assertArrayEquals(new long[]{400, 500}, ranges.get(1));
+        assertTrue(ParserService.uncommittedRanges(List.of(
+                new FileCheckpoint(1L, VALID_FILE_NAME, 0L, 500L, 50L, 0L, Instant.now())), 500).isEmpty());
+    }
 }
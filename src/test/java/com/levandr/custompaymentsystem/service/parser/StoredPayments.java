@@ -0,0 +1,172 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import com.levandr.custompaymentsystem.entity.FileCheckpoint;
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+import com.levandr.custompaymentsystem.service.payment.PaymentService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище платежей и контрольных точек в памяти вместо БД; блок сохраняется целиком
+ * вместе с контрольной точкой или не сохраняется вовсе.
+ */
+class StoredPayments extends PaymentService {
+
+    private final List<Payment> payments = new ArrayList<>();
+    private final List<FileCheckpoint> checkpoints = new ArrayList<>();
+    private int saves;
+    private int failingSave;
+    private volatile String failingRecord;
+    private volatile String committedRecord;
+    private final CountDownLatch committedBeforeFailure = new CountDownLatch(1);
+    private long nextId = 1;
+
+    StoredPayments() {
+        super(null, new IngestMetrics(new SimpleMeterRegistry()), null, null);
+    }
+
+    /**
+     * Сохранение блока с номером {@code number} (с 1, считая от этого вызова) завершится ошибкой,
+     * как при сбое БД.
+     */
+    synchronized void failSave(int number) {
+        saves = 0;
+        failingSave = number;
+    }
+
+    /**
+     * Блок, начинающийся с записи {@code failingRecord}, завершится ошибкой, но только после того, как
+     * сохранится блок с записью {@code committedRecord}: так параллельное сохранение фиксирует более поздний
+     * диапазон файла раньше, чем падает более ранний.
+     */
+    void failSaveAfter(String failingRecord, String committedRecord) {
+        this.failingRecord = failingRecord;
+        this.committedRecord = committedRecord;
+    }
+
+    synchronized List<Payment> payments() {
+        return List.copyOf(payments);
+    }
+
+    synchronized List<Payment> page(String fileName, long afterId, int pageSize) {
+        return payments.stream()
+                .filter(payment -> payment.getFileName().equals(fileName) && payment.getId() > afterId)
+                .limit(pageSize)
+                .toList();
+    }
+
+    @Override
+    public PaymentBatch saveAll(PaymentBatch batch) {
+        if (isFailingRecord(batch)) {
+            try {
+                committedBeforeFailure.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("БД недоступна");
+        }
+        PaymentBatch saved = store(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.recordNumber(i).equals(committedRecord)) {
+                committedBeforeFailure.countDown();
+            }
+        }
+        return saved;
+    }
+
+    private boolean isFailingRecord(PaymentBatch batch) {
+        return !batch.isEmpty() && batch.recordNumber(0).equals(failingRecord);
+    }
+
+    private synchronized PaymentBatch store(PaymentBatch batch) {
+        if (++saves == failingSave) {
+            throw new IllegalStateException("БД недоступна");
+        }
+        List<Payment> saved = batch.toPayments();
+        for (Payment payment : saved) {
+            payment.setId(nextId++);
+        }
+        batch.assignIds(saved);
+        payments.addAll(saved);
+        if (batch.hasFileRange()) {
+            checkpoints.add(new FileCheckpoint((long) checkpoints.size() + 1, batch.fileName(), batch.rangeFrom(),
+                    batch.rangeTo(), batch.rangeLines(), batch.rangeInvalidLines(), Instant.now()));
+        }
+        return batch;
+    }
+
+    @Override
+    public synchronized int finalizeStatuses(String fileName, boolean hasInvalidLines) {
+        int updated = 0;
+        for (Payment payment : payments) {
+            if (!payment.getFileName().equals(fileName)) {
+                continue;
+            }
+            int status = payment.getStatusCode();
+            if (status == PaymentStatus.OK.getCode() && hasInvalidLines) {
+                payment.setStatusCode(PaymentStatus.PARTIAL_OK.getCode());
+                updated++;
+            } else if (!hasInvalidLines
+                    && (status == PaymentStatus.OK.getCode() || status == PaymentStatus.DUPLICATE.getCode())) {
+                payment.setStatusCode(PaymentStatus.FULL_SAVED.getCode());
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public synchronized List<FileCheckpoint> findCommittedRanges(String fileName) {
+        return checkpoints.stream()
+                .filter(checkpoint -> checkpoint.getFileName().equals(fileName))
+                .sorted(Comparator.comparing(FileCheckpoint::getStartOffset))
+                .toList();
+    }
+
+    @Override
+    public synchronized void clearCheckpoints(String fileName) {
+        checkpoints.removeIf(checkpoint -> checkpoint.getFileName().equals(fileName));
+    }
+
+    @Override
+    public synchronized boolean hasPayments(String fileName) {
+        return payments.stream().anyMatch(payment -> payment.getFileName().equals(fileName));
+    }
+
+    @Override
+    public synchronized int discardFile(String fileName) {
+        clearCheckpoints(fileName);
+        int before = payments.size();
+        payments.removeIf(payment -> payment.getFileName().equals(fileName));
+        return before - payments.size();
+    }
+
+    @Override
+    public synchronized long forEachFileOnlyPaymentId(String fileName, int pageSize, Consumer<String> consumer) {
+        List<Payment> filePayments = page(fileName, 0, Integer.MAX_VALUE).stream()
+                .filter(payment -> payments.stream().noneMatch(other -> !other.getFileName().equals(fileName)
+                        && other.getPaymentId().equals(payment.getPaymentId())))
+                .toList();
+        filePayments.forEach(payment -> consumer.accept(payment.getPaymentId()));
+        return filePayments.size();
+    }
+
+    @Override
+    public synchronized long forEachPaymentId(String fileName, int pageSize, Consumer<String> consumer) {
+        List<Payment> filePayments = page(fileName, 0, Integer.MAX_VALUE).stream()
+                .filter(payment -> !payment.isDuplicate())
+                .toList();
+        filePayments.forEach(payment -> consumer.accept(payment.getPaymentId()));
+        return filePayments.size();
+    }
+}
@@ -0,0 +1,184 @@
+package com.levandr.custompaymentsystem.service.parser;
+
+import com.levandr.custompaymentsystem.entity.FileCheckpoint;
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
+import com.levandr.custompaymentsystem.repository.PaymentEntityRepository;
+import com.levandr.custompaymentsystem.service.ledger.FileLedgerService;
+import com.levandr.custompaymentsystem.service.payment.PaymentIdIndex;
+import com.levandr.custompaymentsystem.service.query.PaymentQueryService;
+import com.levandr.custompaymentsystem.service.repoter.ReporterService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Режим tail на хранилище в памяти ({@link StoredPayments}): дочитывание, продолжение с контрольных
+ * точек на другом узле и завершение файла.
+ */
+class TailIngestServiceTest {
+
+    private static final String FILE_NAME = "BCP_20230101_120000_0001";
+    private static final IngestMetrics METRICS = new IngestMetrics(new SimpleMeterRegistry());
+
+    @TempDir
+    Path directory;
+
+    private final StoredPayments stored = new StoredPayments();
+    private final FileLedgerService fileLedgerService = mock(FileLedgerService.class);
+    private final ReconciliationService reconciliationService = mock(ReconciliationService.class);
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createDirectories(directory.resolve("Input")).resolve(FILE_NAME);
+        when(fileLedgerService.tryStartTail(any())).thenReturn(true);
+    }
+
+    private static String line(int i) {
+        return String.format("%012d 123456789-123456789-123456789-000000000-%010d %-64s 012345678912 %09d.%02d",
+                i + 1, i, "Наименование", i, i % 100);
+    }
+
+    private static long bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private void append(String text) throws IOException {
+        Files.writeString(file, text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Сервис одного запуска узла: свой индекс ID и свое состояние файлов, хранилище общее.
+     */
+    private TailIngestService tailIngestService() {
+        PaymentIdIndex paymentIdIndex = new PaymentIdIndex(null);
+        ReflectionTestUtils.setField(paymentIdIndex, "enabled", true);
+
+        PaymentEntityRepository paymentRepository = mock(PaymentEntityRepository.class);
+        when(paymentRepository.findByFileNameAndIdGreaterThanOrderById(anyString(), anyLong(), any(Pageable.class)))
+                .thenAnswer(invocation -> stored.page(invocation.getArgument(0), invocation.getArgument(1),
+                        invocation.<Pageable>getArgument(2).getPageSize()));
+        ReporterService reporterService = new ReporterService(METRICS, paymentRepository);
+        ReflectionTestUtils.setField(reporterService, "reportErrorDir", directory.resolve("ReportError"));
+        ReflectionTestUtils.setField(reporterService, "reportSuccessDir", directory.resolve("ReportSuccess"));
+        ReflectionTestUtils.setField(reporterService, "pageSize", 2);
+
+        TailIngestService tailIngestService = new TailIngestService(stored, mock(PaymentQueryService.class),
+                paymentIdIndex, fileLedgerService, reporterService, BcpValidation.defaults(), METRICS,
+                reconciliationService);
+        ReflectionTestUtils.setField(tailIngestService, "enabled", true);
+        ReflectionTestUtils.setField(tailIngestService, "chunkSize", 2);
+        ReflectionTestUtils.setField(tailIngestService, "topPayers", 10);
+        ReflectionTestUtils.setField(tailIngestService, "invalidLinesLimit", 20);
+        ReflectionTestUtils.setField(tailIngestService, "invalidLinesSampleEvery", 10000);
+        return tailIngestService;
+    }
+
+    /**
+     * Каждый сохраненный блок несет свой диапазон: контрольная точка пишется тем же вызовом
+     * {@code saveAll}, что и платежи, и диапазоны идут подряд.
+     */
+    @Test
+    void testAppendedLinesAreStoredWithTheirCheckpoints() throws IOException {
+        String complete = line(0) + "\n" + line(1) + "\n" + line(2) + "\n";
+        append(complete + line(3).substring(0, 20));
+        TailIngestService tailIngestService = tailIngestService();
+
+        assertTrue(tailIngestService.ingestAppended(file));
+
+        assertEquals(3, stored.payments().size());
+        List<FileCheckpoint> ranges = stored.findCommittedRanges(FILE_NAME);
+        assertEquals(bytes(complete), ranges.get(ranges.size() - 1).getByteOffset());
+        assertEquals(3, ranges.stream().mapToLong(FileCheckpoint::getLineCount).sum());
+
+        append(line(3).substring(20) + "\n" + line(4) + "\n");
+        assertTrue(tailIngestService.ingestAppended(file));
+
+        assertEquals(5, stored.payments().size());
+        for (Payment payment : stored.payments()) {
+            assertEquals(PaymentStatus.OK.getCode(), payment.getStatusCode());
+        }
+        ranges = stored.findCommittedRanges(FILE_NAME);
+        long position = 0;
+        for (FileCheckpoint range : ranges) {
+            assertEquals(position, range.getStartOffset());
+            position = range.getByteOffset();
+        }
+        assertEquals(Files.size(file), position);
+        verify(fileLedgerService, never()).markDone(any(), any());
+    }
+
+    /**
+     * Узел загрузил начало файла и упал; завершает файл другой узел с пустым индексом и без состояния.
+     * Он продолжает с контрольной точки, находит повтор ID из загруженной части и пересчитывает хеш файла.
+     */
+    @Test
+    void testFileIsFinishedFromCheckpointOnAnotherNode() throws IOException {
+        append(line(0) + "\n" + line(1) + "\n" + line(2) + "\n");
+        tailIngestService().ingestAppended(file);
+        append(line(3) + "\n"
+                + line(4).replace(String.format("-%010d ", 4), String.format("-%010d ", 1)) + "\n"
+                + "invalid line\n"
+                + line(5));
+
+        assertTrue(tailIngestService().finish(file));
+
+        List<Payment> payments = stored.payments();
+        assertEquals(6, payments.size());
+        assertEquals(6, payments.stream().map(Payment::getRecordNumber).distinct().count());
+        for (Payment payment : payments) {
+            PaymentStatus expected = payment.getRecordNumber().equals(String.format("%012d", 5))
+                    ? PaymentStatus.DUPLICATE
+                    : PaymentStatus.PARTIAL_OK;
+            assertEquals(expected.getCode(), payment.getStatusCode(), payment.toString());
+        }
+        assertTrue(stored.findCommittedRanges(FILE_NAME).isEmpty());
+
+        String report = Files.readString(directory.resolve("ReportError").resolve("Report " + FILE_NAME));
+        assertEquals(6, report.lines().filter(line -> line.startsWith("PaymentEntity{")).count());
+        assertTrue(report.contains("invalidLines=1"));
+        assertTrue(report.contains("StatusTotal{status=DUPLICATE, payments=1}"));
+
+        ArgumentCaptor<ReconciliationSummary> summary = ArgumentCaptor.forClass(ReconciliationSummary.class);
+        verify(reconciliationService).save(summary.capture());
+        assertEquals(6, summary.getValue().paymentCount());
+        assertEquals(1, summary.getValue().invalidLines());
+        verify(fileLedgerService).markDone(file, FileLedgerService.hash(file));
+    }
+
+    @Test
+    void testFinishWithoutInvalidLinesMarksFullSaved() throws IOException {
+        append(line(0) + "\n" + line(1) + "\n" + line(2));
+
+        assertTrue(tailIngestService().finish(file));
+
+        assertEquals(3, stored.payments().size());
+        for (Payment payment : stored.payments()) {
+            assertEquals(PaymentStatus.FULL_SAVED.getCode(), payment.getStatusCode());
+        }
+        String report = Files.readString(directory.resolve("ReportSuccess").resolve("Report " + FILE_NAME));
+        assertEquals(3, report.lines().filter(line -> line.startsWith("PaymentEntity{")).count());
+        verify(fileLedgerService).markDone(file, FileLedgerService.hash(file));
+    }
+}
@@ -0,0 +1,55 @@
+package com.levandr.custompaymentsystem.service.payment;
+
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentBatchTest {
+
+    private static final String PAYMENT_ID = "123456789-153456789-123456789-123456789-0012345678";
+
+    @Test
+    void testToPaymentsRestoresFields() {
+        PaymentBatch batch = new PaymentBatch("BCP_20230101_120000_0001", 2);
+        batch.add("000000000001", PAYMENT_ID, "ООО Ромашка", "001234567890", 5, PaymentStatus.OK.getCode());
+
+        Payment payment = batch.toPayments().get(0);
+
+        assertEquals(PAYMENT_ID, payment.getPaymentId());
+        assertEquals("000000000001", payment.getRecordNumber());
+        assertEquals("ООО Ромашка", payment.getCompanyName());
+        assertEquals("001234567890", payment.getPayerInn());
+        assertEquals(new BigDecimal("0.05"), payment.getAmount());
+        assertEquals(PaymentStatus.OK.getCode(), payment.getStatusCode());
+        assertEquals("BCP_20230101_120000_0001", payment.getFileName());
+    }
+
+    @Test
+    void testReportLineMatchesEntity() {
+        PaymentBatch batch = new PaymentBatch("file", 1);
+        batch.add("000000000007", PAYMENT_ID, "Company", "123456789012", 1234567, PaymentStatus.DUPLICATE.getCode());
+        Payment payment = batch.toPayments().get(0);
+        payment.setId(42L);
+        batch.assignIds(List.of(payment));
+
+        StringBuilder line = new StringBuilder();
+        batch.appendTo(line, 0);
+
+        assertEquals(payment.toString(), line.toString());
+    }
+
+    @Test
+    void testAddFailsWhenFull() {
+        PaymentBatch batch = new PaymentBatch("file", 1);
+        batch.add("000000000001", PAYMENT_ID, "Company", "123456789012", 100, PaymentStatus.OK.getCode());
+
+        assertTrue(batch.isFull());
+        assertThrows(IllegalStateException.class, () ->
+                batch.add("000000000002", PAYMENT_ID, "Company", "123456789012", 100, PaymentStatus.OK.getCode()));
+    }
+}
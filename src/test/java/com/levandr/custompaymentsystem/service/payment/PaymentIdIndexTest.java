@@ -0,0 +1,85 @@
+package com.levandr.custompaymentsystem.service.payment;
+
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.repository.PaymentEntityRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PaymentIdIndexTest {
+
+    private static final String FILE_NAME = "BCP_20230101_120000_0001";
+
+    private final PaymentEntityRepository paymentEntityRepository = mock(PaymentEntityRepository.class);
+
+    private static String paymentId(int i) {
+        return String.format("123456789-123456789-123456789-000000000-%010d", i);
+    }
+
+    private PaymentIdIndex index(boolean clusterEnabled) {
+        PaymentIdIndex index = new PaymentIdIndex(paymentEntityRepository);
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "clusterEnabled", clusterEnabled);
+        return index;
+    }
+
+    /**
+     * Блок из трех строк: ID 1 и 2 приняты блоком, ID 1 повторен в третьей строке.
+     */
+    private static PaymentBatch batch(PaymentIdIndex index) {
+        PaymentBatch batch = new PaymentBatch(FILE_NAME, 3);
+        for (int id : new int[]{1, 2, 1}) {
+            boolean registered = index.register(paymentId(id));
+            batch.add(String.format("%012d", batch.size() + 1), paymentId(id), "Наименование", "012345678912", 100,
+                    registered ? PaymentStatus.OK.getCode() : PaymentStatus.DUPLICATE.getCode());
+            if (registered) {
+                batch.markRegistered(batch.size() - 1);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * ID, сохраненный другим узлом после старта этого, индекс не знает; в кластерном режиме
+     * строка с ним становится дубликатом, а ID остается в индексе.
+     */
+    @Test
+    void testIdStoredByAnotherNodeMakesRowDuplicate() {
+        PaymentIdIndex index = index(true);
+        PaymentBatch batch = batch(index);
+        when(paymentEntityRepository.findPaymentIdsInOtherFiles(anyCollection(), eq(FILE_NAME)))
+                .thenReturn(List.of(paymentId(2)));
+        List<String> duplicates = new ArrayList<>();
+
+        index.findStoredDuplicates(batch, duplicates::add);
+
+        verify(paymentEntityRepository).findPaymentIdsInOtherFiles(argThat(ids -> Set.copyOf(ids)
+                .equals(Set.of(paymentId(1), paymentId(2)))), eq(FILE_NAME));
+        assertEquals(List.of(paymentId(2)), duplicates);
+        assertEquals(PaymentStatus.OK.getCode(), batch.statusCode(0));
+        assertEquals(PaymentStatus.DUPLICATE.getCode(), batch.statusCode(1));
+        assertTrue(batch.isDuplicate(1));
+        assertFalse(batch.isRegistered(1));
+        assertFalse(index.register(paymentId(2)));
+    }
+
+    @Test
+    void testStoredIdsAreNotQueriedOutsideCluster() {
+        PaymentIdIndex index = index(false);
+        PaymentBatch batch = batch(index);
+
+        index.findStoredDuplicates(batch, paymentId -> fail(paymentId));
+
+        verify(paymentEntityRepository, never()).findPaymentIdsInOtherFiles(any(), any());
+        assertEquals(PaymentStatus.OK.getCode(), batch.statusCode(1));
+    }
+}
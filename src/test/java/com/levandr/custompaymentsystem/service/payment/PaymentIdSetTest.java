@@ -0,0 +1,90 @@
+package com.levandr.custompaymentsystem.service.payment;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentIdSetTest {
+
+    private static final String PAYMENT_ID = "123456789-153456789-123456789-123456789-1234567890";
+
+    @Test
+    void testAddReportsDuplicates() {
+        PaymentIdSet set = new PaymentIdSet();
+
+        assertTrue(set.add(PAYMENT_ID));
+        assertFalse(set.add(PAYMENT_ID));
+        assertTrue(set.contains(PAYMENT_ID));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void testNineAndTenDigitLastSegmentsDiffer() {
+        PaymentIdSet set = new PaymentIdSet();
+
+        assertTrue(set.add("123456789-153456789-123456789-123456789-012345678"));
+        assertTrue(set.add("123456789-153456789-123456789-123456789-0012345678"));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    void testGrowsBeyondInitialCapacity() {
+        PaymentIdSet set = new PaymentIdSet(4);
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(set.add(String.format("123456789-153456789-123456789-123456789-%010d", i)));
+        }
+
+        assertEquals(10_000, set.size());
+        assertTrue(set.contains("123456789-153456789-123456789-123456789-0000005000"));
+        assertFalse(set.contains("123456789-153456789-123456789-123456789-0000010000"));
+    }
+
+    @Test
+    void testRemoveKeepsProbeChainsIntact() {
+        PaymentIdSet set = new PaymentIdSet(4);
+        for (int i = 0; i < 10_000; i++) {
+            set.add(String.format("123456789-153456789-123456789-123456789-%010d", i));
+        }
+        for (int i = 0; i < 10_000; i += 2) {
+            assertTrue(set.remove(String.format("123456789-153456789-123456789-123456789-%010d", i)));
+        }
+
+        assertEquals(5_000, set.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i % 2 == 1, set.contains(String.format("123456789-153456789-123456789-123456789-%010d", i)));
+        }
+        assertFalse(set.remove("123456789-153456789-123456789-123456789-0000000000"));
+    }
+
+    @Test
+    void testRandomAddsAndRemovesMatchHashSet() {
+        PaymentIdSet set = new PaymentIdSet(16);
+        Set<String> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            String id = String.format("123456789-153456789-123456789-123456789-%010d", random.nextInt(2_000));
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(id), set.add(id));
+            } else {
+                assertEquals(expected.remove(id), set.remove(id));
+            }
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (int i = 0; i < 2_000; i++) {
+            String id = String.format("123456789-153456789-123456789-123456789-%010d", i);
+            assertEquals(expected.contains(id), set.contains(id));
+        }
+    }
+
+    @Test
+    void testRejectsMalformedId() {
+        PaymentIdSet set = new PaymentIdSet();
+
+        assertThrows(IllegalArgumentException.class, () -> set.add("123456789-153456789"));
+    }
+}
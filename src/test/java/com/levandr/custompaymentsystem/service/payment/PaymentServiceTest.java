@@ -1,13 +1,20 @@
 package com.levandr.custompaymentsystem.service.payment;
 
+import com.levandr.custompaymentsystem.entity.FileCheckpoint;
 import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.enums.PersistenceMode;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
+import com.levandr.custompaymentsystem.repository.FileCheckpointRepository;
 import com.levandr.custompaymentsystem.repository.PaymentEntityRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -24,6 +31,15 @@ class PaymentServiceTest {
     @Mock
     private PaymentEntityRepository paymentEntityRepository;
 
+    @Mock
+    private IngestMetrics ingestMetrics;
+
+    @Mock
+    private PostgresCopyWriter postgresCopyWriter;
+
+    @Mock
+    private FileCheckpointRepository fileCheckpointRepository;
+
     @InjectMocks
     private PaymentService paymentService;
 
@@ -64,7 +80,7 @@ class PaymentServiceTest {
     @Test
     void testFindPaymentById() {
         Long paymentId = 1L;
-        Payment payment = new Payment(paymentId, "payment123", "record123", "Company", "123456789", new BigDecimal("100.00"), 1, "file.txt");
+        Payment payment = new Payment(paymentId, "payment123", "record123", "Company", "123456789", new BigDecimal("100.00"), 1, "file.txt", false);
 
         when(paymentEntityRepository.findById(paymentId)).thenReturn(Optional.of(payment));
 
@@ -90,7 +106,7 @@ class PaymentServiceTest {
     }
     @Test
     void testSavePaymentWithInvalidData() {
-        Payment invalidPayment = new Payment(null, null, null, null, null, null, null, null);
+        Payment invalidPayment = new Payment(null, null, null, null, null, null, null, null, false);
 
         when(paymentEntityRepository.save(any(Payment.class))).thenThrow(new IllegalArgumentException("Invalid payment data"));
 
@@ -98,8 +114,8 @@ class PaymentServiceTest {
     }
     @Test
     void testSaveMultiplePayments() {
-        Payment payment1 = new Payment(1L, "payment123", "record123", "Company1", "123456789", new BigDecimal("100.00"), 1, "file1.txt");
-        Payment payment2 = new Payment(2L, "payment124", "record124", "Company2", "987654321", new BigDecimal("200.00"), 1, "file2.txt");
+        Payment payment1 = new Payment(1L, "payment123", "record123", "Company1", "123456789", new BigDecimal("100.00"), 1, "file1.txt", false);
+        Payment payment2 = new Payment(2L, "payment124", "record124", "Company2", "987654321", new BigDecimal("200.00"), 1, "file2.txt", false);
         List<Payment> payments = Arrays.asList(payment1, payment2);
 
         when(paymentEntityRepository.saveAll(payments)).thenReturn(payments);
@@ -115,7 +131,7 @@ class PaymentServiceTest {
     void testSaveManyPayments() {
         List<Payment> payments = new ArrayList<>();
         for (int i = 0; i < 1000; i++) {
-            payments.add(new Payment((long) i, "payment" + i, "record" + i, "Company" + i, "123456789", new BigDecimal("100.00"), 1, "file" + i + ".txt"));
+            payments.add(new Payment((long) i, "payment" + i, "record" + i, "Company" + i, "123456789", new BigDecimal("100.00"), 1, "file" + i + ".txt", false));
         }
 
         when(paymentEntityRepository.saveAll(payments)).thenReturn(payments);
@@ -124,4 +140,78 @@ class PaymentServiceTest {
 
         assertEquals(1000, savedPayments.size());
     }
+
+    @Test
+    void testCreatePaymentDoesNotSave() {
+        Payment created = paymentService.createPayment("payment123", "record123", "Company",
+                "123456789", new BigDecimal("100.00"), 1, "file.txt");
+
+        assertNull(created.getId());
+        assertEquals("payment123", created.getPaymentId());
+        assertEquals("file.txt", created.getFileName());
+        verifyNoInteractions(paymentEntityRepository);
+    }
+
+    @Test
+    void testSaveBatchUsesCopyInCopyMode() {
+        ReflectionTestUtils.setField(paymentService, "persistenceMode", PersistenceMode.COPY);
+        PaymentBatch batch = new PaymentBatch("file.txt", 1);
+        batch.add("000000000001", "123456789-123456789-123456789-123456789-123456789", "Company",
+                "123456789012", 10000, 1);
+        when(postgresCopyWriter.write(batch)).thenReturn(batch);
+
+        assertSame(batch, paymentService.saveAll(batch));
+        verify(postgresCopyWriter).write(batch);
+        verifyNoInteractions(paymentEntityRepository);
+    }
+
+    @Test
+    void testSaveBatchStoresCheckpointOfItsRange() {
+        ReflectionTestUtils.setField(paymentService, "persistenceMode", PersistenceMode.COPY);
+        PaymentBatch batch = new PaymentBatch("file.txt", 1);
+        batch.add("000000000001", "123456789-123456789-123456789-123456789-123456789", "Company",
+                "123456789012", 10000, 1);
+        batch.setFileRange(100, 250, 3);
+        when(postgresCopyWriter.write(batch)).thenReturn(batch);
+
+        paymentService.saveAll(batch);
+
+        ArgumentCaptor<FileCheckpoint> checkpoint = ArgumentCaptor.forClass(FileCheckpoint.class);
+        verify(fileCheckpointRepository).save(checkpoint.capture());
+        assertEquals("file.txt", checkpoint.getValue().getFileName());
+        assertEquals(100L, checkpoint.getValue().getStartOffset());
+        assertEquals(250L, checkpoint.getValue().getByteOffset());
+        assertEquals(3L, checkpoint.getValue().getLineCount());
+        assertEquals(2L, checkpoint.getValue().getInvalidLines());
+    }
+
+    @Test
+    void testSaveBatchWithoutRangeStoresNoCheckpoint() {
+        ReflectionTestUtils.setField(paymentService, "persistenceMode", PersistenceMode.COPY);
+        PaymentBatch batch = new PaymentBatch("file.txt", 1);
+        when(postgresCopyWriter.write(batch)).thenReturn(batch);
+
+        paymentService.saveAll(batch);
+
+        verifyNoInteractions(fileCheckpointRepository);
+    }
+
+    @Test
+    void testFinalizeStatusesWithInvalidLinesMarksOkAsPartial() {
+        when(paymentEntityRepository.updateStatusCode("file.txt", PaymentStatus.OK.getCode(),
+                PaymentStatus.PARTIAL_OK.getCode())).thenReturn(7);
+
+        assertEquals(7, paymentService.finalizeStatuses("file.txt", true));
+        verify(paymentEntityRepository, times(1)).updateStatusCode(anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void testFinalizeStatusesWithoutInvalidLinesMarksAllFullSaved() {
+        when(paymentEntityRepository.updateStatusCode("file.txt", PaymentStatus.OK.getCode(),
+                PaymentStatus.FULL_SAVED.getCode())).thenReturn(5);
+        when(paymentEntityRepository.updateStatusCode("file.txt", PaymentStatus.DUPLICATE.getCode(),
+                PaymentStatus.FULL_SAVED.getCode())).thenReturn(2);
+
+        assertEquals(7, paymentService.finalizeStatuses("file.txt", false));
+    }
 }
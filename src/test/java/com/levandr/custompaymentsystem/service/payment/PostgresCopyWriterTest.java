@@ -0,0 +1,131 @@
+package com.levandr.custompaymentsystem.service.payment;
+
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import javax.sql.DataSource;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PostgresCopyWriterTest {
+
+    private static final String FILE_NAME = "BCP_20230101_120000_0001";
+
+    private final Connection connection = mock(Connection.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+
+    /**
+     * Каждый запрос резервирования возвращает очередную группу значений {@code payment_seq}.
+     */
+    private void sequenceValues(long[]... queries) throws SQLException {
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        ResultSet[] resultSets = new ResultSet[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            resultSets[i] = resultSet(queries[i]);
+        }
+        when(statement.executeQuery()).thenReturn(resultSets[0],
+                Arrays.copyOfRange(resultSets, 1, resultSets.length));
+    }
+
+    private static ResultSet resultSet(long... values) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        int[] row = {-1};
+        when(resultSet.next()).thenAnswer(invocation -> ++row[0] < values.length);
+        when(resultSet.getLong(1)).thenAnswer(invocation -> values[row[0]]);
+        return resultSet;
+    }
+
+    private static PaymentBatch batch(int size) {
+        PaymentBatch batch = new PaymentBatch(FILE_NAME, size);
+        for (int i = 0; i < size; i++) {
+            batch.add(String.format("%012d", i + 1), String.format("123456789-123456789-123456789-000000000-%010d", i),
+                    "Наименование", "001234567890", 1205, 0);
+        }
+        return batch;
+    }
+
+    @Test
+    void testCsvRowQuotesTextFields() {
+        PaymentBatch batch = new PaymentBatch(FILE_NAME, 1);
+        batch.add("000000000001", "123456789-123456789-123456789-123456789-123456789",
+                "ООО \"Ромашка\", филиал", "001234567890", 1205, 2);
+        batch.assignIds(new long[]{101});
+
+        StringBuilder csv = new StringBuilder();
+        PostgresCopyWriter.appendCsv(csv, batch, 0);
+
+        assertEquals("101,\"123456789-123456789-123456789-123456789-123456789\",\"000000000001\","
+                + "\"ООО \"\"Ромашка\"\", филиал\",\"001234567890\",12.05,2,\"BCP_20230101_120000_0001\",false\n",
+                csv.toString());
+    }
+
+    /**
+     * Первое значение новой последовательности (1) дает один ID, остальные добираются вторым запросом.
+     */
+    @Test
+    void testFirstSequenceValueGivesSingleIdAndRestIsFetchedAgain() throws SQLException {
+        sequenceValues(new long[]{1}, new long[]{101});
+
+        long[] ids = PostgresCopyWriter.reserveIds(connection, 3);
+
+        assertArrayEquals(new long[]{1, 2, 3}, ids);
+        verify(statement, times(2)).setInt(1, 1);
+        verify(statement, times(2)).executeQuery();
+    }
+
+    @Test
+    void testSequenceValueGivesRangeEndingWithIt() throws SQLException {
+        sequenceValues(new long[]{101});
+
+        long[] ids = PostgresCopyWriter.reserveIds(connection, 100);
+
+        assertArrayEquals(LongStream.rangeClosed(2, 101).toArray(), ids);
+        verify(statement).setInt(1, 1);
+        verify(statement).executeQuery();
+    }
+
+    /**
+     * 250 ID занимают три значения последовательности, из последнего диапазона берется половина.
+     */
+    @Test
+    void testCountNotMultipleOfAllocationSizeTakesPartOfLastRange() throws SQLException {
+        sequenceValues(new long[]{201, 301, 401});
+
+        long[] ids = PostgresCopyWriter.reserveIds(connection, 250);
+
+        assertArrayEquals(LongStream.rangeClosed(102, 351).toArray(), ids);
+        verify(statement).setInt(1, 3);
+        verify(statement).executeQuery();
+    }
+
+    @Test
+    void testCopyWritingFewerRowsThanBatchFails() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        PGConnection pgConnection = mock(PGConnection.class);
+        CopyManager copyManager = mock(CopyManager.class);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyIn(anyString(), any(Reader.class))).thenReturn(1L);
+        sequenceValues(new long[]{101});
+        PaymentBatch batch = batch(2);
+
+        assertThrows(DataAccessResourceFailureException.class, () -> new PostgresCopyWriter(dataSource).write(batch));
+
+        assertEquals(2, batch.id(0));
+        assertEquals(3, batch.id(1));
+        verify(connection).close();
+    }
+}
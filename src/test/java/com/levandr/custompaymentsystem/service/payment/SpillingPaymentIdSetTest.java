@@ -0,0 +1,58 @@
+package com.levandr.custompaymentsystem.service.payment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillingPaymentIdSetTest {
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void testFindsDuplicatesAcrossSpilledTables() throws IOException {
+        try (SpillingPaymentIdSet set = new SpillingPaymentIdSet(4096, spillDirectory)) {
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(set.add(paymentId(i)));
+            }
+
+            assertTrue(set.spilledTables() > 0);
+            assertTrue(set.memoryBytes() <= 4096);
+            assertEquals(1000, set.size());
+            assertFalse(set.add(paymentId(0)));
+            assertFalse(set.add(paymentId(500)));
+            assertFalse(set.add(paymentId(999)));
+            assertTrue(set.add(paymentId(1000)));
+            assertEquals(set.spilledTables(), countFiles());
+        }
+
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void testStaysInMemoryWithinBudget() {
+        try (SpillingPaymentIdSet set = new SpillingPaymentIdSet(1 << 20, spillDirectory)) {
+            for (int i = 0; i < 1000; i++) {
+                set.add(paymentId(i));
+            }
+
+            assertEquals(0, set.spilledTables());
+        }
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.count();
+        }
+    }
+
+    private static String paymentId(int number) {
+        return String.format("123456789-153456789-123456789-123456789-%010d", number);
+    }
+}
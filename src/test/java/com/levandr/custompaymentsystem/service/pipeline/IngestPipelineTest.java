@@ -0,0 +1,219 @@
+package com.levandr.custompaymentsystem.service.pipeline;
+
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+import com.levandr.custompaymentsystem.service.payment.PaymentIdIndex;
+import com.levandr.custompaymentsystem.service.payment.PaymentService;
+import com.levandr.custompaymentsystem.service.query.PaymentQueryService;
+import com.levandr.custompaymentsystem.service.repoter.ReportSink;
+import com.levandr.custompaymentsystem.service.repoter.ReporterService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationService;
+import com.levandr.custompaymentsystem.service.summary.ReconciliationSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IngestPipelineTest {
+
+    private static final String FILE_NAME = "BCP_20230101_120000_0001";
+    private static final int QUEUE_CAPACITY = 2;
+
+    private final PaymentService paymentService = mock(PaymentService.class);
+    private final ReporterService reporterService = mock(ReporterService.class);
+    private final PaymentIdIndex paymentIdIndex = mock(PaymentIdIndex.class);
+    private final ReportSink report = mock(ReportSink.class);
+    private final List<Long> reported = Collections.synchronizedList(new ArrayList<>());
+    private IngestPipeline pipeline;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        pipeline = new IngestPipeline(paymentService, reporterService, mock(PaymentQueryService.class),
+                mock(ReconciliationService.class), paymentIdIndex);
+        ReflectionTestUtils.setField(pipeline, "persistParallelism", 4);
+        ReflectionTestUtils.setField(pipeline, "persistQueueCapacity", QUEUE_CAPACITY);
+        ReflectionTestUtils.setField(pipeline, "reportParallelism", 1);
+        ReflectionTestUtils.setField(pipeline, "reportQueueCapacity", QUEUE_CAPACITY);
+        ReflectionTestUtils.setField(pipeline, "pageSize", 100);
+        pipeline.init();
+
+        when(paymentService.saveAll(any(PaymentBatch.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(paymentIdIndex.isEnabled()).thenReturn(true);
+        doAnswer(invocation -> reported.add(Long.parseLong(invocation.<PaymentBatch>getArgument(1).recordNumber(0))))
+                .when(reporterService).appendReport(eq(report), any(PaymentBatch.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    private static PaymentBatch chunk(int number) {
+        PaymentBatch batch = new PaymentBatch(FILE_NAME, 1);
+        batch.add(String.format("%012d", number), "123456789-153456789-123456789-123456789-" + String.format("%010d", number),
+                "Company", "123456789012", number * 100L, PaymentStatus.OK.getCode());
+        return batch;
+    }
+
+    private static PaymentBatch checkpointedChunk(int number) {
+        PaymentBatch batch = chunk(number);
+        batch.setFileRange(number * 100L, number * 100L + 100, 1);
+        return batch;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Условие не выполнено за 5 секунд");
+            Thread.sleep(10);
+        }
+    }
+
+    private static ReconciliationSummary summary() {
+        return new ReconciliationSummary(FILE_NAME, 10);
+    }
+
+    @Test
+    void testChunksAreReportedInFileOrder() throws Exception {
+        when(paymentService.saveAll(any(PaymentBatch.class))).thenAnswer(invocation -> {
+            PaymentBatch batch = invocation.getArgument(0);
+            Thread.sleep((10 - Long.parseLong(batch.recordNumber(0))) * 3);
+            return batch;
+        });
+        IngestPipeline.FileJob job = pipeline.start(FILE_NAME, report);
+
+        for (int i = 1; i <= 10; i++) {
+            job.submit(chunk(i));
+        }
+        job.complete(summary()).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), reported);
+        verify(report).commit();
+        verify(paymentService, never()).discardFile(any());
+    }
+
+    /**
+     * Отчет стоит на первом блоке: после {@code persist + report queue-capacity} блоков поток разбора ждет,
+     * а не копит сохраненные блоки в памяти.
+     */
+    @Test
+    void testSubmitWaitsWhileReportStageIsBehind() throws Exception {
+        CountDownLatch reportReleased = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            reportReleased.await();
+            return reported.add(Long.parseLong(invocation.<PaymentBatch>getArgument(1).recordNumber(0)));
+        }).when(reporterService).appendReport(eq(report), any(PaymentBatch.class));
+        IngestPipeline.FileJob job = pipeline.start(FILE_NAME, report);
+        AtomicInteger submitted = new AtomicInteger();
+
+        Thread parser = new Thread(() -> {
+            for (int i = 1; i <= 6; i++) {
+                job.submit(chunk(i));
+                submitted.incrementAndGet();
+            }
+        });
+        parser.start();
+        await(() -> submitted.get() == 2 * QUEUE_CAPACITY);
+        Thread.sleep(200);
+        assertEquals(2 * QUEUE_CAPACITY, submitted.get());
+        assertTrue(parser.isAlive());
+
+        reportReleased.countDown();
+        parser.join(5000);
+        job.complete(summary()).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), reported);
+    }
+
+    @Test
+    void testFailedSaveDiscardsChunksSavedWithoutCheckpoints() {
+        PaymentBatch failing = chunk(3);
+        when(paymentService.saveAll(failing)).thenThrow(new IllegalStateException("БД недоступна"));
+        IngestPipeline.FileJob job = pipeline.start(FILE_NAME, report);
+
+        job.submit(chunk(1));
+        job.submit(chunk(2));
+        job.submit(failing);
+        job.submit(chunk(4));
+
+        assertThrows(ExecutionException.class, () -> job.complete(summary()).get(5, TimeUnit.SECONDS));
+        verify(paymentIdIndex).unregister(failing);
+        verify(paymentService).forEachFileOnlyPaymentId(eq(FILE_NAME), eq(100), any());
+        verify(paymentService).discardFile(FILE_NAME);
+        verify(report, never()).commit();
+    }
+
+    @Test
+    void testFailedSaveKeepsCheckpointedChunksForResume() {
+        PaymentBatch failing = checkpointedChunk(3);
+        when(paymentService.saveAll(failing)).thenThrow(new IllegalStateException("БД недоступна"));
+        IngestPipeline.FileJob job = pipeline.startStored(FILE_NAME, report);
+
+        job.submit(checkpointedChunk(1));
+        job.submit(checkpointedChunk(2));
+        job.submit(failing);
+
+        assertThrows(ExecutionException.class, () -> job.complete(summary(), false).get(5, TimeUnit.SECONDS));
+        verify(paymentIdIndex).unregister(failing);
+        verify(paymentService, never()).discardFile(any());
+    }
+
+    @Test
+    void testAbortWaitsForSavesInFlightBeforeDiscardingThem() throws Exception {
+        CountDownLatch saveReleased = new CountDownLatch(1);
+        when(paymentService.saveAll(any(PaymentBatch.class))).thenAnswer(invocation -> {
+            saveReleased.await();
+            return invocation.getArgument(0);
+        });
+        IngestPipeline.FileJob job = pipeline.start(FILE_NAME, report);
+        job.submit(chunk(1));
+
+        Thread aborting = new Thread(job::abort);
+        aborting.start();
+        Thread.sleep(100);
+        verify(paymentService, never()).discardFile(any());
+
+        saveReleased.countDown();
+        aborting.join(5000);
+        assertFalse(aborting.isAlive());
+        verify(paymentService).discardFile(FILE_NAME);
+        verify(report).close();
+    }
+
+    @Test
+    void testSubmitAfterShutdownFailsInsteadOfHanging() {
+        IngestPipeline.FileJob job = pipeline.start(FILE_NAME, report);
+        PaymentBatch chunk = chunk(1);
+        pipeline.shutdown();
+
+        assertThrows(RejectedExecutionException.class, () -> job.submit(chunk));
+        verify(paymentIdIndex).unregister(chunk);
+    }
+
+    @Test
+    void testCompleteAfterShutdownFailsInsteadOfHanging() throws Exception {
+        IngestPipeline.FileJob job = pipeline.start(FILE_NAME, report);
+        job.submit(chunk(1));
+        pipeline.shutdown();
+
+        assertThrows(ExecutionException.class, () -> job.complete(summary()).get(5, TimeUnit.SECONDS));
+        verify(report, never()).commit();
+        verify(report).close();
+    }
+}
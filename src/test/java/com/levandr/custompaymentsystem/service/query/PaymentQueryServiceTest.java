@@ -0,0 +1,76 @@
+package com.levandr.custompaymentsystem.service.query;
+
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
+import com.levandr.custompaymentsystem.repository.PaymentEntityRepository;
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentQueryServiceTest {
+
+    private static final String PAYMENT_ID = "123456789-123456789-123456789-123456789-123456789";
+    private static final String FILE_NAME = "BCP_20230101_120000_0001";
+
+    @Mock
+    private PaymentEntityRepository paymentEntityRepository;
+
+    @Mock
+    private IngestMetrics ingestMetrics;
+
+    @InjectMocks
+    private PaymentQueryService paymentQueryService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(paymentQueryService, "maximumSize", 100L);
+        ReflectionTestUtils.setField(paymentQueryService, "ttlSeconds", 60L);
+        paymentQueryService.init();
+    }
+
+    @Test
+    void testRepeatedLookupIsServedFromCache() {
+        when(paymentEntityRepository.findAllByPaymentIdOrderById(PAYMENT_ID)).thenReturn(List.of(payment()));
+
+        assertEquals(1, paymentQueryService.findByPaymentId(PAYMENT_ID).size());
+        assertEquals(1, paymentQueryService.findByPaymentId(PAYMENT_ID).size());
+
+        verify(paymentEntityRepository, times(1)).findAllByPaymentIdOrderById(PAYMENT_ID);
+    }
+
+    @Test
+    void testSavedBatchEvictsItsEntries() {
+        when(paymentEntityRepository.findAllByPaymentIdOrderById(PAYMENT_ID)).thenReturn(List.of(payment()));
+        when(paymentEntityRepository.findByFileNameOrderById(eq(FILE_NAME), any())).thenReturn(List.of(payment()));
+        paymentQueryService.findByPaymentId(PAYMENT_ID);
+        paymentQueryService.findByFileName(FILE_NAME, 0, 100);
+
+        PaymentBatch batch = new PaymentBatch(FILE_NAME, 1);
+        batch.add("000000000001", PAYMENT_ID, "Company", "123456789012", 100, 2);
+        paymentQueryService.evict(batch);
+        paymentQueryService.findByPaymentId(PAYMENT_ID);
+        paymentQueryService.findByFileName(FILE_NAME, 0, 100);
+
+        verify(paymentEntityRepository, times(2)).findAllByPaymentIdOrderById(PAYMENT_ID);
+        verify(paymentEntityRepository, times(2)).findByFileNameOrderById(eq(FILE_NAME), any());
+    }
+
+    private static Payment payment() {
+        return new Payment(1L, PAYMENT_ID, "000000000001", "Company", "123456789012",
+                new BigDecimal("1.00"), 2, FILE_NAME, false);
+    }
+}
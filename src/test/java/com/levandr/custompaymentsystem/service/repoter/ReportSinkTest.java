@@ -0,0 +1,67 @@
+package com.levandr.custompaymentsystem.service.repoter;
+
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportSinkTest {
+
+    @TempDir
+    Path directory;
+
+    private ReportSink openSink() throws IOException {
+        return new ReportSink(directory.resolve("tmp/Report BCP.part"),
+                directory.resolve("success/Report BCP"), directory.resolve("error/Report BCP"));
+    }
+
+    private static Payment payment(long id, PaymentStatus status) {
+        return new Payment(id, "payment" + id, "record" + id, "Company", "123456789",
+                new BigDecimal("100.00"), status.getCode(), "BCP", status == PaymentStatus.DUPLICATE);
+    }
+
+    @Test
+    void testFullSavedReportGoesToSuccess() throws IOException {
+        try (ReportSink sink = openSink()) {
+            sink.append(List.of(payment(1, PaymentStatus.FULL_SAVED)));
+            sink.append(List.of(payment(2, PaymentStatus.FULL_SAVED)));
+            assertFalse(Files.exists(directory.resolve("success/Report BCP")));
+
+            assertEquals(directory.resolve("success/Report BCP"), sink.commit());
+        }
+
+        assertEquals(2, Files.readAllLines(directory.resolve("success/Report BCP")).size());
+        assertFalse(Files.exists(directory.resolve("tmp/Report BCP.part")));
+    }
+
+    @Test
+    void testReportWithPartialStatusGoesToError() throws IOException {
+        try (ReportSink sink = openSink()) {
+            sink.append(List.of(payment(1, PaymentStatus.PARTIAL_OK)));
+            sink.append(List.of(payment(2, PaymentStatus.DUPLICATE)));
+            sink.commit();
+        }
+
+        assertTrue(Files.exists(directory.resolve("error/Report BCP")));
+        assertFalse(Files.exists(directory.resolve("success/Report BCP")));
+    }
+
+    @Test
+    void testUncommittedReportIsDeleted() throws IOException {
+        try (ReportSink sink = openSink()) {
+            sink.append(List.of(payment(1, PaymentStatus.FULL_SAVED)));
+        }
+
+        assertFalse(Files.exists(directory.resolve("tmp/Report BCP.part")));
+        assertFalse(Files.exists(directory.resolve("success/Report BCP")));
+        assertFalse(Files.exists(directory.resolve("error/Report BCP")));
+    }
+}
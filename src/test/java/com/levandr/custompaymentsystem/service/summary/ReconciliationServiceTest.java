@@ -0,0 +1,149 @@
+package com.levandr.custompaymentsystem.service.summary;
+
+import com.levandr.custompaymentsystem.entity.DailySummary;
+import com.levandr.custompaymentsystem.entity.FileSummary;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.repository.DailySummaryRepository;
+import com.levandr.custompaymentsystem.repository.FileSummaryRepository;
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReconciliationServiceTest {
+
+    private static final String FILE_NAME = "BCP_20230115_120000_0001";
+    private static final LocalDate DATE = LocalDate.of(2023, 1, 15);
+    private static final String PAYMENT_ID = "123456789-153456789-123456789-123456789-0012345678";
+
+    @Mock
+    private FileSummaryRepository fileSummaryRepository;
+
+    @Mock
+    private DailySummaryRepository dailySummaryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private ReconciliationService reconciliationService;
+
+    @BeforeEach
+    void setUp() {
+        when(fileSummaryRepository.save(any(FileSummary.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private static ReconciliationSummary summary() {
+        PaymentBatch batch = new PaymentBatch(FILE_NAME, 3);
+        batch.add("000000000001", PAYMENT_ID, "A", "000000000001", 1000, PaymentStatus.PARTIAL_OK.getCode());
+        batch.add("000000000002", PAYMENT_ID, "B", "000000000002", 250, PaymentStatus.PARTIAL_OK.getCode());
+        batch.add("000000000003", PAYMENT_ID, "B", "000000000002", 250, PaymentStatus.DUPLICATE.getCode());
+        ReconciliationSummary summary = new ReconciliationSummary(FILE_NAME, 10);
+        summary.add(batch);
+        summary.setInvalidLines(1);
+        return summary;
+    }
+
+    /**
+     * Итоги {@link #summary()}: 3 платежа, сумма без дубликата, 2 PARTIAL_OK, 1 DUPLICATE, 1 недействительная строка.
+     */
+    private void verifyAddedToDay(int times) {
+        verify(dailySummaryRepository, times(times)).add(eq(DATE), eq(1L), eq(3L), eq(new BigDecimal("12.50")),
+                eq(0L), eq(2L), eq(1L), eq(1L), any());
+    }
+
+    @Test
+    void testFirstFileOfDayCreatesDayRowAndAddsToIt() {
+        when(fileSummaryRepository.findByFileName(FILE_NAME)).thenReturn(Optional.empty());
+        when(dailySummaryRepository.add(eq(DATE), anyLong(), anyLong(), any(), anyLong(), anyLong(), anyLong(),
+                anyLong(), any())).thenReturn(0, 1);
+
+        FileSummary saved = reconciliationService.save(summary());
+
+        assertEquals(new BigDecimal("12.50"), saved.getAmount());
+        assertEquals(3L, saved.getPaymentCount());
+        assertEquals(1L, saved.getDuplicateCount());
+        ArgumentCaptor<DailySummary> day = ArgumentCaptor.forClass(DailySummary.class);
+        verify(dailySummaryRepository).saveAndFlush(day.capture());
+        assertEquals(DATE, day.getValue().getBusinessDate());
+        assertEquals(0L, day.getValue().getFileCount());
+        assertEquals(0, BigDecimal.ZERO.compareTo(day.getValue().getAmount()));
+        verifyAddedToDay(2);
+        verify(transactionManager).commit(any());
+    }
+
+    /**
+     * Строку дня одновременно вставил другой узел: нарушение уникальности не срывает сохранение,
+     * итоги файла прибавляются к его строке.
+     */
+    @Test
+    void testDayRowCreatedConcurrentlyIsAddedTo() {
+        when(fileSummaryRepository.findByFileName(FILE_NAME)).thenReturn(Optional.empty());
+        when(dailySummaryRepository.add(eq(DATE), anyLong(), anyLong(), any(), anyLong(), anyLong(), anyLong(),
+                anyLong(), any())).thenReturn(0, 1);
+        when(dailySummaryRepository.saveAndFlush(any(DailySummary.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_daily_summary_business_date"));
+
+        FileSummary saved = reconciliationService.save(summary());
+
+        assertEquals(FILE_NAME, saved.getFileName());
+        verifyAddedToDay(2);
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void testMissingDayRowAfterCreateFails() {
+        when(fileSummaryRepository.findByFileName(FILE_NAME)).thenReturn(Optional.empty());
+        when(dailySummaryRepository.add(eq(DATE), anyLong(), anyLong(), any(), anyLong(), anyLong(), anyLong(),
+                anyLong(), any())).thenReturn(0);
+
+        assertThrows(IllegalStateException.class, () -> reconciliationService.save(summary()));
+    }
+
+    /**
+     * Повторная загрузка файла: прежние итоги вычитаются из дня, новые прибавляются, строка дня не создается.
+     */
+    @Test
+    void testReloadedFileReplacesItsTotalsInDay() {
+        FileSummary previous = new FileSummary();
+        previous.setFileName(FILE_NAME);
+        previous.setBusinessDate(DATE);
+        previous.setPaymentCount(3L);
+        previous.setAmount(new BigDecimal("12.50"));
+        previous.setFullSavedCount(0L);
+        previous.setPartialOkCount(2L);
+        previous.setDuplicateCount(1L);
+        previous.setInvalidLines(1L);
+        when(fileSummaryRepository.findByFileName(FILE_NAME)).thenReturn(Optional.of(previous));
+        when(dailySummaryRepository.add(eq(DATE), anyLong(), anyLong(), any(), anyLong(), anyLong(), anyLong(),
+                anyLong(), any())).thenReturn(1);
+
+        reconciliationService.save(summary());
+
+        InOrder order = inOrder(dailySummaryRepository);
+        order.verify(dailySummaryRepository).add(eq(DATE), eq(-1L), eq(-3L), eq(new BigDecimal("-12.50")),
+                eq(0L), eq(-2L), eq(-1L), eq(-1L), any());
+        order.verify(dailySummaryRepository).add(eq(DATE), eq(1L), eq(3L), eq(new BigDecimal("12.50")),
+                eq(0L), eq(2L), eq(1L), eq(1L), any());
+        verify(dailySummaryRepository, never()).saveAndFlush(any());
+        verifyNoInteractions(transactionManager);
+    }
+}
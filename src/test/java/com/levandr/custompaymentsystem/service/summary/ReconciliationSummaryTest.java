@@ -0,0 +1,118 @@
+package com.levandr.custompaymentsystem.service.summary;
+
+import com.levandr.custompaymentsystem.entity.PayerTotal;
+import com.levandr.custompaymentsystem.entity.Payment;
+import com.levandr.custompaymentsystem.enums.PaymentStatus;
+import com.levandr.custompaymentsystem.service.payment.PaymentBatch;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReconciliationSummaryTest {
+
+    private static final String FILE_NAME = "BCP_20230115_120000_0001";
+    private static final String PAYMENT_ID = "123456789-153456789-123456789-123456789-0012345678";
+
+    @Test
+    void testTotalsAreExactInCents() {
+        PaymentBatch batch = new PaymentBatch(FILE_NAME, 4);
+        batch.add("000000000001", PAYMENT_ID, "A", "000000000001", 10, PaymentStatus.FULL_SAVED.getCode());
+        batch.add("000000000002", PAYMENT_ID, "B", "000000000002", 20, PaymentStatus.FULL_SAVED.getCode());
+        batch.add("000000000003", PAYMENT_ID, "C", "000000000001", 10_000_000_000_01L, PaymentStatus.FULL_SAVED.getCode());
+        batch.add("000000000004", PAYMENT_ID, "C", "000000000001", 10_000_000_000_01L, PaymentStatus.DUPLICATE.getCode());
+        ReconciliationSummary summary = new ReconciliationSummary(FILE_NAME, 10);
+
+        summary.add(batch);
+
+        assertEquals(4, summary.paymentCount());
+        assertEquals(new BigDecimal("10000000000.31"), summary.amount());
+        assertEquals(3, summary.count(PaymentStatus.FULL_SAVED));
+        assertEquals(1, summary.count(PaymentStatus.DUPLICATE));
+        assertEquals(0, summary.count(PaymentStatus.PARTIAL_OK));
+        assertEquals(LocalDate.of(2023, 1, 15), summary.businessDate());
+    }
+
+    @Test
+    void testDuplicatesAreCountedButNotSummed() {
+        PaymentBatch batch = new PaymentBatch(FILE_NAME, 2);
+        batch.add("000000000001", PAYMENT_ID, "A", "000000000001", 1500, PaymentStatus.PARTIAL_OK.getCode());
+        batch.add("000000000002", PAYMENT_ID, "A", "000000000001", 1500, PaymentStatus.DUPLICATE.getCode());
+        ReconciliationSummary summary = new ReconciliationSummary(FILE_NAME, 10);
+
+        summary.add(batch);
+
+        assertEquals(2, summary.paymentCount());
+        assertEquals(1, summary.count(PaymentStatus.DUPLICATE));
+        assertEquals(new BigDecimal("15.00"), summary.amount());
+        assertEquals(1L, summary.topPayers().get(0).getPaymentCount());
+        assertEquals(new BigDecimal("15.00"), summary.topPayers().get(0).getAmount());
+    }
+
+    @Test
+    void testTopPayersOrderedByAmount() {
+        PaymentBatch batch = new PaymentBatch(FILE_NAME, 3000);
+        for (int i = 0; i < 3000; i++) {
+            batch.add("000000000001", PAYMENT_ID, "A", String.format("%012d", i % 1500), i,
+                    PaymentStatus.FULL_SAVED.getCode());
+        }
+        ReconciliationSummary summary = new ReconciliationSummary(FILE_NAME, 2);
+
+        summary.add(batch);
+        List<PayerTotal> top = summary.topPayers();
+
+        assertEquals(2, top.size());
+        assertEquals("000000001499", top.get(0).getPayerInn());
+        assertEquals(2L, top.get(0).getPaymentCount());
+        assertEquals(new BigDecimal("44.98"), top.get(0).getAmount());
+        assertEquals("000000001498", top.get(1).getPayerInn());
+    }
+
+    @Test
+    void testTopPayersDisabled() {
+        ReconciliationSummary summary = new ReconciliationSummary("payments.txt", 0);
+
+        assertTrue(summary.topPayers().isEmpty());
+        assertEquals(LocalDate.now(), summary.businessDate());
+    }
+
+    /**
+     * В файле без недействительных строк статус дубликата заменяется на FULL_SAVED до того, как блок попадает
+     * в сводку; дубликатом его оставляет отметка строки.
+     */
+    @Test
+    void testDuplicateRewrittenToFullSavedIsStillLeftOutOfAmount() {
+        PaymentBatch batch = new PaymentBatch(FILE_NAME, 2);
+        batch.add("000000000001", PAYMENT_ID, "A", "000000000001", 1500, PaymentStatus.OK.getCode());
+        batch.add("000000000002", PAYMENT_ID, "A", "000000000001", 1500, PaymentStatus.DUPLICATE.getCode());
+        batch.setStatusCode(0, PaymentStatus.FULL_SAVED.getCode());
+        batch.setStatusCode(1, PaymentStatus.FULL_SAVED.getCode());
+        ReconciliationSummary summary = new ReconciliationSummary(FILE_NAME, 10);
+
+        summary.add(batch);
+
+        assertEquals(2, summary.paymentCount());
+        assertEquals(1, summary.count(PaymentStatus.FULL_SAVED));
+        assertEquals(1, summary.count(PaymentStatus.DUPLICATE));
+        assertEquals(new BigDecimal("15.00"), summary.amount());
+        assertEquals(1L, summary.topPayers().get(0).getPaymentCount());
+    }
+
+    @Test
+    void testStoredDuplicateIsLeftOutOfAmount() {
+        ReconciliationSummary summary = new ReconciliationSummary(FILE_NAME, 10);
+
+        summary.add(new Payment(1L, PAYMENT_ID, "000000000001", "A", "000000000001", new BigDecimal("15.00"),
+                PaymentStatus.FULL_SAVED.getCode(), FILE_NAME, false));
+        summary.add(new Payment(2L, PAYMENT_ID, "000000000002", "A", "000000000001", new BigDecimal("15.00"),
+                PaymentStatus.FULL_SAVED.getCode(), FILE_NAME, true));
+
+        assertEquals(2, summary.paymentCount());
+        assertEquals(1, summary.count(PaymentStatus.FULL_SAVED));
+        assertEquals(1, summary.count(PaymentStatus.DUPLICATE));
+        assertEquals(new BigDecimal("15.00"), summary.amount());
+    }
+}
@@ -0,0 +1,194 @@
+package com.levandr.custompaymentsystem.watcher;
+
+import com.levandr.custompaymentsystem.enums.ExecutorMode;
+import com.levandr.custompaymentsystem.metrics.IngestMetrics;
+import com.levandr.custompaymentsystem.service.archive.ArchiveService;
+import com.levandr.custompaymentsystem.service.ledger.FileLedgerService;
+import com.levandr.custompaymentsystem.service.parser.ParserService;
+import com.levandr.custompaymentsystem.service.parser.TailIngestService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DirectoryWatcherTest {
+
+    private static final String FILE_NAME = "BCP_20230101_120000_0001";
+
+    @TempDir
+    Path input;
+
+    private final ParserService parserService = mock(ParserService.class);
+    private final FileLedgerService fileLedgerService = mock(FileLedgerService.class);
+    private final TailIngestService tailIngestService = mock(TailIngestService.class);
+    private final ArchiveService archiveService = mock(ArchiveService.class);
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private DirectoryWatcher watcher;
+
+    @BeforeEach
+    void setUp() {
+        when(parserService.isValidFileName(any())).thenAnswer(invocation ->
+                invocation.<Path>getArgument(0).getFileName().toString().startsWith("BCP_"));
+        when(fileLedgerService.tryStart(any())).thenReturn(true);
+        when(fileLedgerService.expiredClaims()).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (watcher != null) {
+            watcher.shutdown();
+        }
+    }
+
+    private void startWatcher(ExecutorMode executorMode, int maxConcurrentFiles) {
+        watcher = new DirectoryWatcher(parserService, fileLedgerService, new IngestMetrics(registry),
+                tailIngestService, archiveService);
+        ReflectionTestUtils.setField(watcher, "inputDirectory", input);
+        ReflectionTestUtils.setField(watcher, "executorMode", executorMode);
+        ReflectionTestUtils.setField(watcher, "poolSize", 4);
+        ReflectionTestUtils.setField(watcher, "maxConcurrentFiles", maxConcurrentFiles);
+        ReflectionTestUtils.setField(watcher, "stableMillis", 0L);
+        ReflectionTestUtils.setField(watcher, "largeFileBytes", 1L << 24);
+        ReflectionTestUtils.setField(watcher, "smallWeight", 4);
+        ReflectionTestUtils.setField(watcher, "largeWeight", 1);
+        ReflectionTestUtils.setField(watcher, "maxLargeFiles", 4);
+        ReflectionTestUtils.setField(watcher, "doneMarkerSuffix", ".done");
+        ReflectionTestUtils.setField(watcher, "pollMillis", 20L);
+        ReflectionTestUtils.setField(watcher, "reclaimMillis", 60_000L);
+        watcher.init();
+    }
+
+    private static String fileName(int file) {
+        return String.format("BCP_20230101_1200%02d_0001", file);
+    }
+
+    private void writeFiles(int count) throws IOException {
+        for (int file = 0; file < count; file++) {
+            Files.writeString(input.resolve(fileName(file)), "line");
+        }
+    }
+
+    private double counter(String name) {
+        return registry.counter(name).count();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Условие не выполнено за 5 секунд");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Посторонний файл в Input не попадает ни в журнал, ни в архив.
+     */
+    @Test
+    void testFileWithOtherNameIsNotLedgeredOrArchived() throws Exception {
+        Path stray = Files.writeString(input.resolve("notes.txt"), "line");
+        Path file = Files.writeString(input.resolve(FILE_NAME), "line");
+        when(parserService.parseFileAsync(file)).thenReturn(CompletableFuture.completedFuture(null));
+
+        startWatcher(ExecutorMode.FIXED, 2);
+
+        verify(archiveService, timeout(5000)).archive(file);
+        await(() -> counter("ingest.files.skipped") == 1);
+        verify(fileLedgerService, never()).tryStart(stray);
+        verify(fileLedgerService, never()).markDone(stray);
+        verify(parserService, never()).parseFileAsync(stray);
+        verify(archiveService, never()).archive(stray);
+        assertEquals(1, counter("ingest.files.completed"));
+    }
+
+    /**
+     * Разбор файла заканчивается сразу, а конвейер завершает его позже в другом потоке. Разрешение
+     * {@code max-concurrent-files} держится до завершения конвейера, поэтому файлов в работе не больше лимита.
+     */
+    @Test
+    void testFilesInFlightNeverExceedMaxConcurrentFiles() throws Exception {
+        int files = 6;
+        int maxConcurrentFiles = 2;
+        writeFiles(files);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ScheduledExecutorService pipeline = Executors.newSingleThreadScheduledExecutor();
+        try {
+            when(parserService.parseFileAsync(any())).thenAnswer(invocation -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                CompletableFuture<Void> completion = new CompletableFuture<>();
+                pipeline.schedule(() -> {
+                    inFlight.decrementAndGet();
+                    completion.complete(null);
+                }, 50, TimeUnit.MILLISECONDS);
+                return completion;
+            });
+
+            startWatcher(ExecutorMode.FIXED, maxConcurrentFiles);
+
+            await(() -> counter("ingest.files.completed") == files);
+            assertEquals(maxConcurrentFiles, maxInFlight.get());
+            for (int file = 0; file < files; file++) {
+                verify(archiveService).archive(input.resolve(fileName(file)));
+            }
+        } finally {
+            pipeline.shutdownNow();
+        }
+    }
+
+    @Test
+    void testVirtualExecutorParsesEachFileOnVirtualThread() throws Exception {
+        assertParsingThreads(ExecutorMode.VIRTUAL, true);
+    }
+
+    @Test
+    void testFixedExecutorParsesOnPlatformThreads() throws Exception {
+        assertParsingThreads(ExecutorMode.FIXED, false);
+    }
+
+    /**
+     * Файлы разбираются в потоках исполнителя выбранного режима, а каталог слушает отдельный
+     * поток-демон {@code directory-watcher}.
+     */
+    private void assertParsingThreads(ExecutorMode executorMode, boolean virtual) throws Exception {
+        writeFiles(3);
+        Set<Thread> parsingThreads = ConcurrentHashMap.newKeySet();
+        when(parserService.parseFileAsync(any())).thenAnswer(invocation -> {
+            parsingThreads.add(Thread.currentThread());
+            return CompletableFuture.completedFuture(null);
+        });
+
+        startWatcher(executorMode, 2);
+
+        await(() -> counter("ingest.files.completed") == 3);
+        for (Thread thread : parsingThreads) {
+            assertEquals(virtual, thread.isVirtual(), thread.toString());
+            assertNotEquals("directory-watcher", thread.getName());
+        }
+        Thread watchThread = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("directory-watcher"))
+                .findFirst()
+                .orElseThrow();
+        assertTrue(watchThread.isDaemon());
+        assertFalse(watchThread.isVirtual());
+    }
+}
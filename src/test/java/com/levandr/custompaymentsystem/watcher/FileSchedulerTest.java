@@ -0,0 +1,90 @@
+package com.levandr.custompaymentsystem.watcher;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSchedulerTest {
+
+    private static final long LARGE = 1000;
+
+    private static Path file(String name) {
+        return Path.of("Input", name);
+    }
+
+    private static List<String> drain(FileScheduler scheduler, int count) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            FileScheduler.Ticket ticket = scheduler.poll();
+            if (ticket == null) {
+                break;
+            }
+            names.add(ticket.path().getFileName().toString());
+        }
+        return names;
+    }
+
+    @Test
+    void testOrdersByNameTimestampThenSize() {
+        FileScheduler scheduler = new FileScheduler(LARGE, 1, 1, 1);
+        scheduler.add(file("BCP_20230102_080000_0001"), 10, 0);
+        scheduler.add(file("BCP_20230101_120000_0002"), 50, 0);
+        scheduler.add(file("BCP_20230101_120000_0003"), 20, 0);
+
+        assertEquals(List.of("BCP_20230101_120000_0003", "BCP_20230101_120000_0002", "BCP_20230102_080000_0001"),
+                drain(scheduler, 3));
+    }
+
+    @Test
+    void testWeightedFairnessBetweenSmallAndLarge() {
+        FileScheduler scheduler = new FileScheduler(LARGE, 2, 1, 10);
+        for (int i = 1; i <= 3; i++) {
+            scheduler.add(file("BCP_20230101_12000" + i + "_000" + i), LARGE * i, 0);
+            scheduler.add(file("BCP_20230101_13000" + i + "_000" + i), 1, 0);
+        }
+
+        List<Boolean> large = new ArrayList<>();
+        FileScheduler.Ticket ticket;
+        while ((ticket = scheduler.poll()) != null) {
+            large.add(ticket.large());
+        }
+
+        assertEquals(List.of(false, false, true, false, true, true), large);
+    }
+
+    @Test
+    void testLargeFilesLimitKeepsSlotsForSmallFiles() {
+        FileScheduler scheduler = new FileScheduler(LARGE, 1, 1, 1);
+        scheduler.add(file("BCP_20230101_120000_0001"), LARGE, 0);
+        scheduler.add(file("BCP_20230101_120000_0002"), LARGE, 0);
+
+        FileScheduler.Ticket first = scheduler.poll();
+        assertNotNull(first);
+        assertNull(scheduler.poll());
+
+        scheduler.add(file("BCP_20230101_130000_0003"), 1, 0);
+        assertFalse(scheduler.poll().large());
+
+        scheduler.finished(first);
+        assertTrue(scheduler.poll().large());
+    }
+
+    @Test
+    void testStateReportsQueues() {
+        FileScheduler scheduler = new FileScheduler(LARGE, 1, 1, 1);
+        scheduler.add(file("BCP_20230101_120000_0001"), LARGE, 100);
+        scheduler.add(file("BCP_20230101_120000_0002"), 5, 300);
+
+        FileQueueState state = scheduler.state(1000);
+
+        assertEquals(1, state.smallQueued());
+        assertEquals(5, state.smallQueuedBytes());
+        assertEquals(1, state.largeQueued());
+        assertEquals(900, state.oldestWaitMillis());
+        assertEquals(List.of("BCP_20230101_120000_0002"), state.nextSmall());
+    }
+}
@@ -0,0 +1,65 @@
+package com.levandr.custompaymentsystem.watcher;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingFilesTest {
+
+    private static final long STABLE_MILLIS = 1000;
+
+    @TempDir
+    Path directory;
+
+    private final PendingFiles pendingFiles = new PendingFiles(STABLE_MILLIS, ".done");
+
+    @Test
+    void testFileIsReadyWhenSizeIsStable() throws IOException {
+        Path file = Files.writeString(directory.resolve("BCP_20230101_120000_0001"), "line");
+        pendingFiles.touch(file);
+        pendingFiles.touch(file);
+
+        assertTrue(pendingFiles.pollReady(0).isEmpty());
+        assertTrue(pendingFiles.pollReady(STABLE_MILLIS - 1).isEmpty());
+        assertEquals(List.of(file), pendingFiles.pollReady(STABLE_MILLIS));
+        assertEquals(0, pendingFiles.size());
+    }
+
+    @Test
+    void testGrowingFileIsNotReady() throws IOException {
+        Path file = Files.writeString(directory.resolve("BCP_20230101_120000_0001"), "line");
+        pendingFiles.touch(file);
+        assertTrue(pendingFiles.pollReady(0).isEmpty());
+
+        Files.writeString(file, "more", StandardOpenOption.APPEND);
+
+        assertTrue(pendingFiles.pollReady(STABLE_MILLIS).isEmpty());
+        assertEquals(List.of(file), pendingFiles.pollReady(2 * STABLE_MILLIS));
+    }
+
+    @Test
+    void testDoneMarkerMakesFileReadyImmediately() throws IOException {
+        Path file = Files.writeString(directory.resolve("BCP_20230101_120000_0001"), "line");
+        Path marker = Files.createFile(directory.resolve("BCP_20230101_120000_0001.done"));
+        pendingFiles.touch(marker);
+
+        assertEquals(List.of(file), pendingFiles.pollReady(0));
+    }
+
+    @Test
+    void testDeletedFileIsForgotten() throws IOException {
+        Path file = Files.writeString(directory.resolve("BCP_20230101_120000_0001"), "line");
+        pendingFiles.touch(file);
+        Files.delete(file);
+
+        assertTrue(pendingFiles.pollReady(STABLE_MILLIS).isEmpty());
+        assertEquals(0, pendingFiles.size());
+    }
+}